@@ -0,0 +1,101 @@
+package com.example.healthcheckapi.config;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Request principal produced by every authentication path (Basic and bearer).
+ * Carries the user id, username and email-verified flag resolved once during
+ * authentication, so controllers and services don't query the users table again.
+ */
+public class AuthenticatedUser implements UserDetails, CredentialsContainer {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String username;
+    private String password;
+    private final boolean emailVerified;
+
+    public AuthenticatedUser(Long id, String username, boolean emailVerified) {
+        this(id, username, null, emailVerified);
+    }
+
+    public AuthenticatedUser(Long id, String username, String password, boolean emailVerified) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.emailVerified = emailVerified;
+    }
+
+    /**
+     * Return the principal of this authentication, or null if it isn't an AuthenticatedUser
+     */
+    public static AuthenticatedUser from(Authentication auth) {
+        if (auth != null && auth.getPrincipal() instanceof AuthenticatedUser principal) {
+            return principal;
+        }
+        return null;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * BCrypt hash, only present until authentication completes
+     */
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    public boolean isEmailVerified() {
+        return emailVerified;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.healthcheckapi.config;
+
+import com.example.healthcheckapi.service.AuthTokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Filter that authenticates "Authorization: Bearer <token>" requests from the
+ * signed token alone (no BCrypt, no users query). Requests without a bearer
+ * token fall through to HTTP Basic.
+ *
+ * Account updates (PUT /v1/user/{id}, which can change the password) need Basic
+ * credentials: a token can't be revoked, so a leaked one must not be able to take
+ * over the account.
+ *
+ * Registered in SecurityConfig only (not a @Component) so it runs inside the
+ * security chain and not a second time as a servlet filter.
+ */
+public class BearerTokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BearerTokenAuthenticationFilter.class);
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final AuthTokenService authTokenService;
+    private final SecurityContextRepository securityContextRepository = new RequestAttributeSecurityContextRepository();
+
+    public BearerTokenAuthenticationFilter(AuthTokenService authTokenService) {
+        this.authTokenService = authTokenService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Tokens can only be obtained with Basic credentials, never refreshed with a token;
+        // a bearer header on these paths is ignored, so the request is unauthenticated
+        String uri = request.getRequestURI();
+        return uri.startsWith("/v1/auth/token")
+                || HttpMethod.PUT.matches(request.getMethod()) && uri.startsWith("/v1/user/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+
+        String header = req.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        AuthenticatedUser principal = authTokenService.parse(header.substring(BEARER_PREFIX.length()).trim());
+        if (principal == null) {
+            logger.warn("Rejected invalid bearer token: {} {}", req.getMethod(), req.getRequestURI());
+            SecurityContextHolder.clearContext();
+            res.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                principal, null, Collections.emptyList()));
+        SecurityContextHolder.setContext(context);
+        securityContextRepository.saveContext(context, req, res);
+
+        chain.doFilter(req, res);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.healthcheckapi.config;
+
+import com.example.healthcheckapi.exception.ServiceOverloadedException;
+import com.example.healthcheckapi.service.CredentialCacheService;
+import com.example.healthcheckapi.service.PasswordHashingService;
+import com.example.healthcheckapi.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * AuthenticationProvider for HTTP Basic that:
+ * 1. Answers repeat credentials from CredentialCacheService (no DB lookup, no BCrypt)
+ * 2. Falls back to the standard DAO + BCrypt check on a miss and caches the result
+ * 3. Re-encodes stored hashes whose BCrypt cost differs from the configured one, on the
+ *    PasswordHashingService pool; when that pool is full the upgrade waits for a later login
+ *
+ * Being the only AuthenticationProvider bean, it backs the global AuthenticationManager.
+ */
+@Component
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingAuthenticationProvider.class);
+
+    private final DaoAuthenticationProvider delegate;
+    private final CredentialCacheService credentialCache;
+
+    public CachingAuthenticationProvider(UserService userService,
+                                         PasswordEncoder passwordEncoder,
+                                         PasswordHashingService passwordHashingService,
+                                         CredentialCacheService credentialCache) {
+        // No UserDetailsPasswordService: the upgrade below replaces the delegate's own re-encode
+        this.delegate = new DaoAuthenticationProvider(userService) {
+            @Override
+            protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                                 UserDetails user) {
+                if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+                    try {
+                        String hash = passwordHashingService.encode(authentication.getCredentials().toString());
+                        user = userService.updatePassword(user, hash);
+                    } catch (ServiceOverloadedException e) {
+                        // The credentials already matched; only the re-encode is skipped
+                        log.warn("Skipped password re-encode for {}: hashing pool is full", user.getUsername());
+                    }
+                }
+                return super.createSuccessAuthentication(principal, authentication, user);
+            }
+        };
+        this.delegate.setPasswordEncoder(passwordEncoder);
+        this.credentialCache = credentialCache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+
+        String password = credentials.toString();
+        UserDetails cached = credentialCache.get(username, password);
+        if (cached != null) {
+            UsernamePasswordAuthenticationToken result =
+                    UsernamePasswordAuthenticationToken.authenticated(cached, null, cached.getAuthorities());
+            result.setDetails(authentication.getDetails());
+            return result;
+        }
+
+        long stamp = credentialCache.stamp();
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.getPrincipal() instanceof UserDetails principal) {
+            credentialCache.put(username, password, principal, stamp);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
@@ -2,6 +2,8 @@ package com.example.healthcheckapi.config;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,6 +17,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -22,7 +25,7 @@ import java.util.concurrent.TimeUnit;
  * Filter that:
  * 1. Adds request context to MDC (Mapped Diagnostic Context) for structured logging
  * 2. Records HTTP request metrics via Micrometer
- * 3. Logs incoming and completed requests
+ * 3. Logs incoming and completed requests (async requests when the response completes)
  */
 @Component
 public class RequestLoggingFilter extends OncePerRequestFilter {
@@ -62,23 +65,57 @@ public class RequestLoggingFilter extends OncePerRequestFilter {
             MDC.put("event", "http_request_complete");
 
         } finally {
-            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            if (req.isAsyncStarted()) {
+                // Async handler: status and duration are only known once the response completes
+                Map<String, String> mdc = MDC.getCopyOfContextMap();
+                req.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        if (mdc != null) {
+                            MDC.setContextMap(mdc);
+                        }
+                        try {
+                            recordCompletion(req, res, startTime);
+                        } finally {
+                            MDC.clear();
+                        }
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                recordCompletion(req, res, startTime);
+            }
 
-            MDC.put("status", String.valueOf(res.getStatus()));
-            MDC.put("durMs", String.valueOf(durationMs));
+            MDC.clear();
+        }
+    }
 
-            logger.info("Request completed: {} {} - Status: {} - Duration: {}ms",
-                    req.getMethod(), req.getRequestURI(), res.getStatus(), durationMs);
+    private void recordCompletion(HttpServletRequest req, HttpServletResponse res, long startTime) {
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
 
-            Timer.builder("http.request")
-                    .tag("method", req.getMethod())
-                    .tag("uri", req.getRequestURI())
-                    .tag("status", String.valueOf(res.getStatus()))
-                    .description("HTTP request timing")
-                    .register(registry)
-                    .record(durationMs, TimeUnit.MILLISECONDS);
+        MDC.put("status", String.valueOf(res.getStatus()));
+        MDC.put("durMs", String.valueOf(durationMs));
 
-            MDC.clear();
-        }
+        logger.info("Request completed: {} {} - Status: {} - Duration: {}ms",
+                req.getMethod(), req.getRequestURI(), res.getStatus(), durationMs);
+
+        Timer.builder("http.request")
+                .tag("method", req.getMethod())
+                .tag("uri", req.getRequestURI())
+                .tag("status", String.valueOf(res.getStatus()))
+                .description("HTTP request timing")
+                .register(registry)
+                .record(durationMs, TimeUnit.MILLISECONDS);
     }
 }
\ No newline at end of file
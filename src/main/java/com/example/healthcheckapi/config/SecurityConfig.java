@@ -1,26 +1,29 @@
 package com.example.healthcheckapi.config;
 
+import com.example.healthcheckapi.service.AuthTokenService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength:10}") int strength) {
+        // Hashes with a different cost are re-encoded at the next login
+        return new CostAwareBCryptPasswordEncoder(strength);
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, AuthTokenService authTokenService) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session ->
@@ -32,25 +35,37 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/v1/user/verify").permitAll()
 
                         // Public GET endpoints
+                        .requestMatchers(HttpMethod.GET, "/v1/product").permitAll()
                         .requestMatchers(HttpMethod.GET, "/v1/product/*").permitAll()
                         .requestMatchers(HttpMethod.GET, "/v1/product/*/image").permitAll()
                         .requestMatchers(HttpMethod.GET, "/v1/product/*/image/*").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/v1/product/*/image/*/content").permitAll()
+
+                        // Bearer token issue - requires Basic credentials
+                        .requestMatchers(HttpMethod.POST, "/v1/auth/token").authenticated()
 
                         // User endpoints - must be authenticated
                         .requestMatchers("/v1/user/*").authenticated()
 
                         // Product mutations - must be authenticated
                         .requestMatchers(HttpMethod.POST, "/v1/product").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/v1/product/batch").authenticated()
                         .requestMatchers(HttpMethod.PUT, "/v1/product/*").authenticated()
                         .requestMatchers(HttpMethod.PATCH, "/v1/product/*").authenticated()
                         .requestMatchers(HttpMethod.DELETE, "/v1/product/*").authenticated()
 
                         // Image mutations - must be authenticated
                         .requestMatchers(HttpMethod.POST, "/v1/product/*/image").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/v1/product/*/image/batch").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/v1/product/*/image/upload-url").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/v1/product/*/image/*/complete").authenticated()
                         .requestMatchers(HttpMethod.DELETE, "/v1/product/*/image/*").authenticated()
 
                         .anyRequest().denyAll()
                 )
+                // Bearer tokens are validated from the signature alone; Basic remains the fallback
+                .addFilterBefore(new BearerTokenAuthenticationFilter(authTokenService), BasicAuthenticationFilter.class)
+                // Credentials are checked by CachingAuthenticationProvider (global AuthenticationManager)
                 .httpBasic();
 
         return http.build();
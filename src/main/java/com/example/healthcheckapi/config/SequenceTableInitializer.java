@@ -0,0 +1,66 @@
+package com.example.healthcheckapi.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Seeds the table-backed Hibernate sequences (MySQL has no native sequences).
+ * Tables that used to be AUTO_INCREMENT already hold ids, so each sequence is moved
+ * past max(id) + allocation size before the first insert; otherwise the pooled
+ * optimizer would hand out ids that collide with existing rows.
+ */
+@Component
+public class SequenceTableInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SequenceTableInitializer.class);
+
+    /** Must match allocationSize on the @SequenceGenerator mappings */
+    public static final int ALLOCATION_SIZE = 50;
+
+    private record IdColumn(String table, String column) {
+    }
+
+    // sequence table -> id column it generates
+    private static final Map<String, IdColumn> SEQUENCES = Map.of(
+            "product_seq", new IdColumn("products", "id"),
+            "image_seq", new IdColumn("images", "image_id"),
+            "storage_delete_outbox_seq", new IdColumn("storage_delete_outbox", "id")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // EntityManagerFactory dependency guarantees Hibernate has created the sequence tables
+    public SequenceTableInitializer(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        SEQUENCES.forEach(this::seed);
+    }
+
+    private void seed(String sequenceTable, IdColumn ids) {
+        try {
+            Long floor = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MAX(" + ids.column() + "), 0) + ? + 1 FROM " + ids.table(),
+                    Long.class, ALLOCATION_SIZE);
+            Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + sequenceTable, Integer.class);
+
+            if (rows == null || rows == 0) {
+                jdbcTemplate.update("INSERT INTO " + sequenceTable + " (next_val) VALUES (?)", floor);
+            } else {
+                jdbcTemplate.update("UPDATE " + sequenceTable + " SET next_val = GREATEST(next_val, ?)", floor);
+            }
+            logger.info("Sequence {} seeded to at least {}", sequenceTable, floor);
+        } catch (Exception e) {
+            // Database may be down at startup (health check reports it); ids are re-checked on next boot
+            logger.warn("Could not seed sequence {}: {}", sequenceTable, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.healthcheckapi.controller;
+
+import com.example.healthcheckapi.config.AuthenticatedUser;
+import com.example.healthcheckapi.service.AuthTokenService;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/v1/auth")
+public class AuthController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
+
+    @Autowired
+    private AuthTokenService authTokenService;
+
+    @Timed(value = "api.auth.token", description = "Issue bearer token endpoint")
+    @PostMapping(value = "/token", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> issueToken(Authentication auth) {
+        MDC.put("event", "auth_token_start");
+        logger.info("Issuing bearer token: requestedBy={}", auth.getName());
+
+        try {
+            if (!authTokenService.isEnabled()) {
+                MDC.put("event", "auth_token_disabled");
+                logger.warn("Token issue refused: no signing keys configured");
+                return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+            }
+
+            AuthenticatedUser principal = AuthenticatedUser.from(auth);
+            if (principal == null) {
+                MDC.put("event", "auth_token_unauthorized");
+                logger.warn("Token issue failed: no authenticated principal for '{}'", auth.getName());
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            String token = authTokenService.issue(principal);
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("access_token", token);
+            body.put("token_type", "Bearer");
+            body.put("expires_in", authTokenService.getTtlSeconds());
+
+            MDC.put("event", "auth_token_success");
+            logger.info("Bearer token issued: userId={}", principal.getId());
+
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                    .body(body);
+
+        } catch (Exception e) {
+            MDC.put("event", "auth_token_error");
+            logger.error("Error issuing token for '{}': {}", auth.getName(), e.getMessage(), e);
+            throw e;
+        } finally {
+            MDC.remove("event");
+        }
+    }
+}
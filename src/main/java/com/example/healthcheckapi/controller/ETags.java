@@ -0,0 +1,130 @@
+package com.example.healthcheckapi.controller;
+
+import com.example.healthcheckapi.repository.ImageVersion;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Strong ETags for products and images, and If-None-Match / If-Match evaluation.
+ * - Product: id + date_last_updated (microseconds, the stored precision)
+ * - Image: the row is immutable and variants are only ever added, so product id +
+ *   image id + variant count is enough
+ * - Image content: stored objects are never rewritten, so ids (and variant width) suffice
+ * - Image list: digest of the ordered image ids and variant counts
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String product(Long id, Instant lastUpdated) {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, lastUpdated);
+        return "\"p" + id + "-" + Long.toHexString(micros) + "\"";
+    }
+
+    static String image(Long productId, Long imageId, int variantCount) {
+        return "\"i" + productId + "-" + imageId + "-" + variantCount + "\"";
+    }
+
+    static String imageContent(Long productId, Long imageId, Integer width) {
+        return "\"c" + productId + "-" + imageId + (width != null ? "-w" + width : "") + "\"";
+    }
+
+    static String imageList(Long productId, List<ImageVersion> images) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+            for (ImageVersion image : images) {
+                buffer.clear();
+                buffer.putLong(image.imageId());
+                buffer.putInt(image.variantCount());
+                digest.update(buffer.array());
+            }
+            String hash = HexFormat.of().formatHex(digest.digest(), 0, 12);
+            return "\"l" + productId + "-" + hash + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * If-None-Match: weak comparison, so W/ prefixes from intermediaries still match
+     */
+    static boolean noneMatch(String ifNoneMatch, String etag) {
+        return ifNoneMatch != null && anyMatches(ifNoneMatch, etag, true);
+    }
+
+    /**
+     * If-Match: true when the header is absent or strongly matches the current ETag
+     */
+    static boolean ifMatch(String ifMatch, String etag) {
+        return ifMatch == null || anyMatches(ifMatch, etag, false);
+    }
+
+    /**
+     * If-Range: the range applies only when the header is a strong ETag identical to the
+     * current one. A weak tag or a date can't vouch for the bytes, so the whole object is
+     * sent instead. True when the header is absent.
+     */
+    static boolean ifRange(String ifRange, String etag) {
+        if (ifRange == null) {
+            return true;
+        }
+        String tag = ifRange.trim();
+        return !tag.startsWith("W/") && tag.equals(etag);
+    }
+
+    /**
+     * If-Match as the product versions it names, for a conditional write in SQL.
+     * Null when the header is absent or "*" (no version condition); tags for other
+     * products, weak or malformed tags name no version, so an empty list never matches.
+     */
+    static List<Instant> productVersions(String ifMatch, Long id) {
+        if (ifMatch == null) {
+            return null;
+        }
+        String prefix = "\"p" + id + "-";
+        List<Instant> versions = new ArrayList<>();
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return null;
+            }
+            if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+                try {
+                    long micros = Long.parseUnsignedLong(tag.substring(prefix.length(), tag.length() - 1), 16);
+                    versions.add(Instant.EPOCH.plus(micros, ChronoUnit.MICROS));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        return versions;
+    }
+
+    private static boolean anyMatches(String header, String etag, boolean weak) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                if (!weak) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -49,8 +49,8 @@ public class HealthController {
                 return buildResponse(HttpStatus.BAD_REQUEST);
             }
 
-            // Perform health check
-            boolean isHealthy = healthCheckService.performHealthCheck();
+            // Perform health check (or read the last background probe)
+            boolean isHealthy = healthCheckService.isHealthy();
 
             if (isHealthy) {
                 MDC.put("event", "health_check_success");
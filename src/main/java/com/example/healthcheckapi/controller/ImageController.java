@@ -1,25 +1,46 @@
 package com.example.healthcheckapi.controller;
 
+import com.example.healthcheckapi.config.AuthenticatedUser;
 import com.example.healthcheckapi.entity.Image;
+import com.example.healthcheckapi.entity.ImageVariant;
 import com.example.healthcheckapi.entity.Product;
+import com.example.healthcheckapi.repository.ProductSummary;
+import com.example.healthcheckapi.service.DirectUploadService;
+import com.example.healthcheckapi.service.ImageBatchResult;
 import com.example.healthcheckapi.service.ImageService;
 import com.example.healthcheckapi.service.ProductService;
+import com.example.healthcheckapi.service.StorageBackend;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.micrometer.core.annotation.Timed;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import com.example.healthcheckapi.service.UserService;
-import com.example.healthcheckapi.entity.User;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import org.springframework.beans.factory.annotation.Value;
 
 
@@ -30,6 +51,28 @@ public class ImageController {
 
     private static final Logger logger = LoggerFactory.getLogger(ImageController.class);
 
+    // Request attributes telling Tomcat to send a file region itself (sendfile) once the handler returns
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Inclusive byte positions of one satisfiable range
+     */
+    private record ByteSpan(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * Body of POST /upload-url
+     */
+    record UploadUrlRequest(@JsonProperty("file_name") String fileName,
+                            @JsonProperty("content_type") String contentType) {
+    }
+
     @Autowired
     private ImageService imageService;
 
@@ -37,7 +80,7 @@ public class ImageController {
     private ProductService productService;
 
     @Autowired
-    private UserService userService;
+    private DirectUploadService directUploadService;
 
     @Value("${email.verification.enabled:true}")
     private boolean emailVerificationEnabled;
@@ -46,16 +89,13 @@ public class ImageController {
         if (!emailVerificationEnabled) {
             return true;
         }
-        if (auth == null || !auth.isAuthenticated()) {
-            return false;
-        }
-        User user = userService.findByUsername(auth.getName());
-        return user != null && user.isEmailVerified();
+        AuthenticatedUser principal = AuthenticatedUser.from(auth);
+        return principal != null && principal.isEmailVerified();
     }
 
     @Timed(value = "api.image.upload", description = "Upload image endpoint")
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> uploadImage(
+    public CompletableFuture<ResponseEntity<?>> uploadImage(
             @PathVariable("product_id") Long productId,
             @RequestParam("file") MultipartFile file,
             Authentication auth) {
@@ -69,50 +109,300 @@ public class ImageController {
             if (auth == null || auth.getName() == null) {
                 MDC.put("event", "image_upload_unauthorized");
                 logger.warn("Unauthorized image upload attempt for product {}", productId);
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
             }
 
             if (!isEmailVerified(auth)) {
                 MDC.put("event", "image_upload_email_not_verified");
                 logger.warn("Access denied: Email not verified for user '{}'", auth.getName());
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
             }
 
             Product product = productService.findById(productId);
             if (product == null) {
                 MDC.put("event", "image_upload_product_not_found");
                 logger.warn("Image upload failed: Product {} not found", productId);
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
             }
 
-            if (!productService.isOwner(product, auth.getName())) {
+            if (!productService.isOwner(product, AuthenticatedUser.from(auth).getId())) {
                 MDC.put("event", "image_upload_forbidden");
                 logger.warn("Forbidden: User '{}' attempted to upload image to product {}",
                         auth.getName(), productId);
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
             }
 
             if (!imageService.isValidImageFile(file)) {
                 MDC.put("event", "image_upload_invalid_file");
                 logger.warn("Invalid image file: {}", file.getOriginalFilename());
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+            }
+
+            // Storage I/O completes off this thread; the response is written when it's done
+            Map<String, String> mdc = MDC.getCopyOfContextMap();
+            return imageService.uploadImage(file, product)
+                    .handle((savedImage, error) -> withMdc(mdc, () -> {
+                        if (error != null) {
+                            MDC.put("event", "image_upload_error");
+                            logger.error("Error uploading image for product {}: {}", productId, error.getMessage(), error);
+                            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                        }
+
+                        MDC.put("event", "image_upload_success");
+                        logger.info("Image uploaded successfully: imageId={}, productId={}, filename={}",
+                                savedImage.getImageId(), productId, savedImage.getFileName());
+
+                        return ResponseEntity
+                                .status(HttpStatus.CREATED)
+                                .location(URI.create("/v1/product/" + productId + "/image/" + savedImage.getImageId()))
+                                .body(savedImage);
+                    }));
+
+        } catch (Exception e) {
+            MDC.put("event", "image_upload_error");
+            logger.error("Error uploading image for product {}: {}", productId, e.getMessage(), e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+        } finally {
+            MDC.remove("event");
+        }
+    }
+
+    /**
+     * Several files (repeated "file" parts) for one product: auth, product load and the
+     * ownership check run once; each file gets its own result
+     */
+    @Timed(value = "api.image.batchUpload", description = "Batch upload images endpoint")
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> uploadImages(
+            @PathVariable("product_id") Long productId,
+            @RequestParam("file") List<MultipartFile> files,
+            Authentication auth) {
+
+        MDC.put("event", "image_batch_upload_start");
+        logger.info("Batch uploading images: productId={}, requestedBy={}, files={}",
+                productId, auth != null ? auth.getName() : "anonymous", files.size());
+
+        try {
+            if (auth == null || auth.getName() == null) {
+                MDC.put("event", "image_batch_upload_unauthorized");
+                logger.warn("Unauthorized batch image upload attempt for product {}", productId);
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+            }
+
+            if (!isEmailVerified(auth)) {
+                MDC.put("event", "image_batch_upload_email_not_verified");
+                logger.warn("Access denied: Email not verified for user '{}'", auth.getName());
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+            }
+
+            if (files.isEmpty() || files.size() > imageService.getMaxFiles()) {
+                MDC.put("event", "image_batch_upload_invalid_size");
+                logger.warn("Batch image upload failed: {} files (max {})", files.size(), imageService.getMaxFiles());
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+            }
+
+            Product product = productService.findById(productId);
+            if (product == null) {
+                MDC.put("event", "image_batch_upload_product_not_found");
+                logger.warn("Batch image upload failed: Product {} not found", productId);
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+            }
+
+            if (!productService.isOwner(product, AuthenticatedUser.from(auth).getId())) {
+                MDC.put("event", "image_batch_upload_forbidden");
+                logger.warn("Forbidden: User '{}' attempted to upload images to product {}",
+                        auth.getName(), productId);
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+            }
+
+            Map<String, String> mdc = MDC.getCopyOfContextMap();
+            return imageService.uploadImages(files, product)
+                    .handle((results, error) -> withMdc(mdc, () -> {
+                        if (error != null) {
+                            MDC.put("event", "image_batch_upload_error");
+                            logger.error("Error batch uploading images for product {}: {}",
+                                    productId, error.getMessage(), error);
+                            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                        }
+
+                        Map<ImageBatchResult.Status, Long> counts = new LinkedHashMap<>();
+                        for (ImageBatchResult.Status status : ImageBatchResult.Status.values()) {
+                            counts.put(status, results.stream().filter(r -> r.status() == status).count());
+                        }
+
+                        Map<String, Object> body = new LinkedHashMap<>();
+                        body.put("summary", counts);
+                        body.put("results", results);
+
+                        MDC.put("event", "image_batch_upload_success");
+                        logger.info("Batch image upload finished for product {}: {}", productId, counts);
+                        return ResponseEntity.ok(body);
+                    }));
+
+        } catch (Exception e) {
+            MDC.put("event", "image_batch_upload_error");
+            logger.error("Error batch uploading images for product {}: {}", productId, e.getMessage(), e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+        } finally {
+            MDC.remove("event");
+        }
+    }
+
+    /**
+     * Step one of a direct upload: a presigned PUT for the client and the pending image id.
+     * Body: {"file_name": "...", "content_type": "..."} (content_type defaults from the name).
+     */
+    @Timed(value = "api.image.uploadUrl", description = "Create direct upload URL endpoint")
+    @PostMapping(value = "/upload-url", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createUploadUrl(
+            @PathVariable("product_id") Long productId,
+            @RequestBody UploadUrlRequest request,
+            Authentication auth) {
+
+        MDC.put("event", "image_upload_url_start");
+        logger.info("Creating direct upload URL: productId={}, requestedBy={}, file={}",
+                productId, auth != null ? auth.getName() : "anonymous", request.fileName());
+
+        try {
+            if (auth == null || auth.getName() == null) {
+                MDC.put("event", "image_upload_url_unauthorized");
+                logger.warn("Unauthorized direct upload attempt for product {}", productId);
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            if (!isEmailVerified(auth)) {
+                MDC.put("event", "image_upload_url_email_not_verified");
+                logger.warn("Access denied: Email not verified for user '{}'", auth.getName());
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+
+            String contentType = request.contentType() != null
+                    ? request.contentType()
+                    : MediaTypeFactory.getMediaType(request.fileName()).map(MediaType::toString).orElse(null);
+            if (!imageService.isValidImageName(request.fileName())
+                    || !MediaType.IMAGE_JPEG_VALUE.equals(contentType) && !MediaType.IMAGE_PNG_VALUE.equals(contentType)) {
+                MDC.put("event", "image_upload_url_invalid_file");
+                logger.warn("Invalid direct upload: file={}, contentType={}", request.fileName(), contentType);
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
             }
 
-            Image savedImage = imageService.uploadImage(file, product, product.getOwner().getId());
+            Product product = productService.findById(productId);
+            if (product == null) {
+                MDC.put("event", "image_upload_url_product_not_found");
+                logger.warn("Direct upload URL failed: Product {} not found", productId);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+
+            if (!productService.isOwner(product, AuthenticatedUser.from(auth).getId())) {
+                MDC.put("event", "image_upload_url_forbidden");
+                logger.warn("Forbidden: User '{}' attempted to upload image to product {}",
+                        auth.getName(), productId);
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+
+            DirectUploadService.PendingUpload upload =
+                    directUploadService.createUpload(product, request.fileName(), contentType).orElse(null);
+            if (upload == null) {
+                MDC.put("event", "image_upload_url_unsupported");
+                logger.warn("Direct upload requested but the storage backend can't presign URLs");
+                return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+            }
 
-            MDC.put("event", "image_upload_success");
-            logger.info("Image uploaded successfully: imageId={}, productId={}, filename={}",
-                    savedImage.getImageId(), productId, savedImage.getFileName());
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("image_id", upload.image().getImageId());
+            body.put("upload_url", upload.put().url());
+            body.put("method", "PUT");
+            body.put("headers", upload.put().headers());
+            body.put("expires_at", upload.put().expiresAt());
+            body.put("complete_url", "/v1/product/" + productId + "/image/" + upload.image().getImageId() + "/complete");
 
-            return ResponseEntity
-                    .status(HttpStatus.CREATED)
-                    .location(URI.create("/v1/product/" + productId + "/image/" + savedImage.getImageId()))
-                    .body(savedImage);
+            MDC.put("event", "image_upload_url_success");
+            logger.info("Direct upload URL issued: imageId={}, productId={}", upload.image().getImageId(), productId);
+            return ResponseEntity.status(HttpStatus.CREATED).body(body);
 
         } catch (Exception e) {
-            MDC.put("event", "image_upload_error");
-            logger.error("Error uploading image for product {}: {}", productId, e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            MDC.put("event", "image_upload_url_error");
+            logger.error("Error creating direct upload URL for product {}: {}", productId, e.getMessage(), e);
+            throw e;
+        } finally {
+            MDC.remove("event");
+        }
+    }
+
+    /**
+     * Step two of a direct upload: verify the object landed and make the image visible
+     */
+    @Timed(value = "api.image.complete", description = "Complete direct upload endpoint")
+    @PostMapping(value = "/{image_id}/complete", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> completeUpload(
+            @PathVariable("product_id") Long productId,
+            @PathVariable("image_id") Long imageId,
+            Authentication auth) throws IOException {
+
+        MDC.put("event", "image_complete_start");
+        logger.info("Completing direct upload: productId={}, imageId={}, requestedBy={}",
+                productId, imageId, auth != null ? auth.getName() : "anonymous");
+
+        try {
+            if (auth == null || auth.getName() == null) {
+                MDC.put("event", "image_complete_unauthorized");
+                logger.warn("Unauthorized upload completion attempt for product {}", productId);
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            if (!isEmailVerified(auth)) {
+                MDC.put("event", "image_complete_email_not_verified");
+                logger.warn("Access denied: Email not verified for user '{}'", auth.getName());
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+
+            Product product = productService.findById(productId);
+            if (product == null) {
+                MDC.put("event", "image_complete_product_not_found");
+                logger.warn("Complete failed: Product {} not found", productId);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+
+            if (!productService.isOwner(product, AuthenticatedUser.from(auth).getId())) {
+                MDC.put("event", "image_complete_forbidden");
+                logger.warn("Forbidden: User '{}' attempted to complete an upload for product {}",
+                        auth.getName(), productId);
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+
+            Image image = directUploadService.findUpload(imageId, productId);
+            if (image == null) {
+                MDC.put("event", "image_complete_not_found");
+                logger.warn("Complete failed: upload imageId={}, productId={} not found", imageId, productId);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+
+            DirectUploadService.Completion completion = directUploadService.complete(image);
+            switch (completion.status()) {
+                case NOT_UPLOADED -> {
+                    MDC.put("event", "image_complete_not_uploaded");
+                    logger.warn("Complete failed: nothing stored yet for imageId={}", imageId);
+                    return ResponseEntity.status(HttpStatus.CONFLICT).build();
+                }
+                case REJECTED -> {
+                    MDC.put("event", "image_complete_rejected");
+                    logger.warn("Complete failed: stored object for imageId={} is not an acceptable image", imageId);
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+                }
+                default -> {
+                    MDC.put("event", "image_complete_success");
+                    logger.info("Direct upload completed: imageId={}, productId={}", imageId, productId);
+                    return ResponseEntity
+                            .status(HttpStatus.CREATED)
+                            .location(URI.create("/v1/product/" + productId + "/image/" + imageId))
+                            .body(completion.image());
+                }
+            }
+
+        } catch (Exception e) {
+            MDC.put("event", "image_complete_error");
+            logger.error("Error completing upload {} for product {}: {}", imageId, productId, e.getMessage(), e);
+            throw e;
         } finally {
             MDC.remove("event");
         }
@@ -120,23 +410,32 @@ public class ImageController {
 
     @Timed(value = "api.image.getAll", description = "Get all images endpoint")
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getAllImages(@PathVariable("product_id") Long productId) {
+    public ResponseEntity<?> getAllImages(@PathVariable("product_id") Long productId,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         MDC.put("event", "image_get_all_start");
         logger.info("Getting all images for product: productId={}", productId);
 
         try {
-            Product product = productService.findById(productId);
+            ProductSummary product = productService.findSummaryById(productId);
             if (product == null) {
                 MDC.put("event", "image_get_all_product_not_found");
                 logger.warn("Get all images failed: Product {} not found", productId);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
+            // Image rows are immutable and only gain variants, so ids + variant counts identify the response
+            String etag = ETags.imageList(productId, imageService.getImageVersionsByProductId(productId));
+            if (ETags.noneMatch(ifNoneMatch, etag)) {
+                MDC.put("event", "image_get_all_not_modified");
+                logger.info("Images not modified for product {}", productId);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
             List<Image> images = imageService.getImagesByProductId(productId);
             MDC.put("event", "image_get_all_success");
             logger.info("Retrieved {} images for product {}", images.size(), productId);
 
-            return ResponseEntity.ok(images);
+            return ResponseEntity.ok().eTag(etag).body(images);
 
         } catch (Exception e) {
             MDC.put("event", "image_get_all_error");
@@ -151,19 +450,31 @@ public class ImageController {
     @GetMapping(value = "/{image_id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> getImageById(
             @PathVariable("product_id") Long productId,
-            @PathVariable("image_id") Long imageId) {
+            @PathVariable("image_id") Long imageId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         MDC.put("event", "image_get_start");
         logger.info("Getting image: productId={}, imageId={}", productId, imageId);
 
         try {
-            Product product = productService.findById(productId);
+            ProductSummary product = productService.findSummaryById(productId);
             if (product == null) {
                 MDC.put("event", "image_get_product_not_found");
                 logger.warn("Get image failed: Product {} not found", productId);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
+            // Known ETag: the variant count is enough, the row is never loaded
+            if (ifNoneMatch != null) {
+                Integer variantCount = imageService.getVariantCount(imageId, productId);
+                String current = variantCount != null ? ETags.image(productId, imageId, variantCount) : null;
+                if (current != null && ETags.noneMatch(ifNoneMatch, current)) {
+                    MDC.put("event", "image_get_not_modified");
+                    logger.info("Image not modified: imageId={}, productId={}", imageId, productId);
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+                }
+            }
+
             Image image = imageService.getImageByIdAndProductId(imageId, productId);
             if (image == null) {
                 MDC.put("event", "image_get_not_found");
@@ -171,9 +482,10 @@ public class ImageController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
+            String etag = ETags.image(productId, imageId, image.getVariants().size());
             MDC.put("event", "image_get_success");
             logger.info("Image retrieved: imageId={}, productId={}", imageId, productId);
-            return ResponseEntity.ok(image);
+            return ResponseEntity.ok().eTag(etag).body(image);
 
         } catch (Exception e) {
             MDC.put("event", "image_get_error");
@@ -184,11 +496,217 @@ public class ImageController {
         }
     }
 
+    /**
+     * The stored image bytes, or a resized variant with ?width=. Honours Range (single range
+     * as 206 with Content-Range, several as multipart/byteranges) and If-Range; a malformed
+     * Range is ignored.
+     * Local files go out via sendfile when Tomcat offers it, otherwise FileChannel.transferTo;
+     * S3 bodies are streamed through as they arrive.
+     */
+    @Timed(value = "api.image.content", description = "Download image content endpoint")
+    @GetMapping("/{image_id}/content")
+    public void getImageContent(
+            @PathVariable("product_id") Long productId,
+            @PathVariable("image_id") Long imageId,
+            @RequestParam(value = "width", required = false) Integer width,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        MDC.put("event", "image_content_start");
+        logger.info("Getting image content: productId={}, imageId={}, width={}, range={}",
+                productId, imageId, width, rangeHeader);
+
+        try {
+            Image image = imageService.getImageByIdAndProductId(imageId, productId);
+            if (image == null) {
+                MDC.put("event", "image_content_not_found");
+                logger.warn("Image content not found: imageId={}, productId={}", imageId, productId);
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
+            }
+
+            String key = image.getS3BucketPath();
+            if (width != null) {
+                key = image.getVariants().stream()
+                        .filter(variant -> variant.getWidth() == width)
+                        .map(ImageVariant::getS3BucketPath)
+                        .findFirst().orElse(null);
+                if (key == null) {
+                    MDC.put("event", "image_content_variant_not_found");
+                    logger.warn("Image {} has no variant of width {}", imageId, width);
+                    response.setStatus(HttpStatus.NOT_FOUND.value());
+                    return;
+                }
+            }
+
+            StorageBackend.ObjectStat stat = imageService.statContent(key).orElse(null);
+            if (stat == null) {
+                MDC.put("event", "image_content_object_missing");
+                logger.error("Image {} of product {} has no stored object at {}", imageId, productId, key);
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
+            }
+            if (width == null && directUploadService.replacedSinceCompletion(image, stat)) {
+                MDC.put("event", "image_content_replaced");
+                logger.warn("Image {} of product {} was uploaded again after completion ({} at {})",
+                        imageId, productId, key, stat.lastModified());
+                response.setStatus(HttpStatus.CONFLICT.value());
+                return;
+            }
+
+            String etag = ETags.imageContent(productId, imageId, width);
+            long length = stat.size();
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.ETAG, etag);
+
+            if (ETags.noneMatch(ifNoneMatch, etag)) {
+                MDC.put("event", "image_content_not_modified");
+                logger.info("Image content not modified: imageId={}, productId={}", imageId, productId);
+                response.setStatus(HttpStatus.NOT_MODIFIED.value());
+                return;
+            }
+
+            // If-Range with a stale, weak or date validator means: send the whole object
+            List<ByteSpan> spans = List.of();
+            if (rangeHeader != null && ETags.ifRange(ifRange, etag)) {
+                spans = satisfiableSpans(rangeHeader, length);
+                if (spans == null) {
+                    MDC.put("event", "image_content_range_not_satisfiable");
+                    logger.warn("Range {} not satisfiable for imageId={} ({} bytes)", rangeHeader, imageId, length);
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return;
+                }
+            }
+
+            String contentType = stat.contentType() != null
+                    ? stat.contentType()
+                    : MediaTypeFactory.getMediaType(image.getFileName())
+                            .orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+
+            if (spans.isEmpty()) {
+                response.setStatus(HttpStatus.OK.value());
+                response.setContentType(contentType);
+                sendSpan(key, new ByteSpan(0, length - 1), request, response);
+            } else if (spans.size() == 1) {
+                ByteSpan span = spans.get(0);
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setContentType(contentType);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(span, length));
+                sendSpan(key, span, request, response);
+            } else {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                sendByteRanges(key, spans, length, contentType, request, response);
+            }
+
+            MDC.put("event", "image_content_success");
+            logger.info("Image content sent: imageId={}, productId={}, status={}, ranges={}",
+                    imageId, productId, response.getStatus(), spans.size());
+
+        } catch (Exception e) {
+            MDC.put("event", "image_content_error");
+            logger.error("Error sending content of image {} for product {}: {}", imageId, productId, e.getMessage(), e);
+            throw e;
+        } finally {
+            MDC.remove("event");
+        }
+    }
+
+    /**
+     * The satisfiable ranges of a Range header: empty if the header is malformed or asks for
+     * more bytes in total than the object has (then the whole object is sent), null if no
+     * range is satisfiable
+     */
+    private static List<ByteSpan> satisfiableSpans(String rangeHeader, long length) {
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+
+        List<ByteSpan> spans = new ArrayList<>();
+        long total = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            if (start < length && start <= end) {
+                spans.add(new ByteSpan(start, end));
+                total += end - start + 1;
+            }
+        }
+        if (spans.isEmpty()) {
+            return null;
+        }
+        // Overlapping ranges can only amplify the response
+        return total > length ? List.of() : spans;
+    }
+
+    private static String contentRange(ByteSpan span, long length) {
+        return "bytes " + span.start() + "-" + span.end() + "/" + length;
+    }
+
+    private void sendSpan(String key, ByteSpan span, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(span.length());
+        if (span.length() == 0 || HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+
+        Path file = Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))
+                ? imageService.localContentFile(key).orElse(null)
+                : null;
+        if (file != null) {
+            // Tomcat writes the region from the page cache itself; the end is exclusive
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, span.start());
+            request.setAttribute(SENDFILE_END, span.end() + 1);
+            return;
+        }
+        imageService.copyContent(key, span.start(), span.length(), response.getOutputStream());
+    }
+
+    private void sendByteRanges(String key, List<ByteSpan> spans, long length, String contentType,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+
+        // Part headers are built up front so Content-Length is exact
+        List<byte[]> partHeaders = new ArrayList<>(spans.size());
+        long contentLength = 0;
+        for (ByteSpan span : spans) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(span, length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + span.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < spans.size(); i++) {
+            out.write(partHeaders.get(i));
+            imageService.copyContent(key, spans.get(i).start(), spans.get(i).length(), out);
+        }
+        out.write(closing);
+    }
+
     @Timed(value = "api.image.delete", description = "Delete image endpoint")
     @DeleteMapping("/{image_id}")
     public ResponseEntity<?> deleteImage(
             @PathVariable("product_id") Long productId,
             @PathVariable("image_id") Long imageId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             Authentication auth) {
 
         MDC.put("event", "image_delete_start");
@@ -215,7 +733,7 @@ public class ImageController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
-            if (!productService.isOwner(product, auth.getName())) {
+            if (!productService.isOwner(product, AuthenticatedUser.from(auth).getId())) {
                 MDC.put("event", "image_delete_forbidden");
                 logger.warn("Forbidden: User '{}' attempted to delete image from product {}",
                         auth.getName(), productId);
@@ -229,10 +747,17 @@ public class ImageController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
+            if (!ETags.ifMatch(ifMatch, ETags.image(productId, imageId, image.getVariants().size()))) {
+                MDC.put("event", "image_delete_precondition_failed");
+                logger.warn("Image delete failed: If-Match {} does not match imageId={}", ifMatch, imageId);
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+
+            // Row and reference go in one transaction; the stored object is removed by the outbox relay
             imageService.deleteImage(image);
+
             MDC.put("event", "image_delete_success");
             logger.info("Image deleted successfully: imageId={}, productId={}", imageId, productId);
-
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
 
         } catch (Exception e) {
@@ -243,4 +768,24 @@ public class ImageController {
             MDC.remove("event");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Run a completion callback with the request's MDC (it runs on a storage I/O thread)
+     */
+    private static ResponseEntity<?> withMdc(Map<String, String> mdc, Supplier<ResponseEntity<?>> callback) {
+        // Local storage completes inline, on the request thread itself
+        Map<String, String> previous = MDC.getCopyOfContextMap();
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        }
+        try {
+            return callback.get();
+        } finally {
+            if (previous != null) {
+                MDC.setContextMap(previous);
+            } else {
+                MDC.clear();
+            }
+        }
+    }
+}
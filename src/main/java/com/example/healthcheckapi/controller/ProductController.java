@@ -1,22 +1,39 @@
 package com.example.healthcheckapi.controller;
 
+import com.example.healthcheckapi.config.AuthenticatedUser;
 import com.example.healthcheckapi.entity.Product;
 import com.example.healthcheckapi.entity.User;
+import com.example.healthcheckapi.repository.ProductSummary;
+import com.example.healthcheckapi.service.ProductBatchResult;
+import com.example.healthcheckapi.service.ProductBatchService;
+import com.example.healthcheckapi.service.ProductMutation;
 import com.example.healthcheckapi.service.ProductService;
 import com.example.healthcheckapi.service.UserService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micrometer.core.annotation.Timed;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/v1/product")
@@ -24,12 +41,22 @@ public class ProductController {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String CURSOR_PREFIX = "p1:";
+
     @Autowired
     private ProductService productService;
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ProductBatchService productBatchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Value("${email.verification.enabled:true}")
     private boolean emailVerificationEnabled;
 
@@ -37,11 +64,8 @@ public class ProductController {
         if (!emailVerificationEnabled) {
             return true;
         }
-        if (auth == null || !auth.isAuthenticated()) {
-            return false;
-        }
-        User user = userService.findByUsername(auth.getName());
-        return user != null && user.isEmailVerified();
+        AuthenticatedUser principal = AuthenticatedUser.from(auth);
+        return principal != null && principal.isEmailVerified();
     }
 
     @Timed(value = "api.product.create", description = "Create product endpoint")
@@ -63,7 +87,7 @@ public class ProductController {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
             }
 
-            User user = userService.findByUsername(auth.getName());
+            User user = userService.getReference(AuthenticatedUser.from(auth).getId());
             Product savedProduct = productService.createProduct(product, user);
 
             MDC.put("event", "product_create_success");
@@ -83,23 +107,163 @@ public class ProductController {
         }
     }
 
+    @Timed(value = "api.product.batch", description = "Batch create/update products endpoint")
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> batchUpsertProducts(@RequestBody List<Product> products, Authentication auth) {
+        MDC.put("event", "product_batch_start");
+        logger.info("Batch upsert: items={}, requestedBy={}", products.size(), auth.getName());
+
+        try {
+            if (!isEmailVerified(auth)) {
+                MDC.put("event", "product_batch_email_not_verified");
+                logger.warn("Access denied: Email not verified for user '{}'", auth.getName());
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+
+            if (products.isEmpty() || products.size() > productBatchService.getMaxItems()) {
+                MDC.put("event", "product_batch_invalid_size");
+                logger.warn("Batch upsert failed: {} items (max {})", products.size(), productBatchService.getMaxItems());
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            }
+
+            List<ProductBatchResult> results =
+                    productBatchService.apply(products, AuthenticatedUser.from(auth).getId());
+
+            Map<ProductBatchResult.Status, Long> counts = new LinkedHashMap<>();
+            for (ProductBatchResult.Status status : ProductBatchResult.Status.values()) {
+                counts.put(status, results.stream().filter(r -> r.status() == status).count());
+            }
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("summary", counts);
+            body.put("results", results);
+
+            MDC.put("event", "product_batch_success");
+            logger.info("Batch upsert finished: {}", counts);
+            return ResponseEntity.ok(body);
+
+        } catch (Exception e) {
+            MDC.put("event", "product_batch_error");
+            logger.error("Error in batch upsert: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            MDC.remove("event");
+        }
+    }
+
+    /**
+     * Keyset-paginated listing. Rows are streamed straight from the result set into
+     * the response, so a page is never materialized as a list of entities.
+     */
+    @Timed(value = "api.product.list", description = "List products endpoint")
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public void listProducts(@RequestParam(required = false) Integer limit,
+                             @RequestParam(required = false) String after,
+                             @RequestParam(required = false) Long owner,
+                             HttpServletResponse response) throws IOException {
+        MDC.put("event", "product_list_start");
+        logger.info("Listing products: limit={}, after={}, owner={}", limit, after, owner);
+
+        try {
+            int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+            if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                MDC.put("event", "product_list_invalid_limit");
+                logger.warn("Product list failed: limit {} out of range", limit);
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+                return;
+            }
+
+            Long afterId = after != null ? decodeCursor(after) : Long.valueOf(0L);
+            if (afterId == null) {
+                MDC.put("event", "product_list_invalid_cursor");
+                logger.warn("Product list failed: invalid cursor");
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+                return;
+            }
+
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+            try (JsonGenerator json = objectMapper.createGenerator(response.getOutputStream())) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("products");
+                Long next = productService.streamPage(owner, afterId, pageSize, row -> writeRow(json, row));
+                json.writeEndArray();
+                if (next != null) {
+                    json.writeStringField("next", encodeCursor(next));
+                } else {
+                    json.writeNullField("next");
+                }
+                json.writeEndObject();
+            }
+
+            MDC.put("event", "product_list_success");
+            logger.info("Product page streamed: after={}, limit={}", afterId, pageSize);
+
+        } catch (Exception e) {
+            MDC.put("event", "product_list_error");
+            logger.error("Error listing products: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            MDC.remove("event");
+        }
+    }
+
+    private static void writeRow(JsonGenerator json, ProductSummary row) {
+        try {
+            json.writeObject(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String encodeCursor(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Return the id encoded in a continuation token, or null if the token is invalid
+     */
+    private static Long decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)) {
+                return null;
+            }
+            long id = Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+            return id >= 0 ? id : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     @Timed(value = "api.product.get", description = "Get product endpoint")
     @GetMapping(value = "/{productId}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getProduct(@PathVariable Long productId) {
+    public ResponseEntity<?> getProduct(@PathVariable Long productId,
+                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         MDC.put("event", "product_get_start");
         logger.info("Getting product: productId={}", productId);
 
         try {
-            Product product = productService.findById(productId);
+            ProductSummary product = productService.findSummaryById(productId);
             if (product == null) {
                 MDC.put("event", "product_get_not_found");
                 logger.warn("Product not found: productId={}", productId);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
+            String etag = ETags.product(product.id(), product.dateLastUpdated());
+            if (ETags.noneMatch(ifNoneMatch, etag)) {
+                MDC.put("event", "product_get_not_modified");
+                logger.info("Product not modified: productId={}", productId);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
             MDC.put("event", "product_get_success");
             logger.info("Product retrieved successfully: productId={}", productId);
-            return ResponseEntity.ok(product);
+            return ResponseEntity.ok().eTag(etag).body(product);
 
         } catch (Exception e) {
             MDC.put("event", "product_get_error");
@@ -114,6 +278,7 @@ public class ProductController {
     @PutMapping(value = "/{productId}", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> updateProductPut(@PathVariable Long productId,
                                               @Valid @RequestBody Product updatedProduct,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                               Authentication auth) {
         MDC.put("event", "product_update_start");
         logger.info("Updating product: productId={}, requestedBy={}", productId, auth.getName());
@@ -125,38 +290,19 @@ public class ProductController {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
             }
 
-            Product product = productService.findById(productId);
-            if (product == null) {
-                MDC.put("event", "product_update_not_found");
-                logger.warn("Product update failed: productId={} not found", productId);
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-            }
-
-            if (!productService.isOwner(product, auth.getName())) {
-                MDC.put("event", "product_update_forbidden");
-                logger.warn("Forbidden: User '{}' attempted to update product {}",
-                        auth.getName(), productId);
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-
-            if (!product.getSku().equals(updatedProduct.getSku()) &&
-                    productService.existsBySku(updatedProduct.getSku())) {
-                MDC.put("event", "product_update_duplicate_sku");
-                logger.warn("SKU conflict: New SKU '{}' already exists", updatedProduct.getSku());
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            ProductMutation result = productService.updateOwned(productId, AuthenticatedUser.from(auth).getId(),
+                    ETags.productVersions(ifMatch, productId), updatedProduct);
+            ResponseEntity<?> failure = mutationFailure(result, "product_update", productId, auth);
+            if (failure != null) {
+                return failure;
             }
 
-            product.setName(updatedProduct.getName());
-            product.setDescription(updatedProduct.getDescription());
-            product.setSku(updatedProduct.getSku());
-            product.setManufacturer(updatedProduct.getManufacturer());
-            product.setQuantity(updatedProduct.getQuantity());
-
-            productService.updateProduct(product);
             MDC.put("event", "product_update_success");
             logger.info("Product updated successfully: productId={}", productId);
 
-            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+            return ResponseEntity.status(HttpStatus.NO_CONTENT)
+                    .eTag(ETags.product(productId, result.lastUpdated()))
+                    .build();
 
         } catch (Exception e) {
             MDC.put("event", "product_update_error");
@@ -171,6 +317,7 @@ public class ProductController {
     @PatchMapping(value = "/{productId}", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> updateProductPatch(@PathVariable Long productId,
                                                 @RequestBody Product updatedProduct,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                                 Authentication auth) {
         MDC.put("event", "product_patch_start");
         logger.info("Patching product: productId={}, requestedBy={}", productId, auth.getName());
@@ -182,20 +329,6 @@ public class ProductController {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
             }
 
-            Product product = productService.findById(productId);
-            if (product == null) {
-                MDC.put("event", "product_patch_not_found");
-                logger.warn("Product patch failed: productId={} not found", productId);
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-            }
-
-            if (!productService.isOwner(product, auth.getName())) {
-                MDC.put("event", "product_patch_forbidden");
-                logger.warn("Forbidden: User '{}' attempted to patch product {}",
-                        auth.getName(), productId);
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-
             // Validate quantity
             if (updatedProduct.getQuantity() != null) {
                 if (updatedProduct.getQuantity() < 0 || updatedProduct.getQuantity() > 100) {
@@ -205,37 +338,20 @@ public class ProductController {
                 }
             }
 
-            // Check SKU conflict
-            if (updatedProduct.getSku() != null &&
-                    !product.getSku().equals(updatedProduct.getSku()) &&
-                    productService.existsBySku(updatedProduct.getSku())) {
-                MDC.put("event", "product_patch_duplicate_sku");
-                logger.warn("SKU conflict: New SKU '{}' already exists", updatedProduct.getSku());
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            // Partial update: only the fields present in the request are written
+            ProductMutation result = productService.updateOwned(productId, AuthenticatedUser.from(auth).getId(),
+                    ETags.productVersions(ifMatch, productId), updatedProduct);
+            ResponseEntity<?> failure = mutationFailure(result, "product_patch", productId, auth);
+            if (failure != null) {
+                return failure;
             }
 
-            // Partial update
-            if (updatedProduct.getName() != null) {
-                product.setName(updatedProduct.getName());
-            }
-            if (updatedProduct.getDescription() != null) {
-                product.setDescription(updatedProduct.getDescription());
-            }
-            if (updatedProduct.getSku() != null) {
-                product.setSku(updatedProduct.getSku());
-            }
-            if (updatedProduct.getManufacturer() != null) {
-                product.setManufacturer(updatedProduct.getManufacturer());
-            }
-            if (updatedProduct.getQuantity() != null) {
-                product.setQuantity(updatedProduct.getQuantity());
-            }
-
-            productService.updateProduct(product);
             MDC.put("event", "product_patch_success");
             logger.info("Product patched successfully: productId={}", productId);
 
-            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+            return ResponseEntity.status(HttpStatus.NO_CONTENT)
+                    .eTag(ETags.product(productId, result.lastUpdated()))
+                    .build();
 
         } catch (Exception e) {
             MDC.put("event", "product_patch_error");
@@ -248,7 +364,9 @@ public class ProductController {
 
     @Timed(value = "api.product.delete", description = "Delete product endpoint")
     @DeleteMapping("/{productId}")
-    public ResponseEntity<?> deleteProduct(@PathVariable Long productId, Authentication auth) {
+    public ResponseEntity<?> deleteProduct(@PathVariable Long productId,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           Authentication auth) {
         MDC.put("event", "product_delete_start");
         logger.info("Deleting product: productId={}, requestedBy={}", productId, auth.getName());
 
@@ -259,21 +377,13 @@ public class ProductController {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
             }
 
-            Product product = productService.findById(productId);
-            if (product == null) {
-                MDC.put("event", "product_delete_not_found");
-                logger.warn("Product delete failed: productId={} not found", productId);
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-            }
-
-            if (!productService.isOwner(product, auth.getName())) {
-                MDC.put("event", "product_delete_forbidden");
-                logger.warn("Forbidden: User '{}' attempted to delete product {}",
-                        auth.getName(), productId);
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            ProductMutation result = productService.deleteOwned(productId, AuthenticatedUser.from(auth).getId(),
+                    ETags.productVersions(ifMatch, productId));
+            ResponseEntity<?> failure = mutationFailure(result, "product_delete", productId, auth);
+            if (failure != null) {
+                return failure;
             }
 
-            productService.deleteProduct(product);
             MDC.put("event", "product_delete_success");
             logger.info("Product deleted successfully: productId={}", productId);
 
@@ -287,4 +397,36 @@ public class ProductController {
             MDC.remove("event");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Map a write that didn't apply to its response (null if it did), logged under the event prefix
+     */
+    private ResponseEntity<?> mutationFailure(ProductMutation result, String event, Long productId,
+                                              Authentication auth) {
+        switch (result.status()) {
+            case NOT_FOUND -> {
+                MDC.put("event", event + "_not_found");
+                logger.warn("Product write failed: productId={} not found", productId);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            case FORBIDDEN -> {
+                MDC.put("event", event + "_forbidden");
+                logger.warn("Forbidden: User '{}' attempted to modify product {}", auth.getName(), productId);
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            case PRECONDITION_FAILED -> {
+                MDC.put("event", event + "_precondition_failed");
+                logger.warn("Product write failed: If-Match is stale for productId={}", productId);
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            case SKU_CONFLICT -> {
+                MDC.put("event", event + "_duplicate_sku");
+                logger.warn("SKU conflict: New SKU already exists for productId={}", productId);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.healthcheckapi.controller;
 
+import com.example.healthcheckapi.config.AuthenticatedUser;
 import com.example.healthcheckapi.entity.User;
 import com.example.healthcheckapi.service.UserService;
 import io.micrometer.core.annotation.Timed;
@@ -15,9 +16,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import java.net.URI;
 import java.util.Map;
-import com.example.healthcheckapi.entity.EmailVerificationToken;
 import com.example.healthcheckapi.service.EmailVerificationService;
-import com.example.healthcheckapi.service.SNSService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RequestParam;
 
@@ -33,9 +32,6 @@ public class UserController {
     @Autowired
     private EmailVerificationService verificationService;
 
-    @Autowired
-    private SNSService snsService;
-
     @Value("${email.verification.enabled:true}")
     private boolean emailVerificationEnabled;
 
@@ -56,11 +52,8 @@ public class UserController {
         if (!emailVerificationEnabled) {
             return true;
         }
-        if (auth == null || !auth.isAuthenticated()) {
-            return false;
-        }
-        User user = userService.findByUsername(auth.getName());
-        return user != null && user.isEmailVerified();
+        AuthenticatedUser principal = AuthenticatedUser.from(auth);
+        return principal != null && principal.isEmailVerified();
     }
 
     @Timed(value = "api.user.create", description = "Create user endpoint")
@@ -82,23 +75,11 @@ public class UserController {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
             }
 
-            User createdUser = userService.createUser(user);
+            User createdUser = userService.createUser(user, emailVerificationEnabled ? getFullDomain() : null);
 
             if (emailVerificationEnabled) {
-                EmailVerificationToken token = verificationService.createToken(createdUser.getUsername());
-
-                try {
-                    snsService.publishUserVerificationMessage(
-                            createdUser.getUsername(),
-                            token.getToken(),
-                            getFullDomain()
-                    );
-                    MDC.put("event", "user_verification_email_queued");
-                    logger.info("Verification email queued for user: {}", createdUser.getUsername());
-                } catch (Exception e) {
-                    MDC.put("event", "user_verification_email_failed");
-                    logger.error("Failed to queue verification email for user: {}", createdUser.getUsername(), e);
-                }
+                MDC.put("event", "user_verification_email_queued");
+                logger.info("Verification email queued for user: {}", createdUser.getUsername());
             }
 
             MDC.put("event", "user_create_success");
@@ -138,7 +119,7 @@ public class UserController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
-            if (!user.getUsername().equals(auth.getName())) {
+            if (!user.getId().equals(AuthenticatedUser.from(auth).getId())) {
                 MDC.put("event", "user_get_forbidden");
                 logger.warn("Forbidden access: user '{}' tried to access userId={}",
                         auth.getName(), userId);
@@ -181,7 +162,7 @@ public class UserController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
-            if (!user.getUsername().equals(auth.getName())) {
+            if (!user.getId().equals(AuthenticatedUser.from(auth).getId())) {
                 MDC.put("event", "user_update_forbidden");
                 logger.warn("Forbidden update: user '{}' tried to update userId={}",
                         auth.getName(), userId);
@@ -7,7 +7,8 @@ import java.util.UUID;
 @Entity
 @Table(name = "email_verification_tokens", indexes = {
         @Index(name = "idx_token", columnList = "token"),
-        @Index(name = "idx_user_email", columnList = "user_email")
+        @Index(name = "idx_user_email", columnList = "user_email"),
+        @Index(name = "idx_expires_at", columnList = "expires_at")
 })
 public class EmailVerificationToken {
 
@@ -3,16 +3,25 @@ package com.example.healthcheckapi.entity;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
 @Table(name = "images", indexes = {
-        @Index(name = "idx_images_product", columnList = "product_id")
+        @Index(name = "idx_images_product", columnList = "product_id"),
+        @Index(name = "idx_images_s3_bucket_path", columnList = "s3_bucket_path")
 })
 public class Image {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence (not IDENTITY) so batch uploads insert in one JDBC batch; see SequenceTableInitializer
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "image_seq")
+    @SequenceGenerator(name = "image_seq", sequenceName = "image_seq", allocationSize = 50)
     @Column(name = "image_id")
     @JsonProperty("image_id")
     private Long imageId;
@@ -29,11 +38,31 @@ public class Image {
     @JsonProperty("s3_bucket_path")
     private String s3BucketPath;
 
+    // Direct upload URL issued but not completed; such rows are hidden from every read
+    @Column(name = "pending", nullable = false)
+    @JsonIgnore
+    private boolean pending;
+
+    // Direct uploads only: the object's Last-Modified when completion validated it. The
+    // presigned PUT stays usable until it expires, and a later PUT changes this.
+    @Column(name = "upload_modified_at")
+    @JsonIgnore
+    private Instant uploadModifiedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     @JsonIgnore
     private Product product;
 
+    // Added in the background after upload; batch-loaded for image lists. The FK cascades
+    // so bulk image deletes (product delete) don't have to clear this table first.
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "image_variants", joinColumns = @JoinColumn(name = "image_id"))
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @BatchSize(size = 50)
+    @JsonProperty(value = "variants", access = JsonProperty.Access.READ_ONLY)
+    private List<ImageVariant> variants = new ArrayList<>();
+
     @JsonProperty(value = "product_id", access = JsonProperty.Access.READ_ONLY)
     public Long getProductId() {
         return product != null ? product.getId() : null;
@@ -77,6 +106,26 @@ public class Image {
         this.s3BucketPath = s3BucketPath;
     }
 
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+
+    public Instant getUploadModifiedAt() {
+        return uploadModifiedAt;
+    }
+
+    public void setUploadModifiedAt(Instant uploadModifiedAt) {
+        this.uploadModifiedAt = uploadModifiedAt;
+    }
+
+    public List<ImageVariant> getVariants() {
+        return variants;
+    }
+
     public Product getProduct() {
         return product;
     }
@@ -0,0 +1,35 @@
+package com.example.healthcheckapi.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A content-addressed image object and the number of images referencing it.
+ * Written with native upserts (ImageObjectRepository), never through the entity.
+ */
+@Entity
+@Table(name = "image_objects")
+public class ImageObject {
+
+    @Id
+    @Column(name = "object_key")
+    private String objectKey;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "date_created", nullable = false, updatable = false)
+    private Instant dateCreated;
+
+    public String getObjectKey() {
+        return objectKey;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public Instant getDateCreated() {
+        return dateCreated;
+    }
+}
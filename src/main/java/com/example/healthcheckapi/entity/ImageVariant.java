@@ -0,0 +1,45 @@
+package com.example.healthcheckapi.entity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+/**
+ * A resized copy of an image, stored next to the original
+ */
+@Embeddable
+public class ImageVariant {
+
+    @Column(name = "width", nullable = false)
+    @JsonProperty("width")
+    private int width;
+
+    @Column(name = "height", nullable = false)
+    @JsonProperty("height")
+    private int height;
+
+    @Column(name = "s3_bucket_path", nullable = false)
+    @JsonProperty("s3_bucket_path")
+    private String s3BucketPath;
+
+    protected ImageVariant() {
+    }
+
+    public ImageVariant(int width, int height, String s3BucketPath) {
+        this.width = width;
+        this.height = height;
+        this.s3BucketPath = s3BucketPath;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getS3BucketPath() {
+        return s3BucketPath;
+    }
+}
@@ -8,6 +8,7 @@ import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 @Entity
@@ -15,7 +16,9 @@ import java.util.List;
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence (not IDENTITY) so Hibernate can batch inserts; see SequenceTableInitializer
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     private Long id;
 
@@ -63,15 +66,16 @@ public class Product {
         return owner != null ? owner.getId() : null;
     }
 
+    // Truncated to the column's precision so the in-memory value (and the ETag) matches what is stored
     @PrePersist
     protected void onCreate() {
-        dateAdded = Instant.now();
-        dateLastUpdated = Instant.now();
+        dateAdded = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        dateLastUpdated = dateAdded;
     }
 
     @PreUpdate
     protected void onUpdate() {
-        dateLastUpdated = Instant.now();
+        dateLastUpdated = Instant.now().truncatedTo(ChronoUnit.MICROS);
     }
 
     // Setters for read-only fields that ignore client input
@@ -0,0 +1,36 @@
+package com.example.healthcheckapi.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A named, expiring lease on a cluster-wide scheduled job (scheduler_leases). Taken and
+ * renewed with conditional native statements (SchedulerLeaseRepository), never through
+ * the entity.
+ */
+@Entity
+@Table(name = "scheduler_leases")
+public class SchedulerLease {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "owner", length = 36)
+    private String owner;
+
+    @Column(name = "lease_until")
+    private Instant leaseUntil;
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Instant getLeaseUntil() {
+        return leaseUntil;
+    }
+}
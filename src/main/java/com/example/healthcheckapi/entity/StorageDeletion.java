@@ -0,0 +1,88 @@
+package com.example.healthcheckapi.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A stored object queued for deletion (storage_delete_outbox). Written in the same
+ * transaction as the delete that left the object unreferenced; removed by
+ * StorageDeletionService once the backend has deleted the object.
+ */
+@Entity
+@Table(name = "storage_delete_outbox", indexes = {
+        @Index(name = "idx_storage_delete_outbox_available", columnList = "available_at"),
+        @Index(name = "idx_storage_delete_outbox_lease", columnList = "lease_owner")
+})
+public class StorageDeletion {
+
+    @Id
+    // Pooled sequence so a product delete's rows go out as one batched INSERT; see SequenceTableInitializer
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "storage_delete_outbox_seq")
+    @SequenceGenerator(name = "storage_delete_outbox_seq", sequenceName = "storage_delete_outbox_seq",
+            allocationSize = 50)
+    private Long id;
+
+    @Column(name = "object_key", nullable = false, length = 512)
+    private String objectKey;
+
+    // The content key the object belongs to (itself, or the original of a variant)
+    @Column(name = "source_key", nullable = false, length = 512)
+    private String sourceKey;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "available_at", nullable = false)
+    private Instant availableAt;
+
+    @Column(name = "lease_owner", length = 36)
+    private String leaseOwner;
+
+    @Column(name = "lease_until")
+    private Instant leaseUntil;
+
+    @Column(name = "date_created", nullable = false, updatable = false)
+    private Instant dateCreated;
+
+    protected StorageDeletion() {
+    }
+
+    public StorageDeletion(String objectKey, String sourceKey, Instant now) {
+        this.objectKey = objectKey;
+        this.sourceKey = sourceKey;
+        this.availableAt = now;
+        this.dateCreated = now;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getObjectKey() {
+        return objectKey;
+    }
+
+    public String getSourceKey() {
+        return sourceKey;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Instant getAvailableAt() {
+        return availableAt;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public Instant getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public Instant getDateCreated() {
+        return dateCreated;
+    }
+}
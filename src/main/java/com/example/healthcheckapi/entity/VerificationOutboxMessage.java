@@ -0,0 +1,94 @@
+package com.example.healthcheckapi.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A verification message waiting to be published (verification_outbox). Written in the
+ * signup transaction; removed by VerificationOutboxService once SNS has accepted it. It holds
+ * no token: the relay issues one, and renders the message, on every send attempt.
+ * A message SNS rejects stays, parked (rejected_at set), so it can be replayed by clearing
+ * rejected_at once the cause is fixed.
+ */
+@Entity
+@Table(name = "verification_outbox", indexes = {
+        @Index(name = "idx_verification_outbox_available", columnList = "available_at"),
+        @Index(name = "idx_verification_outbox_lease", columnList = "lease_owner")
+})
+public class VerificationOutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "email", nullable = false)
+    private String email;
+
+    // Host the verification link points at
+    @Column(name = "verification_domain", nullable = false)
+    private String domain;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "available_at", nullable = false)
+    private Instant availableAt;
+
+    @Column(name = "lease_owner", length = 36)
+    private String leaseOwner;
+
+    @Column(name = "lease_until")
+    private Instant leaseUntil;
+
+    @Column(name = "date_created", nullable = false, updatable = false)
+    private Instant dateCreated;
+
+    @Column(name = "rejected_at")
+    private Instant rejectedAt;
+
+    protected VerificationOutboxMessage() {
+    }
+
+    public VerificationOutboxMessage(String email, String domain, Instant now) {
+        this.email = email;
+        this.domain = domain;
+        this.availableAt = now;
+        this.dateCreated = now;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Instant getAvailableAt() {
+        return availableAt;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public Instant getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public Instant getDateCreated() {
+        return dateCreated;
+    }
+
+    public Instant getRejectedAt() {
+        return rejectedAt;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.healthcheckapi.exception;
+
+/**
+ * Thrown when a bounded worker pool rejects a task. Mapped to 503 with a
+ * Retry-After header by GlobalExceptionHandler.
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
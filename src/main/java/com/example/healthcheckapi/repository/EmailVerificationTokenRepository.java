@@ -2,11 +2,23 @@ package com.example.healthcheckapi.repository;
 
 import com.example.healthcheckapi.entity.EmailVerificationToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
 public interface EmailVerificationTokenRepository extends JpaRepository<EmailVerificationToken, Long> {
     Optional<EmailVerificationToken> findByToken(String token);
-    Optional<EmailVerificationToken> findByUserEmailAndVerifiedFalse(String userEmail);
-}
\ No newline at end of file
+    // Every send attempt issues a token, so an email can have several
+    boolean existsByUserEmailAndVerifiedFalse(String userEmail);
+
+    // One bounded chunk, oldest first along idx_expires_at
+    @Modifying
+    @Query(value = "DELETE FROM email_verification_tokens WHERE expires_at < :cutoff ORDER BY expires_at LIMIT :limit",
+            nativeQuery = true)
+    int purgeExpiredBefore(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+}
@@ -2,9 +2,19 @@ package com.example.healthcheckapi.repository;
 
 import com.example.healthcheckapi.entity.HealthCheck;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+
 @Repository
 public interface HealthCheckRepository extends JpaRepository<HealthCheck, Long> {
-    // No additional methods needed
+
+    // One bounded chunk, oldest first along idx_check_datetime
+    @Modifying
+    @Query(value = "DELETE FROM health_checks WHERE check_datetime < :cutoff ORDER BY check_datetime LIMIT :limit",
+            nativeQuery = true)
+    int purgeBefore(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
 }
@@ -0,0 +1,41 @@
+package com.example.healthcheckapi.repository;
+
+import com.example.healthcheckapi.entity.ImageObject;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImageObjectRepository extends JpaRepository<ImageObject, String> {
+
+    // MySQL reports 1 affected row when the row is inserted, 2 when the update branch runs
+    // (which includes reviving a tombstone; that waits while the delete relay holds its lock)
+    @Modifying
+    @Query(value = "INSERT INTO image_objects (object_key, ref_count, date_created) VALUES (:key, 1, :now) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1", nativeQuery = true)
+    int acquire(@Param("key") String key, @Param("now") Instant now);
+
+    @Modifying
+    @Query("update ImageObject o set o.refCount = o.refCount - 1 where o.objectKey = :key")
+    int decrement(@Param("key") String key);
+
+    boolean existsByObjectKeyAndRefCountGreaterThan(String objectKey, int refCount);
+
+    boolean existsByObjectKeyAndRefCountLessThanEqual(String objectKey, int refCount);
+
+    // The delete relay's lock; key order so concurrent relays can't deadlock each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<ImageObject> findByObjectKeyInOrderByObjectKey(Collection<String> objectKeys);
+
+    @Modifying
+    @Query("delete from ImageObject o where o.objectKey in :keys and o.refCount <= 0")
+    int deleteTombstones(@Param("keys") Collection<String> keys);
+}
@@ -1,8 +1,18 @@
 package com.example.healthcheckapi.repository;
 
 import com.example.healthcheckapi.entity.Image;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,4 +20,49 @@ import java.util.Optional;
 public interface ImageRepository extends JpaRepository<Image, Long> {
     List<Image> findByProduct_Id(Long productId);
     Optional<Image> findByImageIdAndProduct_Id(Long imageId, Long productId);
+
+    // Reads the API serves: completed images only (see Image.pending)
+    List<Image> findByProduct_IdAndPendingFalse(Long productId);
+    Optional<Image> findByImageIdAndProduct_IdAndPendingFalse(Long imageId, Long productId);
+
+    // Expired direct uploads; rows another sweeper has locked are skipped, not waited for
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<Image> findByPendingTrueAndDateCreatedBeforeOrderByImageId(Instant cutoff, Limit limit);
+
+    @Modifying
+    @Query("update Image i set i.pending = false, i.dateCreated = :now, i.uploadModifiedAt = :modifiedAt " +
+            "where i.imageId = :imageId and i.pending = true")
+    int completePending(@Param("imageId") Long imageId, @Param("now") Instant now,
+                        @Param("modifiedAt") Instant modifiedAt);
+
+    // Only while still pending: a concurrent completion wins over a rejection
+    @Modifying
+    @Query("delete from Image i where i.imageId = :imageId and i.pending = true")
+    int deletePending(@Param("imageId") Long imageId);
+
+    // Row lock for the rest of the transaction; recording variants for the image waits on it
+    // (the image_variants foreign key check takes a shared lock on this row)
+    @Query(value = "SELECT image_id FROM images WHERE image_id = :imageId FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockById(@Param("imageId") Long imageId);
+
+    // Locking read: the latest committed variants, not the transaction's snapshot
+    @Query(value = "SELECT s3_bucket_path FROM image_variants WHERE image_id = :imageId FOR UPDATE", nativeQuery = true)
+    List<String> lockVariantKeys(@Param("imageId") Long imageId);
+
+    // Another image over the same stored object that already has its variants
+    Optional<Image> findFirstByS3BucketPathAndImageIdNotAndVariantsIsNotEmpty(String s3BucketPath, Long imageId);
+
+    // size() is a count subquery on image_variants; the image row itself is never loaded
+    @Query("select size(i.variants) from Image i where i.imageId = :imageId and i.product.id = :productId " +
+            "and i.pending = false")
+    Optional<Integer> findVariantCount(@Param("imageId") Long imageId, @Param("productId") Long productId);
+
+    @Query("select new com.example.healthcheckapi.repository.ImageVersion(i.imageId, size(i.variants)) " +
+            "from Image i where i.product.id = :productId and i.pending = false order by i.imageId")
+    List<ImageVersion> findImageVersionsByProductId(@Param("productId") Long productId);
+
+    @Query("select new com.example.healthcheckapi.repository.StoredImageKey(i.imageId, i.s3BucketPath, v.s3BucketPath) " +
+            "from Image i left join i.variants v where i.product.id = :productId")
+    List<StoredImageKey> findStoredKeysByProductId(@Param("productId") Long productId);
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.example.healthcheckapi.repository;
+
+/**
+ * What identifies an image's metadata for its ETag: the row itself is immutable,
+ * only variants are added after upload
+ */
+public record ImageVersion(Long imageId, Integer variantCount) {
+}
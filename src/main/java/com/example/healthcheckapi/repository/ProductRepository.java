@@ -1,10 +1,60 @@
 package com.example.healthcheckapi.repository;
 
 import com.example.healthcheckapi.entity.Product;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
     boolean existsBySku(String sku);
+
+    boolean existsBySkuAndIdNot(String sku, Long id);
+
+    List<Product> findBySkuIn(Collection<String> skus);
+
+    // Row lock for the rest of the transaction; an image insert for the product waits on it
+    // (its foreign key check takes a shared lock on this row)
+    @Query(value = "SELECT id FROM products WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockById(@Param("id") Long id);
+
+    @Query("select new com.example.healthcheckapi.repository.ProductSummary(" +
+            "p.id, p.name, p.description, p.sku, p.manufacturer, p.quantity, " +
+            "p.dateAdded, p.dateLastUpdated, p.owner.id) " +
+            "from Product p where p.id = :id")
+    Optional<ProductSummary> findSummaryById(@Param("id") Long id);
+
+    // Keyset page on the primary key. p.owner.id reads the FK column, no users join.
+    // Fetch size MIN_VALUE makes MySQL Connector/J stream rows instead of buffering them.
+    @Query("select new com.example.healthcheckapi.repository.ProductSummary(" +
+            "p.id, p.name, p.description, p.sku, p.manufacturer, p.quantity, " +
+            "p.dateAdded, p.dateLastUpdated, p.owner.id) " +
+            "from Product p where p.id > :after order by p.id")
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<ProductSummary> streamPage(@Param("after") long after, Limit limit);
+
+    @Query("select new com.example.healthcheckapi.repository.ProductSummary(" +
+            "p.id, p.name, p.description, p.sku, p.manufacturer, p.quantity, " +
+            "p.dateAdded, p.dateLastUpdated, p.owner.id) " +
+            "from Product p where p.owner.id = :ownerId and p.id > :after order by p.id")
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<ProductSummary> streamPageByOwner(@Param("ownerId") Long ownerId, @Param("after") long after, Limit limit);
 }
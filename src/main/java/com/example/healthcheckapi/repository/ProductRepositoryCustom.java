@@ -0,0 +1,25 @@
+package com.example.healthcheckapi.repository;
+
+import com.example.healthcheckapi.entity.Product;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Single-statement product writes with the ownership check in the WHERE clause
+ */
+public interface ProductRepositoryCustom {
+
+    /**
+     * UPDATE only the non-null fields of changes, plus date_last_updated = now, where the
+     * row has this id and owner (and, if versions is non-null, one of those
+     * date_last_updated values). Returns the affected row count.
+     */
+    int updateOwned(Long id, Long ownerId, Collection<Instant> versions, Product changes, Instant now);
+
+    /**
+     * DELETE the product and its image rows under the same predicate. Returns the number
+     * of products deleted.
+     */
+    int deleteOwned(Long id, Long ownerId, Collection<Instant> versions);
+}
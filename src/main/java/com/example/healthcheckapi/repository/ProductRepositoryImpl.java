@@ -0,0 +1,85 @@
+package com.example.healthcheckapi.repository;
+
+import com.example.healthcheckapi.entity.Image;
+import com.example.healthcheckapi.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaDelete;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Criteria bulk statements behind ProductRepositoryCustom. They bypass the persistence
+ * context (and @PreUpdate), so date_last_updated is set explicitly.
+ */
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateOwned(Long id, Long ownerId, Collection<Instant> versions, Product changes, Instant now) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Product> update = cb.createCriteriaUpdate(Product.class);
+        Root<Product> product = update.from(Product.class);
+
+        if (changes.getName() != null) {
+            update.set(product.<String>get("name"), changes.getName());
+        }
+        if (changes.getDescription() != null) {
+            update.set(product.<String>get("description"), changes.getDescription());
+        }
+        if (changes.getSku() != null) {
+            update.set(product.<String>get("sku"), changes.getSku());
+        }
+        if (changes.getManufacturer() != null) {
+            update.set(product.<String>get("manufacturer"), changes.getManufacturer());
+        }
+        if (changes.getQuantity() != null) {
+            update.set(product.<Integer>get("quantity"), changes.getQuantity());
+        }
+        update.set(product.<Instant>get("dateLastUpdated"), now);
+
+        update.where(ownedBy(cb, product, id, ownerId, versions));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    public int deleteOwned(Long id, Long ownerId, Collection<Instant> versions) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        // Bulk deletes don't cascade, so remove the image rows first (same predicate via subquery)
+        CriteriaDelete<Image> deleteImages = cb.createCriteriaDelete(Image.class);
+        Root<Image> image = deleteImages.from(Image.class);
+        Subquery<Long> owned = deleteImages.subquery(Long.class);
+        Root<Product> ownedProduct = owned.from(Product.class);
+        owned.select(ownedProduct.get("id")).where(ownedBy(cb, ownedProduct, id, ownerId, versions));
+        deleteImages.where(image.get("product").get("id").in(owned));
+        entityManager.createQuery(deleteImages).executeUpdate();
+
+        CriteriaDelete<Product> deleteProduct = cb.createCriteriaDelete(Product.class);
+        Root<Product> product = deleteProduct.from(Product.class);
+        deleteProduct.where(ownedBy(cb, product, id, ownerId, versions));
+        return entityManager.createQuery(deleteProduct).executeUpdate();
+    }
+
+    // owner.id compares the FK column directly; no join to users
+    private static Predicate ownedBy(CriteriaBuilder cb, Root<Product> product, Long id, Long ownerId,
+                                     Collection<Instant> versions) {
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.equal(product.get("id"), id));
+        predicates.add(cb.equal(product.get("owner").get("id"), ownerId));
+        if (versions != null) {
+            predicates.add(product.get("dateLastUpdated").in(versions));
+        }
+        return cb.and(predicates.toArray(new Predicate[0]));
+    }
+}
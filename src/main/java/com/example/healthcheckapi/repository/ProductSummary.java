@@ -0,0 +1,22 @@
+package com.example.healthcheckapi.repository;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * Column projection of a product for listing: same JSON shape as Product,
+ * read without loading the entity or joining its owner.
+ */
+public record ProductSummary(
+        Long id,
+        String name,
+        String description,
+        String sku,
+        String manufacturer,
+        Integer quantity,
+        @JsonProperty("date_added") Instant dateAdded,
+        @JsonProperty("date_last_updated") Instant dateLastUpdated,
+        @JsonProperty("owner_user_id") Long ownerId
+) {
+}
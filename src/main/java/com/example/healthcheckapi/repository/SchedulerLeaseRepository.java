@@ -0,0 +1,31 @@
+package com.example.healthcheckapi.repository;
+
+import com.example.healthcheckapi.entity.SchedulerLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLease, String> {
+
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO scheduler_leases (name, owner, lease_until) VALUES (:name, NULL, NULL)",
+            nativeQuery = true)
+    int ensure(@Param("name") String name);
+
+    // Matches (1) only when the lease is free, expired or already ours, so one owner wins
+    @Modifying
+    @Query(value = "UPDATE scheduler_leases SET owner = :owner, lease_until = :until WHERE name = :name " +
+            "AND (owner IS NULL OR owner = :owner OR lease_until < :now)", nativeQuery = true)
+    int acquire(@Param("name") String name, @Param("owner") String owner, @Param("now") Instant now,
+                @Param("until") Instant until);
+
+    @Modifying
+    @Query(value = "UPDATE scheduler_leases SET owner = NULL, lease_until = NULL WHERE name = :name AND owner = :owner",
+            nativeQuery = true)
+    int release(@Param("name") String name, @Param("owner") String owner);
+}
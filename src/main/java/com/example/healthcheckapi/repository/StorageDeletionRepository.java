@@ -0,0 +1,32 @@
+package com.example.healthcheckapi.repository;
+
+import com.example.healthcheckapi.entity.StorageDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StorageDeletionRepository extends JpaRepository<StorageDeletion, Long> {
+
+    // One statement claims the oldest due rows; an expired lease (a relay that died
+    // mid-batch) makes its rows claimable again
+    @Modifying
+    @Query(value = "UPDATE storage_delete_outbox SET lease_owner = :owner, lease_until = :until " +
+            "WHERE available_at <= :now AND (lease_until IS NULL OR lease_until < :now) " +
+            "ORDER BY id LIMIT :limit", nativeQuery = true)
+    int claim(@Param("owner") String owner, @Param("now") Instant now, @Param("until") Instant until,
+              @Param("limit") int limit);
+
+    List<StorageDeletion> findByLeaseOwner(String owner);
+
+    @Modifying
+    @Query("update StorageDeletion d set d.attempts = d.attempts + 1, d.availableAt = :retryAt, " +
+            "d.leaseOwner = null, d.leaseUntil = null where d.id in :ids")
+    int reschedule(@Param("ids") Collection<Long> ids, @Param("retryAt") Instant retryAt);
+}
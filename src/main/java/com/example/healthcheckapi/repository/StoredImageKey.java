@@ -0,0 +1,8 @@
+package com.example.healthcheckapi.repository;
+
+/**
+ * An image's stored object, and one of its variants (null if it has none); an image with
+ * several variants appears once per variant
+ */
+public record StoredImageKey(Long imageId, String key, String variantKey) {
+}
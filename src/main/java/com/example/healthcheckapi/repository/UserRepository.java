@@ -2,11 +2,22 @@ package com.example.healthcheckapi.repository;
 
 import com.example.healthcheckapi.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
+
+    // Only an unverified user changes, so verifying twice is a no-op (0 rows)
+    @Modifying
+    @Query("update User u set u.emailVerified = true, u.accountUpdated = :now " +
+            "where u.username = :username and u.emailVerified = false")
+    int markEmailVerified(@Param("username") String username, @Param("now") Instant now);
 }
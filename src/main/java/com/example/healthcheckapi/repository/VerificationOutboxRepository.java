@@ -0,0 +1,57 @@
+package com.example.healthcheckapi.repository;
+
+import com.example.healthcheckapi.entity.VerificationOutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface VerificationOutboxRepository extends JpaRepository<VerificationOutboxMessage, Long> {
+
+    // One statement claims the oldest due rows; an expired lease (a relay that died
+    // mid-batch) makes its rows claimable again. Rejected rows are parked, never claimed.
+    @Modifying
+    @Query(value = "UPDATE verification_outbox SET lease_owner = :owner, lease_until = :until " +
+            "WHERE available_at <= :now AND (lease_until IS NULL OR lease_until < :now) " +
+            "AND rejected_at IS NULL " +
+            "ORDER BY id LIMIT :limit", nativeQuery = true)
+    int claim(@Param("owner") String owner, @Param("now") Instant now, @Param("until") Instant until,
+              @Param("limit") int limit);
+
+    List<VerificationOutboxMessage> findByLeaseOwner(String owner);
+
+    // Only rows still held by this owner: a relay whose lease lapsed can't take them back
+    @Modifying
+    @Query("update VerificationOutboxMessage m set m.leaseUntil = :until where m.leaseOwner = :owner")
+    int extendLease(@Param("owner") String owner, @Param("until") Instant until);
+
+    List<VerificationOutboxMessage> findByEmail(String email);
+
+    long countByRejectedAtIsNull();
+
+    // Ids grow with insertion, so the lowest is the oldest row (a primary key walk)
+    Optional<VerificationOutboxMessage> findFirstByRejectedAtIsNullOrderByIdAsc();
+
+    // Settling statements skip rows another relay reclaimed after this owner's lease expired
+    @Modifying
+    @Query("delete from VerificationOutboxMessage m where m.id in :ids and m.leaseOwner = :owner")
+    int deleteLeased(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+
+    @Modifying
+    @Query("update VerificationOutboxMessage m set m.attempts = m.attempts + 1, m.availableAt = :retryAt, " +
+            "m.leaseOwner = null, m.leaseUntil = null where m.id in :ids and m.leaseOwner = :owner")
+    int reschedule(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+                   @Param("retryAt") Instant retryAt);
+
+    @Modifying
+    @Query("update VerificationOutboxMessage m set m.attempts = m.attempts + 1, m.rejectedAt = :now, " +
+            "m.leaseOwner = null, m.leaseUntil = null where m.id in :ids and m.leaseOwner = :owner")
+    int park(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("now") Instant now);
+}
@@ -0,0 +1,148 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.config.AuthenticatedUser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Issues and validates short-lived HMAC-signed bearer tokens.
+ *
+ * Token format: {@code <kid>.<base64url payload>.<base64url signature>} where the
+ * payload is {"uid", "sub", "ev", "exp"}. Validation is CPU only: no DB access.
+ *
+ * Without auth.token.signing-keys, bearer tokens are off: a per-process key would make a
+ * token fail on every other instance and on every deploy. auth.token.allow-ephemeral-key
+ * turns them on with such a key for local, single-instance development.
+ */
+@Service
+public class AuthTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthTokenService.class);
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${auth.token.signing-keys:}")
+    private String signingKeys;
+
+    @Value("${auth.token.active-key-id:}")
+    private String activeKeyId;
+
+    @Value("${auth.token.ttl-seconds:900}")
+    private long ttlSeconds;
+
+    @Value("${auth.token.allow-ephemeral-key:false}")
+    private boolean allowEphemeralKey;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private HmacKeyRing keyRing;
+
+    @PostConstruct
+    public void init() {
+        keyRing = HmacKeyRing.parse(signingKeys, activeKeyId);
+        if (keyRing == null && allowEphemeralKey) {
+            log.warn("No auth token signing keys configured. Using an ephemeral key (auth.token.allow-ephemeral-key); tokens will not be valid on other instances.");
+            keyRing = HmacKeyRing.ephemeral();
+        }
+        if (keyRing == null) {
+            log.warn("No auth token signing keys configured. Bearer tokens are disabled; HTTP Basic only.");
+            return;
+        }
+        log.info("Auth token service initialized: activeKeyId={}, ttl={}s", keyRing.getActiveKeyId(), ttlSeconds);
+    }
+
+    /**
+     * False when no signing keys are configured: nothing is issued and every token is rejected
+     */
+    public boolean isEnabled() {
+        return keyRing != null;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public String issue(AuthenticatedUser user) {
+        if (keyRing == null) {
+            throw new IllegalStateException("Bearer tokens are disabled: no signing keys configured");
+        }
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("uid", user.getId());
+        payload.put("sub", user.getUsername());
+        payload.put("ev", user.isEmailVerified());
+        payload.put("exp", Instant.now().plusSeconds(ttlSeconds).getEpochSecond());
+
+        try {
+            String kid = keyRing.getActiveKeyId();
+            String body = ENCODER.encodeToString(objectMapper.writeValueAsBytes(payload));
+            String signed = kid + "." + body;
+            counter("issued").increment();
+            return signed + "." + ENCODER.encodeToString(keyRing.sign(signed));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to issue auth token", e);
+        }
+    }
+
+    /**
+     * Validate a token and return its principal, or null if it is malformed, forged or expired
+     */
+    public AuthenticatedUser parse(String token) {
+        if (keyRing == null) {
+            counter("disabled").increment();
+            return null;
+        }
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            counter("malformed").increment();
+            return null;
+        }
+
+        try {
+            String signed = parts[0] + "." + parts[1];
+            if (!keyRing.verify(parts[0], signed, DECODER.decode(parts[2]))) {
+                counter("bad_signature").increment();
+                return null;
+            }
+
+            JsonNode payload = objectMapper.readTree(new String(DECODER.decode(parts[1]), StandardCharsets.UTF_8));
+            if (payload.path("exp").asLong(0) <= Instant.now().getEpochSecond()) {
+                counter("expired").increment();
+                return null;
+            }
+
+            counter("valid").increment();
+            return new AuthenticatedUser(
+                    payload.path("uid").asLong(),
+                    payload.path("sub").asText(),
+                    payload.path("ev").asBoolean(false));
+
+        } catch (Exception e) {
+            counter("malformed").increment();
+            return null;
+        }
+    }
+
+    private Counter counter(String result) {
+        return Counter.builder("auth.token")
+                .tag("result", result)
+                .description("Bearer token issue/validation outcomes")
+                .register(registry);
+    }
+}
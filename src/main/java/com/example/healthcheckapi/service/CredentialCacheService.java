@@ -0,0 +1,133 @@
+package com.example.healthcheckapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Cache of recently verified HTTP Basic credentials.
+ * - Entries are keyed by an HMAC of username + password, never the plaintext
+ * - Bounded by size and TTL; password changes and email verification invalidate
+ *   immediately, but only on this instance. Other instances keep their entries until the
+ *   TTL (auth.cache.ttl-seconds, default 5s) runs out, so it bounds how long an old
+ *   password keeps working there.
+ * - Hit/miss counts are exported as "auth.credentials" cache metrics
+ */
+@Service
+public class CredentialCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(CredentialCacheService.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    @Value("${auth.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${auth.cache.ttl-seconds:5}")
+    private long ttlSeconds;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private SecretKeySpec hmacKey;
+    private Cache<String, UserDetails> verified;
+    private Cache<String, Long> invalidatedAt;
+
+    @PostConstruct
+    public void init() {
+        // Per-process key: cache keys are useless outside this JVM
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        hmacKey = new SecretKeySpec(secret, HMAC_ALGORITHM);
+
+        verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        invalidatedAt = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+
+        CaffeineCacheMetrics.monitor(registry, verified, "auth.credentials");
+        log.info("Credential cache initialized: enabled={}, maxSize={}, ttl={}s", enabled, maxSize, ttlSeconds);
+    }
+
+    /**
+     * Monotonic stamp to take before verifying credentials against the database
+     */
+    public long stamp() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Return the cached principal for these credentials, or null on a miss
+     */
+    public UserDetails get(String username, String password) {
+        if (!enabled) {
+            return null;
+        }
+        return verified.getIfPresent(cacheKey(username, password));
+    }
+
+    /**
+     * Cache a successful verification. Skipped if the user was invalidated after
+     * the verification started, so a racing password change is never masked.
+     */
+    public void put(String username, String password, UserDetails principal, long verifiedSince) {
+        if (!enabled) {
+            return;
+        }
+        Long invalidated = invalidatedAt.getIfPresent(username);
+        if (invalidated != null && invalidated - verifiedSince >= 0) {
+            return;
+        }
+        verified.put(cacheKey(username, password), principal);
+    }
+
+    /**
+     * Drop every cached verification for a user (e.g. after a password change)
+     */
+    public void invalidate(String username) {
+        invalidatedAt.put(username, System.nanoTime());
+        verified.asMap().values().removeIf(principal -> username.equals(principal.getUsername()));
+        log.info("Credential cache invalidated for user: {}", username);
+    }
+
+    public void invalidateAll() {
+        verified.invalidateAll();
+        invalidatedAt.invalidateAll();
+    }
+
+    private String cacheKey(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(hmacKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(password.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC not available", e);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.entity.Image;
+import com.example.healthcheckapi.entity.Product;
+import com.example.healthcheckapi.repository.ImageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Presigned direct-to-storage uploads: the client PUTs the bytes to the storage backend
+ * itself, so they never pass through this service or a request thread.
+ * - createUpload inserts a pending Image row (hidden from every read) under a fresh key
+ *   and returns a presigned PUT for it; backends that can't presign (local, memory) don't
+ *   offer the flow
+ * - complete checks the object with a HEAD (stat): it must exist, be non-empty, within
+ *   image.direct-upload.max-bytes and an image type. The row is then made visible and the
+ *   object's reference taken in one transaction; anything else rejected removes both,
+ *   unless a concurrent completion got there first.
+ * - The presigned PUT can't be revoked, so it stays usable until it expires, after
+ *   completion too. Completion records the object's Last-Modified, and replacedSinceCompletion
+ *   tells readers that the bytes are no longer the ones validated.
+ * - Pending rows older than the URL lifetime plus a grace period are swept in batches;
+ *   whatever the client did upload goes to the delete outbox
+ * - Direct uploads are not content-addressed: the digest would mean reading the object back
+ */
+@Service
+public class DirectUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectUploadService.class);
+
+    private static final Set<String> ALLOWED_CONTENT_TYPES = Set.of("image/jpeg", "image/png");
+
+    @Value("${image.direct-upload.url-ttl-seconds:900}")
+    private long urlTtlSeconds;
+
+    @Value("${image.direct-upload.max-bytes:5242880}")
+    private long maxBytes;
+
+    @Value("${image.direct-upload.sweep-grace-seconds:300}")
+    private long sweepGraceSeconds;
+
+    @Value("${image.direct-upload.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private StorageBackend storage;
+
+    @Autowired
+    private ImageObjectService imageObjects;
+
+    @Autowired
+    private StorageDeletionService storageDeletions;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public DirectUploadService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * The pending image and where its bytes go
+     */
+    public record PendingUpload(Image image, StorageBackend.PresignedPut put) {
+    }
+
+    /**
+     * Outcome of completing a direct upload; image is set when it completed
+     */
+    public record Completion(Status status, Image image) {
+
+        public enum Status {
+            COMPLETED, NOT_UPLOADED, REJECTED
+        }
+    }
+
+    /**
+     * Empty when the active backend can't presign uploads
+     */
+    public Optional<PendingUpload> createUpload(Product product, String fileName, String contentType) {
+        String key = StorageBackend.imageKey(product.getOwner().getId(), product.getId(), fileName);
+        Optional<StorageBackend.PresignedPut> put = storage.presignPut(key, contentType, Duration.ofSeconds(urlTtlSeconds));
+        if (put.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Image image = new Image();
+        image.setFileName(fileName);
+        image.setS3BucketPath(key);
+        image.setProduct(product);
+        image.setPending(true);
+        Image saved = imageRepository.save(image);
+        registry.counter("image.direct_upload", "outcome", "issued").increment();
+        return Optional.of(new PendingUpload(saved, put.get()));
+    }
+
+    /**
+     * The image (pending or not) the upload id names, if it belongs to the product
+     */
+    public Image findUpload(Long imageId, Long productId) {
+        return imageRepository.findByImageIdAndProduct_Id(imageId, productId).orElse(null);
+    }
+
+    public Completion complete(Image image) throws IOException {
+        if (!image.isPending()) {
+            // Completed before (a retried request): same answer again
+            return new Completion(Completion.Status.COMPLETED, image);
+        }
+
+        // HEAD only; the bytes stay in storage
+        String key = image.getS3BucketPath();
+        StorageBackend.ObjectStat stat = storage.stat(key).orElse(null);
+        if (stat == null) {
+            registry.counter("image.direct_upload", "outcome", "not_uploaded").increment();
+            return new Completion(Completion.Status.NOT_UPLOADED, null);
+        }
+
+        if (stat.size() == 0 || stat.size() > maxBytes
+                || stat.contentType() != null && !ALLOWED_CONTENT_TYPES.contains(stat.contentType())) {
+            logger.warn("Direct upload {} rejected: size={}, contentType={}",
+                    image.getImageId(), stat.size(), stat.contentType());
+            // Row and object go together; the client can ask for a new URL. A request that
+            // completed the upload meanwhile owns the object, so nothing is removed then.
+            boolean removed = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (imageRepository.deletePending(image.getImageId()) == 0) {
+                    return false;
+                }
+                storageDeletions.enqueue(key, List.of(key));
+                return true;
+            }));
+            if (!removed) {
+                return current(image);
+            }
+            registry.counter("image.direct_upload", "outcome", "rejected").increment();
+            return new Completion(Completion.Status.REJECTED, null);
+        }
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        Instant modifiedAt = modifiedAt(stat);
+        boolean completed = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (imageRepository.completePending(image.getImageId(), now, modifiedAt) == 0) {
+                return false;
+            }
+            imageObjects.acquire(key);
+            return true;
+        }));
+        if (!completed) {
+            return current(image);
+        }
+
+        image.setPending(false);
+        image.setDateCreated(now);
+        image.setUploadModifiedAt(modifiedAt);
+        eventPublisher.publishEvent(new ImageStoredEvent(image.getImageId(), key));
+        registry.counter("image.direct_upload", "outcome", "completed").increment();
+        logger.info("Direct upload completed: imageId={}, key={}, size={}", image.getImageId(), key, stat.size());
+        return new Completion(Completion.Status.COMPLETED, image);
+    }
+
+    /**
+     * Whether a directly uploaded object was PUT again after completion validated it (its
+     * bytes may no longer be an acceptable image); always false for other images
+     */
+    public boolean replacedSinceCompletion(Image image, StorageBackend.ObjectStat stat) {
+        return image.getUploadModifiedAt() != null && stat.lastModified() != null
+                && !image.getUploadModifiedAt().equals(modifiedAt(stat));
+    }
+
+    // Stored with the column's precision, so a re-read compares equal
+    private static Instant modifiedAt(StorageBackend.ObjectStat stat) {
+        return stat.lastModified() != null ? stat.lastModified().truncatedTo(ChronoUnit.MICROS) : null;
+    }
+
+    // Completed by a concurrent request, or swept meanwhile
+    private Completion current(Image image) {
+        return imageRepository.findByImageIdAndProduct_IdAndPendingFalse(image.getImageId(), image.getProductId())
+                .map(current -> new Completion(Completion.Status.COMPLETED, current))
+                .orElse(new Completion(Completion.Status.NOT_UPLOADED, null));
+    }
+
+    @Scheduled(fixedDelayString = "${image.direct-upload.sweep-interval-ms:60000}")
+    public void sweep() {
+        try {
+            int swept;
+            do {
+                swept = sweepBatch();
+            } while (swept == sweepBatchSize);
+        } catch (RuntimeException e) {
+            logger.error("Pending upload sweep failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Delete one batch of expired pending rows and queue their objects; returns the rows removed
+     */
+    int sweepBatch() {
+        Instant cutoff = Instant.now().minusSeconds(urlTtlSeconds + sweepGraceSeconds);
+        Integer swept = transactionTemplate.execute(status -> {
+            List<Image> expired = imageRepository.findByPendingTrueAndDateCreatedBeforeOrderByImageId(
+                    cutoff, Limit.of(sweepBatchSize));
+            if (expired.isEmpty()) {
+                return 0;
+            }
+            imageRepository.deleteAllInBatch(expired);
+            // Most never got a PUT; deleting a missing key is not an error
+            for (Image image : expired) {
+                storageDeletions.enqueue(image.getS3BucketPath(), List.of(image.getS3BucketPath()));
+            }
+            return expired.size();
+        });
+        if (swept != null && swept > 0) {
+            registry.counter("image.direct_upload", "outcome", "expired").increment(swept);
+            logger.info("Swept {} expired pending uploads", swept);
+        }
+        return swept != null ? swept : 0;
+    }
+}
@@ -4,19 +4,64 @@ import com.example.healthcheckapi.entity.EmailVerificationToken;
 import com.example.healthcheckapi.entity.User;
 import com.example.healthcheckapi.repository.EmailVerificationTokenRepository;
 import com.example.healthcheckapi.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Optional;
+import java.util.UUID;
 
+/**
+ * Email verification tokens, in one of two modes (email.verification.token-mode):
+ * - table (default): a random token stored in email_verification_tokens, looked up and
+ *   marked used on verify
+ * - signed: {@code <kid>.<base64url payload>.<base64url signature>}, an HMAC-signed token
+ *   whose payload is {"jti", "sub", "exp"}. Issuing writes nothing and verifying is CPU
+ *   only, apart from the one UPDATE that sets users.email_verified.
+ * - Signed-token replay protection: used token ids are kept in a bounded in-memory set until
+ *   they expire. Another instance won't know them, but the UPDATE only applies while the
+ *   user is unverified, so a replay there changes nothing either. An id is only kept once
+ *   its verification commits; a failed attempt leaves the link usable.
+ */
 @Service
 @Transactional
 public class EmailVerificationService {
 
     private static final Logger log = LoggerFactory.getLogger(EmailVerificationService.class);
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${email.verification.token-mode:table}")
+    private String tokenMode;
+
+    @Value("${email.verification.signing-keys:}")
+    private String signingKeys;
+
+    @Value("${email.verification.active-key-id:}")
+    private String activeKeyId;
+
+    @Value("${email.verification.token-ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${email.verification.replay-cache-size:100000}")
+    private long replayCacheSize;
 
     @Autowired
     private EmailVerificationTokenRepository tokenRepository;
@@ -24,13 +69,57 @@ public class EmailVerificationService {
     @Autowired
     private UserRepository userRepository;
 
-    public EmailVerificationToken createToken(String email) {
+    @Autowired
+    private CredentialCacheService credentialCacheService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private boolean signedTokens;
+    private HmacKeyRing keyRing;
+    private Cache<String, Boolean> usedTokenIds;
+
+    @PostConstruct
+    public void init() {
+        signedTokens = "signed".equalsIgnoreCase(tokenMode);
+        if (!signedTokens && !"table".equalsIgnoreCase(tokenMode)) {
+            throw new IllegalArgumentException("email.verification.token-mode must be 'table' or 'signed', got '" + tokenMode + "'");
+        }
+        if (signedTokens) {
+            keyRing = HmacKeyRing.parse(signingKeys, activeKeyId);
+            if (keyRing == null) {
+                log.warn("No email verification signing keys configured. Using an ephemeral key; links will not verify on other instances or after a restart.");
+                keyRing = HmacKeyRing.ephemeral();
+            }
+            // An id only needs remembering while its token could still verify
+            usedTokenIds = Caffeine.newBuilder()
+                    .maximumSize(replayCacheSize)
+                    .expireAfterWrite(Duration.ofSeconds(ttlSeconds + 1))
+                    .build();
+        }
+        log.info("Email verification initialized: tokenMode={}, ttl={}s", tokenMode, ttlSeconds);
+    }
+
+    /**
+     * Issue a verification token for the email; in table mode only within a transaction
+     */
+    public String issueToken(String email) {
+        if (signedTokens) {
+            return sign(email);
+        }
         EmailVerificationToken token = new EmailVerificationToken();
         token.setUserEmail(email);
-        return tokenRepository.save(token);
+        return tokenRepository.save(token).getToken();
     }
 
     public boolean verifyToken(String email, String token) {
+        if (signedTokens) {
+            return verifySigned(email, token);
+        }
+
         Optional<EmailVerificationToken> tokenOpt = tokenRepository.findByToken(token);
 
         if (tokenOpt.isEmpty()) {
@@ -63,6 +152,8 @@ public class EmailVerificationService {
             User user = userOpt.get();
             user.setEmailVerified(true);
             userRepository.save(user);
+            // Cached principals still carry emailVerified=false
+            credentialCacheService.invalidate(email);
             log.info("Email verified successfully for user: {}", email);
             return true;
         }
@@ -71,8 +162,101 @@ public class EmailVerificationService {
         return false;
     }
 
+    /**
+     * Signed tokens leave no row behind, so there is never one pending; an unverified user
+     * already blocks a second signup through the username check
+     */
+    @Transactional(readOnly = true)
     public boolean hasUnverifiedToken(String email) {
-        Optional<EmailVerificationToken> tokenOpt = tokenRepository.findByUserEmailAndVerifiedFalse(email);
-        return tokenOpt.isPresent();
+        if (signedTokens) {
+            return false;
+        }
+        return tokenRepository.existsByUserEmailAndVerifiedFalse(email);
+    }
+
+    private String sign(String email) {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("jti", UUID.randomUUID().toString());
+        payload.put("sub", email);
+        payload.put("exp", Instant.now().plusSeconds(ttlSeconds).getEpochSecond());
+
+        try {
+            String signed = keyRing.getActiveKeyId() + "." + ENCODER.encodeToString(objectMapper.writeValueAsBytes(payload));
+            counter("issued").increment();
+            return signed + "." + ENCODER.encodeToString(keyRing.sign(signed));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to issue verification token", e);
+        }
+    }
+
+    private boolean verifySigned(String email, String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return reject("malformed");
+        }
+
+        JsonNode payload;
+        try {
+            String signed = parts[0] + "." + parts[1];
+            if (!keyRing.verify(parts[0], signed, DECODER.decode(parts[2]))) {
+                return reject("bad_signature");
+            }
+            payload = objectMapper.readTree(new String(DECODER.decode(parts[1]), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return reject("malformed");
+        }
+
+        if (!email.equals(payload.path("sub").asText())) {
+            return reject("email_mismatch");
+        }
+        if (payload.path("exp").asLong(0) <= Instant.now().getEpochSecond()) {
+            return reject("expired");
+        }
+        String tokenId = payload.path("jti").asText();
+        if (tokenId.isEmpty()) {
+            return reject("malformed");
+        }
+        if (usedTokenIds.asMap().putIfAbsent(tokenId, Boolean.TRUE) != null) {
+            return reject("replayed");
+        }
+        // Held while the UPDATE runs, so a concurrent replay here is still refused
+        forgetUnlessCommitted(tokenId);
+
+        if (userRepository.markEmailVerified(email, Instant.now()) == 0) {
+            // No such user, or verified already
+            return reject("not_pending");
+        }
+        // Cached principals still carry emailVerified=false
+        credentialCacheService.invalidate(email);
+        counter("verified").increment();
+        log.info("Email verified successfully for user: {}", email);
+        return true;
+    }
+
+    private void forgetUnlessCommitted(String tokenId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    usedTokenIds.invalidate(tokenId);
+                }
+            }
+        });
+    }
+
+    private boolean reject(String result) {
+        counter(result).increment();
+        log.warn("Verification failed: {}", result);
+        return false;
+    }
+
+    private Counter counter(String result) {
+        return Counter.builder("email.verification.token")
+                .tag("result", result)
+                .description("Signed verification token issue/validation outcomes")
+                .register(registry);
     }
-}
\ No newline at end of file
+}
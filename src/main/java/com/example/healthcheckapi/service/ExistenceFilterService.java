@@ -0,0 +1,243 @@
+package com.example.healthcheckapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory Bloom filters in front of the SKU and username uniqueness checks.
+ * - "Definitely absent" skips the exists query; "maybe present" falls through to it
+ * - The unique constraints stay the final authority, so a missed key only means
+ *   the duplicate is caught by the insert instead of the pre-check
+ * - Built in the background after startup by streaming the key column; until
+ *   then every check falls through
+ * - Bloom filters can't forget keys: deletes are counted and the filter is rebuilt
+ *   once stale keys or growth past capacity would hurt the false-positive rate
+ * - Exports expected FPP, memory and observed absent/maybe/false-positive counts
+ */
+@Service
+public class ExistenceFilterService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExistenceFilterService.class);
+
+    public enum Key {
+        SKU("sku", "products", "sku"),
+        USERNAME("username", "users", "username");
+
+        private final String tag;
+        private final String table;
+        private final String column;
+
+        Key(String tag, String table, String column) {
+            this.tag = tag;
+            this.table = table;
+            this.column = column;
+        }
+    }
+
+    @Value("${existence-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${existence-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${existence-filter.min-capacity:10000}")
+    private long minCapacity;
+
+    @Value("${existence-filter.rebuild-stale-ratio:0.2}")
+    private double rebuildStaleRatio;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Map<Key, Holder> holders = new EnumMap<>(Key.class);
+    private ExecutorService rebuildExecutor;
+
+    /**
+     * Active filter plus the one being rebuilt; writes go to both during a rebuild
+     */
+    private static final class Holder {
+        volatile BloomFilter active;
+        volatile BloomFilter building;
+        volatile long capacity;
+        final AtomicLong inserted = new AtomicLong();
+        final AtomicLong stale = new AtomicLong();
+        final AtomicBoolean rebuilding = new AtomicBoolean();
+        Counter absent;
+        Counter maybe;
+        Counter falsePositive;
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "existence-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (Key key : Key.values()) {
+            Holder holder = new Holder();
+            holders.put(key, holder);
+
+            Gauge.builder("existence.filter.fpp", holder,
+                            h -> h.active != null ? h.active.expectedFalsePositiveRate() : Double.NaN)
+                    .tag("filter", key.tag)
+                    .description("Expected false-positive rate from the current fill ratio")
+                    .register(registry);
+            Gauge.builder("existence.filter.memory", holder,
+                            h -> h.active != null ? h.active.memoryBytes() : 0)
+                    .tag("filter", key.tag)
+                    .baseUnit("bytes")
+                    .register(registry);
+            holder.absent = registry.counter("existence.filter.checks", "filter", key.tag, "result", "absent");
+            holder.maybe = registry.counter("existence.filter.checks", "filter", key.tag, "result", "maybe");
+            holder.falsePositive = registry.counter("existence.filter.checks", "filter", key.tag, "result", "false_positive");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        for (Key key : Key.values()) {
+            scheduleRebuild(key);
+        }
+    }
+
+    /**
+     * False means the key is definitely not stored; true means the caller must query
+     */
+    public boolean mightContain(Key key, String value) {
+        BloomFilter filter = holders.get(key).active;
+        if (!enabled || filter == null || value == null) {
+            return true;
+        }
+        if (filter.mightContain(normalize(value))) {
+            holders.get(key).maybe.increment();
+            return true;
+        }
+        holders.get(key).absent.increment();
+        return false;
+    }
+
+    /**
+     * Record the query result after a "maybe", to track the observed false-positive rate
+     */
+    public void recordLookup(Key key, boolean exists) {
+        if (!exists) {
+            holders.get(key).falsePositive.increment();
+        }
+    }
+
+    public void add(Key key, String value) {
+        if (value == null) {
+            return;
+        }
+        Holder holder = holders.get(key);
+        String normalized = normalize(value);
+        // Order matters: a rebuild publishes "active" before clearing "building"
+        BloomFilter building = holder.building;
+        if (building != null) {
+            building.put(normalized);
+        }
+        BloomFilter active = holder.active;
+        if (active != null) {
+            active.put(normalized);
+        }
+        if (holder.inserted.incrementAndGet() > holder.capacity && active != null) {
+            scheduleRebuild(key);
+        }
+    }
+
+    public void markRemoved(Key key) {
+        Holder holder = holders.get(key);
+        long stale = holder.stale.incrementAndGet();
+        // Small tables never need it: the filter is sized for at least minCapacity keys
+        if (holder.active != null && stale > Math.max(holder.inserted.get(), minCapacity) * rebuildStaleRatio) {
+            scheduleRebuild(key);
+        }
+    }
+
+    private void scheduleRebuild(Key key) {
+        Holder holder = holders.get(key);
+        if (!holder.rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildExecutor.execute(() -> {
+            try {
+                rebuild(key, holder);
+            } catch (Exception e) {
+                holder.building = null;
+                log.warn("Existence filter rebuild failed for {}: {}", key.tag, e.getMessage());
+            } finally {
+                holder.rebuilding.set(false);
+            }
+        });
+    }
+
+    private void rebuild(Key key, Holder holder) {
+        long started = System.currentTimeMillis();
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + key.table, Long.class);
+        long capacity = Math.max(minCapacity, (rows != null ? rows : 0) * 2);
+
+        BloomFilter next = new BloomFilter(capacity, falsePositiveRate);
+        holder.building = next;
+
+        AtomicLong loaded = new AtomicLong();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + key.column + " FROM " + key.table, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Connector/J streams rows one at a time with this fetch size
+            statement.setFetchSize(Integer.MIN_VALUE);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            next.put(normalize(rs.getString(1)));
+            loaded.incrementAndGet();
+        });
+
+        holder.capacity = capacity;
+        holder.inserted.set(loaded.get());
+        holder.stale.set(0);
+        holder.active = next;
+        holder.building = null;
+
+        log.info("Existence filter built: filter={}, keys={}, capacity={}, memoryBytes={}, took={}ms",
+                key.tag, loaded.get(), capacity, next.memoryBytes(), System.currentTimeMillis() - started);
+    }
+
+    // MySQL's default collation compares case-insensitively, so the filter must too
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -2,19 +2,107 @@ package com.example.healthcheckapi.service;
 
 import com.example.healthcheckapi.entity.HealthCheck;
 import com.example.healthcheckapi.repository.HealthCheckRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Database health for /healthz, in one of two modes (health.check.mode):
+ * - inline (default): every call inserts a health_checks row
+ * - background: a dedicated thread runs that check every health.check.probe-interval-ms and
+ *   publishes the result; isHealthy answers from it without touching the database
+ * - In background mode, no result yet or one older than health.check.max-staleness-ms (a
+ *   probe stuck on the database) counts as unhealthy
+ * - The probe has its own thread, so it never waits behind the shared @Scheduled jobs
+ */
 @Service
 public class HealthCheckService {
     private static final Logger logger = LoggerFactory.getLogger(HealthCheckService.class);
 
+    @Value("${health.check.mode:inline}")
+    private String mode;
+
+    @Value("${health.check.probe-interval-ms:5000}")
+    private long probeIntervalMs;
+
+    @Value("${health.check.max-staleness-ms:15000}")
+    private long maxStalenessMs;
+
     @Autowired
     private HealthCheckRepository healthCheckRepository;
 
+    @Autowired
+    private MeterRegistry registry;
+
+    /**
+     * Last probe result; checkedAt is System.nanoTime() when it finished
+     */
+    private record Status(boolean healthy, long checkedAt) {
+    }
+
+    private final AtomicReference<Status> status = new AtomicReference<>();
+
+    private boolean background;
+    private ScheduledExecutorService prober;
+
+    @PostConstruct
+    public void init() {
+        background = "background".equalsIgnoreCase(mode);
+        if (!background && !"inline".equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("health.check.mode must be 'inline' or 'background', got '" + mode + "'");
+        }
+        if (background) {
+            prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "health-probe");
+                thread.setDaemon(true);
+                return thread;
+            });
+            prober.scheduleWithFixedDelay(this::probe, 0, probeIntervalMs, TimeUnit.MILLISECONDS);
+
+            Gauge.builder("health.check.status.age", status, ref -> {
+                        Status current = ref.get();
+                        return current == null ? Double.NaN : (System.nanoTime() - current.checkedAt()) / 1e9;
+                    })
+                    .description("Seconds since the last background health probe finished")
+                    .baseUnit("seconds")
+                    .register(registry);
+        }
+        logger.info("Health check initialized: mode={}, probeIntervalMs={}, maxStalenessMs={}",
+                background ? "background" : "inline", probeIntervalMs, maxStalenessMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+    }
+
+    /**
+     * Whether /healthz should report the database as reachable
+     */
+    public boolean isHealthy() {
+        if (!background) {
+            return performHealthCheck();
+        }
+        Status current = status.get();
+        return current != null && current.healthy()
+                && System.nanoTime() - current.checkedAt() <= TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+    }
+
     /**
      * Verifies database connectivity by inserting a health check record
      * @return true if database is accessible, false otherwise
@@ -30,4 +118,20 @@ public class HealthCheckService {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    void probe() {
+        long startTime = System.nanoTime();
+        // performHealthCheck catches everything; a throw here would end the schedule
+        boolean healthy = false;
+        try {
+            healthy = performHealthCheck();
+        } catch (RuntimeException e) {
+            logger.error("Health probe failed", e);
+        }
+        status.set(new Status(healthy, System.nanoTime()));
+        Timer.builder("health.check.probe")
+                .tag("outcome", healthy ? "healthy" : "unhealthy")
+                .register(registry)
+                .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+}
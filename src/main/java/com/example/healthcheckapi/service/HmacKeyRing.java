@@ -0,0 +1,107 @@
+package com.example.healthcheckapi.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Set of named HMAC-SHA256 keys used to sign stateless tokens.
+ *
+ * Keys are configured as "kid:base64secret,kid:base64secret". New tokens are
+ * signed with the active key; any configured key verifies. Rotating across a
+ * rolling deploy is therefore: add the new key everywhere, switch the active
+ * key id, then drop the old key once its tokens have expired.
+ */
+public final class HmacKeyRing {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Map<String, SecretKeySpec> keys;
+    private final String activeKeyId;
+
+    private HmacKeyRing(Map<String, SecretKeySpec> keys, String activeKeyId) {
+        this.keys = keys;
+        this.activeKeyId = activeKeyId;
+    }
+
+    /**
+     * Parse a key ring from configuration. Returns null if no keys are configured.
+     */
+    public static HmacKeyRing parse(String spec, String activeKeyId) {
+        Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+        if (spec != null) {
+            for (String entry : spec.split(",")) {
+                String trimmed = entry.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                int sep = trimmed.indexOf(':');
+                if (sep <= 0 || sep == trimmed.length() - 1) {
+                    throw new IllegalArgumentException("Invalid signing key entry, expected kid:base64secret");
+                }
+                byte[] secret = Base64.getDecoder().decode(trimmed.substring(sep + 1));
+                if (secret.length < 32) {
+                    throw new IllegalArgumentException("Signing key '" + trimmed.substring(0, sep) + "' must be at least 256 bits");
+                }
+                keys.put(trimmed.substring(0, sep), new SecretKeySpec(secret, HMAC_ALGORITHM));
+            }
+        }
+        if (keys.isEmpty()) {
+            return null;
+        }
+
+        String active = (activeKeyId == null || activeKeyId.isBlank())
+                ? keys.keySet().iterator().next()
+                : activeKeyId;
+        if (!keys.containsKey(active)) {
+            throw new IllegalArgumentException("Active signing key '" + active + "' is not configured");
+        }
+        return new HmacKeyRing(keys, active);
+    }
+
+    /**
+     * Single random key, only valid inside this JVM (local development).
+     */
+    public static HmacKeyRing ephemeral() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+        keys.put("local", new SecretKeySpec(secret, HMAC_ALGORITHM));
+        return new HmacKeyRing(keys, "local");
+    }
+
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    public byte[] sign(String data) {
+        return mac(keys.get(activeKeyId), data);
+    }
+
+    /**
+     * Constant-time check of a signature made with the given key id.
+     */
+    public boolean verify(String keyId, String data, byte[] signature) {
+        SecretKeySpec key = keys.get(keyId);
+        if (key == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(mac(key, data), signature);
+    }
+
+    private static byte[] mac(SecretKeySpec key, String data) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC not available", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.healthcheckapi.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Outcome of one file in a POST /v1/product/{id}/image/batch request, reported by part index
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ImageBatchResult(int index,
+                               @JsonProperty("file_name") String fileName,
+                               Status status,
+                               @JsonProperty("image_id") Long imageId,
+                               String error) {
+
+    public enum Status {
+        created, invalid, failed
+    }
+
+    public static ImageBatchResult created(int index, String fileName, Long imageId) {
+        return new ImageBatchResult(index, fileName, Status.created, imageId, null);
+    }
+
+    public static ImageBatchResult invalid(int index, String fileName, String error) {
+        return new ImageBatchResult(index, fileName, Status.invalid, null, error);
+    }
+
+    public static ImageBatchResult failed(int index, String fileName, String error) {
+        return new ImageBatchResult(index, fileName, Status.failed, null, error);
+    }
+}
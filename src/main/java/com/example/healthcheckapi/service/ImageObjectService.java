@@ -0,0 +1,60 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.repository.ImageObjectRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Reference counts of content-addressed image objects (image_objects).
+ * - acquire is a single upsert; true means this call created the row, so the caller
+ *   has to put the object in place
+ * - release decrements; true means that was the last reference, so the caller queues the
+ *   object on the delete outbox in the same transaction (releaseAndQueue does both)
+ * - A row at zero is a tombstone, kept until the delete relay has removed the object. The
+ *   relay locks it across the delete, so an upload of the same bytes waits in acquire
+ *   and then creates the row afresh, rather than reviving an object being deleted.
+ * - Keys without a row predate content addressing and were never shared, so releasing
+ *   one always counts as the last reference
+ */
+@Service
+@Transactional
+public class ImageObjectService {
+
+    @Autowired
+    private ImageObjectRepository imageObjectRepository;
+
+    @Autowired
+    private StorageDeletionService storageDeletions;
+
+    public boolean acquire(String key) {
+        return imageObjectRepository.acquire(key, Instant.now()) == 1;
+    }
+
+    public boolean release(String key) {
+        if (imageObjectRepository.decrement(key) == 0) {
+            return true;
+        }
+        return imageObjectRepository.existsByObjectKeyAndRefCountLessThanEqual(key, 0);
+    }
+
+    /**
+     * Release a reference and, if it was the last, queue keys (the object and whatever
+     * derives from it) for deletion; true if it was the last
+     */
+    public boolean releaseAndQueue(String key, Collection<String> keys) {
+        if (!release(key)) {
+            return false;
+        }
+        storageDeletions.enqueue(key, keys);
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isReferenced(String key) {
+        return imageObjectRepository.existsByObjectKeyAndRefCountGreaterThan(key, 0);
+    }
+}
@@ -3,42 +3,152 @@ package com.example.healthcheckapi.service;
 import com.example.healthcheckapi.entity.Image;
 import com.example.healthcheckapi.entity.Product;
 import com.example.healthcheckapi.repository.ImageRepository;
+import com.example.healthcheckapi.repository.ImageVersion;
+import com.example.healthcheckapi.repository.StoredImageKey;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Image metadata plus the stored object (whichever StorageBackend is active).
+ * - Not transactional at class level: storage I/O must never run while a pooled
+ *   connection is held, so every upload step is its own short repository transaction
+ * - Objects are content-addressed: the upload is streamed to a staging key while its
+ *   SHA-256 is computed in the same pass, then renamed to images/sha256/{digest}. If that
+ *   object is already referenced and stored the staging copy is dropped and the existing
+ *   one is reused; a referenced key with no object yet gets this upload's copy.
+ * - image_objects counts the rows referencing each object (ImageObjectService); a failed
+ *   insert releases its reference again, and an object left unreferenced goes to the
+ *   delete outbox like any other, never straight to storage
+ * - Upload returns a future; the S3 backend uses the async client so request threads
+ *   are not parked on network I/O
+ * - Batch upload validates every file first, writes the valid ones in parallel on a bounded
+ *   pool (image.upload.pool-size; a full queue fails just the files it rejects), then
+ *   inserts all rows in one batched transaction, falling back to row by row on failure.
+ *   Objects whose row could not be inserted are released again.
+ * - Delete is one local transaction: remove the row, release the reference and, when
+ *   that was the last one, queue the object on the delete outbox (StorageDeletionService)
+ *   for the background relay; no storage call on the request path
+ * - A stored upload publishes ImageStoredEvent; resized variants follow in the background
+ *   (ImageVariantService) and are deleted along with the original
+ */
 @Service
-@Transactional
 public class ImageService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ImageService.class);
+
     @Autowired
     private ImageRepository imageRepository;
 
     @Autowired
-    private S3Service s3Service;
+    private StorageBackend storage;
+
+    @Autowired
+    private ImageObjectService imageObjects;
+
+    @Autowired
+    private ImageVariantService imageVariants;
+
+    @Autowired
+    private StorageDeletionService storageDeletions;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry registry;
 
-    @Autowired(required = false)
-    private LocalStorageService localStorageService;
+    @Value("${image.upload.max-files:20}")
+    private int maxFiles;
 
-    @Value("${storage.type:s3}")
-    private String storageType;
+    @Value("${image.upload.pool-size:8}")
+    private int poolSize;
+
+    @Value("${image.upload.queue-capacity:200}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
 
     private static final List<String> ALLOWED_EXTENSIONS = Arrays.asList(
             "jpg", "jpeg", "png"
     );
 
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-upload-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("image.upload.queue.depth", executor, e -> e.getQueue().size())
+                .description("Batch-uploaded files waiting for a storage writer")
+                .register(registry);
+
+        logger.info("Image upload pool initialized: threads={}, queueCapacity={}, maxFiles={}",
+                poolSize, queueCapacity, maxFiles);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
     public boolean isValidImageFile(MultipartFile file) {
         if (file == null || file.isEmpty()) {
             return false;
         }
 
-        String filename = file.getOriginalFilename();
+        return isValidImageName(file.getOriginalFilename());
+    }
+
+    public boolean isValidImageName(String filename) {
         if (filename == null) {
             return false;
         }
@@ -52,32 +162,329 @@ public class ImageService {
         return ALLOWED_EXTENSIONS.contains(extension);
     }
 
-    public Image uploadImage(MultipartFile file, Product product, Long userId) throws IOException {
-        String path = "local".equalsIgnoreCase(storageType) && localStorageService != null
-                ? localStorageService.storeFile(file, userId, product.getId())
-                : s3Service.upload(file, userId, product.getId());
+    /**
+     * Completes once the object is stored and the row inserted; with S3 the calling
+     * thread is released while the object is in flight
+     */
+    public CompletableFuture<Image> uploadImage(MultipartFile file, Product product) {
+        return store(file).thenApply(path -> insertOrCompensate(file, product, path));
+    }
+
+    /**
+     * Several files for one product. All are validated before anything is stored; valid
+     * ones are written in parallel on the upload pool, then inserted in one batched
+     * transaction. Every file gets its own result, in request order.
+     */
+    public CompletableFuture<List<ImageBatchResult>> uploadImages(List<MultipartFile> files, Product product) {
+        ImageBatchResult[] results = new ImageBatchResult[files.size()];
+
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            if (isValidImageFile(files.get(i))) {
+                accepted.add(i);
+            } else {
+                results[i] = ImageBatchResult.invalid(i, files.get(i).getOriginalFilename(),
+                        "Only non-empty jpg, jpeg or png files are accepted");
+            }
+        }
+
+        // Each task holds a worker until its object is in place, so the pool bounds the
+        // writes in flight across all requests
+        Map<Integer, CompletableFuture<String>> stored = new LinkedHashMap<>();
+        for (Integer index : accepted) {
+            MultipartFile file = files.get(index);
+            CompletableFuture<String> key;
+            try {
+                key = CompletableFuture.supplyAsync(() -> store(file).join(), executor);
+            } catch (RejectedExecutionException e) {
+                registry.counter("image.upload.rejected").increment();
+                key = CompletableFuture.failedFuture(e);
+            }
+            stored.put(index, key);
+        }
+
+        return CompletableFuture.allOf(stored.values().toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, error) -> insertBatch(files, product, stored, results));
+    }
+
+    /**
+     * Phase 1: storage I/O, no connection held. Backends read the stream exactly once,
+     * so the digest is complete when the put is.
+     */
+    private CompletableFuture<String> store(MultipartFile file) {
+        MessageDigest sha256 = sha256();
+        String staging = StorageBackend.stagingKey();
+        InputStreamSource hashing = () -> new DigestInputStream(file.getInputStream(), sha256);
+        return storage.put(staging, hashing, file.getSize(), file.getContentType())
+                .thenCompose(ignored -> promote(staging, StorageBackend.contentKey(sha256.digest())));
+    }
+
+    /**
+     * Take a reference on the content key and make sure the object is there: move the
+     * staging copy in, unless the same bytes are already stored
+     */
+    private CompletableFuture<String> promote(String staging, String key) {
+        boolean created;
+        try {
+            created = imageObjects.acquire(key);
+        } catch (RuntimeException e) {
+            discard(staging);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // A reference alone doesn't mean the bytes are in place: the upload that created
+        // it may still be moving its copy, or have failed to. Only a stored object is reused.
+        if (!created && isStored(key)) {
+            logger.info("Upload deduplicated onto existing object {}", key);
+            discard(staging);
+            return CompletableFuture.completedFuture(key);
+        }
+
+        // Identical bytes, so replacing a copy that lands concurrently is harmless
+        return storage.rename(staging, key).handle((ignored, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                logger.error("Could not move upload {} to {}: {}", staging, key, cause.getMessage());
+                releaseQuietly(key);
+                discard(staging);
+                throw new CompletionException(cause);
+            }
+            return key;
+        });
+    }
+
+    // When in doubt the caller moves its own copy in; a redundant rename costs less than a missing object
+    private boolean isStored(String key) {
+        try {
+            return storage.stat(key).isPresent();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not check stored object {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    private Image insertOrCompensate(MultipartFile file, Product product, String path) {
+        // Phase 2: short metadata transaction (the repository's own)
+        Image saved;
+        try {
+            saved = imageRepository.save(newImage(file, product, path));
+        } catch (RuntimeException e) {
+            // Phase 3: compensate, so a failed insert doesn't leave an unreferenced object
+            compensate(product, path);
+            throw e;
+        }
+        // The row is committed (the repository's own transaction), so variants can start
+        eventPublisher.publishEvent(new ImageStoredEvent(saved.getImageId(), path));
+        return saved;
+    }
+
+    private List<ImageBatchResult> insertBatch(List<MultipartFile> files, Product product,
+                                               Map<Integer, CompletableFuture<String>> stored,
+                                               ImageBatchResult[] results) {
+        Map<Integer, String> keys = new LinkedHashMap<>();
+        stored.forEach((index, future) -> {
+            try {
+                keys.put(index, future.join());
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                boolean rejected = cause instanceof RejectedExecutionException;
+                logger.error("Batch upload of {} failed for product {}: {}",
+                        files.get(index).getOriginalFilename(), product.getId(), cause.getMessage());
+                results[index] = ImageBatchResult.failed(index, files.get(index).getOriginalFilename(),
+                        rejected ? "Upload queue is full, retry later" : "Storage write failed");
+            }
+        });
+        if (keys.isEmpty()) {
+            return Arrays.asList(results);
+        }
 
+        // Phase 2: one transaction (saveAll's own), JDBC-batched thanks to pooled sequence ids
+        try {
+            List<Image> saved = imageRepository.saveAll(keys.entrySet().stream()
+                    .map(entry -> newImage(files.get(entry.getKey()), product, entry.getValue()))
+                    .toList());
+            int i = 0;
+            for (Integer index : keys.keySet()) {
+                created(saved.get(i++), index, results);
+            }
+        } catch (RuntimeException e) {
+            // Retry row by row so only the rows that really fail are lost; fresh entities,
+            // the rolled-back batch already assigned ids to the ones it persisted
+            logger.warn("Batched image insert failed for product {}, retrying {} rows individually: {}",
+                    product.getId(), keys.size(), e.getMessage());
+            keys.forEach((index, path) -> {
+                MultipartFile file = files.get(index);
+                try {
+                    created(imageRepository.save(newImage(file, product, path)), index, results);
+                } catch (RuntimeException rowError) {
+                    compensate(product, path);
+                    results[index] = ImageBatchResult.failed(index, file.getOriginalFilename(), "Image insert failed");
+                }
+            });
+        }
+        return Arrays.asList(results);
+    }
+
+    // Called only for committed rows
+    private void created(Image saved, int index, ImageBatchResult[] results) {
+        results[index] = ImageBatchResult.created(index, saved.getFileName(), saved.getImageId());
+        eventPublisher.publishEvent(new ImageStoredEvent(saved.getImageId(), saved.getS3BucketPath()));
+    }
+
+    private static Image newImage(MultipartFile file, Product product, String path) {
         Image img = new Image();
         img.setFileName(file.getOriginalFilename());
         img.setS3BucketPath(path);
         img.setProduct(product);
-        return imageRepository.save(img);
+        return img;
+    }
+
+    private void compensate(Product product, String path) {
+        logger.warn("Image insert failed for product {}, releasing stored object {}", product.getId(), path);
+        releaseQuietly(path);
     }
 
     public List<Image> getImagesByProductId(Long productId) {
-        return imageRepository.findByProduct_Id(productId);
+        return imageRepository.findByProduct_IdAndPendingFalse(productId);
+    }
+
+    /**
+     * Image ids and variant counts (no rows loaded), enough to compute the list ETag
+     */
+    public List<ImageVersion> getImageVersionsByProductId(Long productId) {
+        return imageRepository.findImageVersionsByProductId(productId);
+    }
+
+    /**
+     * Number of variants of the image, or null if it doesn't exist
+     */
+    public Integer getVariantCount(Long imageId, Long productId) {
+        return imageRepository.findVariantCount(imageId, productId).orElse(null);
     }
 
     public Image getImageByIdAndProductId(Long imageId, Long productId) {
-        return imageRepository.findByImageIdAndProduct_Id(imageId, productId).orElse(null);
+        return imageRepository.findByImageIdAndProduct_IdAndPendingFalse(imageId, productId).orElse(null);
+    }
+
+    /**
+     * Size and type of the stored object; empty if the row has no object behind it
+     */
+    public Optional<StorageBackend.ObjectStat> statContent(String key) throws IOException {
+        return storage.stat(key);
+    }
+
+    public void copyContent(String key, long offset, long length, OutputStream out) throws IOException {
+        storage.copyRange(key, offset, length, out);
+    }
+
+    /**
+     * The object's file on local disk, when the backend keeps one
+     */
+    public Optional<Path> localContentFile(String key) throws IOException {
+        return storage.localFile(key);
     }
 
-    public void deleteImage(Image image) throws IOException {
-        if ("local".equalsIgnoreCase(storageType) && localStorageService != null) {
-            localStorageService.deleteFile(image.getS3BucketPath());
-        } else {
-            s3Service.delete(image.getS3BucketPath());
+    /**
+     * Remove the row and release its object in one transaction. Objects whose last
+     * reference this was are queued on the delete outbox (StorageDeletionService), so
+     * the caller never waits on storage.
+     * The image row is locked before its variant keys are read, so variants the
+     * generator records meanwhile either commit first and are read here, or wait and
+     * then find the image gone. The caller's copy of the variants may be stale.
+     */
+    @Transactional
+    public void deleteImage(Image image) {
+        if (imageRepository.lockById(image.getImageId()).isEmpty()) {
+            // Deleted by a concurrent request, which released the object
+            return;
         }
+        List<String> variantKeys = imageRepository.lockVariantKeys(image.getImageId());
         imageRepository.delete(image);
+
+        List<StoredImageKey> keys = new ArrayList<>();
+        if (variantKeys.isEmpty()) {
+            keys.add(new StoredImageKey(image.getImageId(), image.getS3BucketPath(), null));
+        }
+        variantKeys.forEach(variantKey ->
+                keys.add(new StoredImageKey(image.getImageId(), image.getS3BucketPath(), variantKey)));
+        releaseObjects(keys);
+    }
+
+    /**
+     * Stored objects of a product's images, read before a bulk delete removes the rows
+     */
+    public List<StoredImageKey> getStoredKeysByProductId(Long productId) {
+        return imageRepository.findStoredKeysByProductId(productId);
+    }
+
+    /**
+     * Release one reference per image, in the caller's transaction (the one that deleted
+     * the rows), and queue every object left unreferenced, with its variants, for deletion
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void releaseObjects(Collection<StoredImageKey> images) {
+        Map<Long, String> keyByImage = new LinkedHashMap<>();
+        Map<String, Set<String>> variantsByKey = new HashMap<>();
+        for (StoredImageKey row : images) {
+            keyByImage.put(row.imageId(), row.key());
+            if (row.variantKey() != null) {
+                variantsByKey.computeIfAbsent(row.key(), key -> new LinkedHashSet<>()).add(row.variantKey());
+            }
+        }
+
+        // Key order, like the delete relay's lock, so the two can't deadlock
+        List<Map.Entry<Long, String>> byKey = new ArrayList<>(keyByImage.entrySet());
+        byKey.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<Long, String> image : byKey) {
+            String key = image.getValue();
+            if (!imageObjects.release(key)) {
+                logger.info("Image {} deleted; object {} is still referenced", image.getKey(), key);
+                continue;
+            }
+            Set<String> keys = objectKeys(key);
+            keys.addAll(variantsByKey.getOrDefault(key, Set.of()));
+            storageDeletions.enqueue(key, keys);
+        }
+    }
+
+    // Variant keys derive from the object key, so they go with its last reference
+    private Set<String> objectKeys(String key) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(key);
+        keys.addAll(imageVariants.variantKeys(key));
+        return keys;
+    }
+
+    /**
+     * Release a reference, queueing the object for deletion if it was the last one. A
+     * failure keeps the object (an orphan is cheaper than a row pointing at nothing).
+     */
+    private void releaseQuietly(String key) {
+        try {
+            imageObjects.releaseAndQueue(key, objectKeys(key));
+        } catch (RuntimeException e) {
+            logger.error("Could not release reference to image object {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void discard(String key) {
+        deleteObject(key).whenComplete((ignored, cleanup) -> {
+            if (cleanup != null) {
+                logger.error("Could not remove orphaned image object {}: {}", key, cleanup.getMessage());
+            }
+        });
+    }
+
+    private CompletableFuture<Void> deleteObject(String path) {
+        return storage.remove(path);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,7 @@
+package com.example.healthcheckapi.service;
+
+/**
+ * Published once an uploaded image's object is stored and its row committed
+ */
+public record ImageStoredEvent(Long imageId, String key) {
+}
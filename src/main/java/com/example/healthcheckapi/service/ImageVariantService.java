@@ -0,0 +1,310 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.entity.ImageVariant;
+import com.example.healthcheckapi.repository.ImageRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resized variants of uploaded images, so list views don't pull full-size originals.
+ * - Triggered after the image row is committed; the upload response never waits for it
+ * - Runs on a bounded pool; when the queue is full the job is dropped and counted
+ *   ("image.variants.rejected") and the image is simply served without variants
+ * - Every configured width smaller than the original gets a copy (aspect ratio kept),
+ *   stored next to the original through the active StorageBackend and recorded on the Image
+ * - Variant keys derive from the content-addressed original, so an image whose bytes were
+ *   uploaded before just copies the existing variants' records
+ * - Originals ImageIO can't decode, or larger than image.variants.max-pixels, are skipped
+ * - Stored variants that end up unrecorded are removed again, unless other images still
+ *   reference the original
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageVariantService.class);
+
+    @Value("${image.variants.enabled:true}")
+    private boolean enabled;
+
+    @Value("${image.variants.widths:128,512,1024}")
+    private int[] widths;
+
+    @Value("${image.variants.pool-size:2}")
+    private int poolSize;
+
+    @Value("${image.variants.queue-capacity:100}")
+    private int queueCapacity;
+
+    // Decoding allocates 4 bytes per pixel; a small compressed upload can still be huge
+    @Value("${image.variants.max-pixels:40000000}")
+    private long maxPixels;
+
+    @Autowired
+    private StorageBackend storage;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private ImageObjectService imageObjects;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private ThreadPoolExecutor executor;
+
+    private record Decoded(BufferedImage image, String format) {
+    }
+
+    public ImageVariantService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("image.variants.queue.depth", executor, e -> e.getQueue().size())
+                .description("Uploaded images waiting for variant generation")
+                .register(registry);
+
+        log.info("Image variant pool initialized: enabled={}, threads={}, queueCapacity={}, widths={}",
+                enabled, poolSize, queueCapacity, Arrays.toString(widths));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onImageStored(ImageStoredEvent event) {
+        if (!enabled || widths.length == 0) {
+            return;
+        }
+        try {
+            executor.execute(() -> generate(event));
+        } catch (RejectedExecutionException e) {
+            registry.counter("image.variants.rejected").increment();
+            log.warn("Variant generation skipped for image {}: queue full ({} waiting)",
+                    event.imageId(), executor.getQueue().size());
+        }
+    }
+
+    void generate(ImageStoredEvent event) {
+        long startTime = System.nanoTime();
+        String outcome = "success";
+        List<ImageVariant> stored = new ArrayList<>();
+        boolean recorded = false;
+        try {
+            // Same bytes uploaded before: the variants already exist under the same keys
+            List<ImageVariant> existing = imageRepository
+                    .findFirstByS3BucketPathAndImageIdNotAndVariantsIsNotEmpty(event.key(), event.imageId())
+                    .map(sibling -> sibling.getVariants().stream()
+                            .map(v -> new ImageVariant(v.getWidth(), v.getHeight(), v.getS3BucketPath()))
+                            .toList())
+                    .orElse(List.of());
+            if (!existing.isEmpty()) {
+                outcome = record(event.imageId(), existing) ? "reused" : "orphaned";
+                return;
+            }
+
+            Decoded original = decode(event.key());
+            if (original == null) {
+                outcome = "skipped";
+                return;
+            }
+
+            int originalWidth = original.image().getWidth();
+            int originalHeight = original.image().getHeight();
+            for (int width : widths) {
+                if (width <= 0 || width >= originalWidth) {
+                    continue;
+                }
+                int height = Math.max(1, Math.round((float) originalHeight * width / originalWidth));
+                byte[] bytes = encode(resize(original.image(), width, height, original.format()), original.format());
+                String key = variantKey(event.key(), width);
+                storage.put(key, new ByteArrayResource(bytes), bytes.length, "image/" + original.format()).join();
+                stored.add(new ImageVariant(width, height, key));
+            }
+            if (stored.isEmpty()) {
+                outcome = "skipped";
+                return;
+            }
+
+            recorded = record(event.imageId(), stored);
+            if (!recorded) {
+                outcome = "orphaned";
+                log.info("Image {} was deleted during variant generation", event.imageId());
+            } else {
+                log.info("Stored {} variants for image {}", stored.size(), event.imageId());
+            }
+
+        } catch (Exception e) {
+            outcome = "error";
+            log.error("Variant generation failed for image {}: {}", event.imageId(), e.getMessage(), e);
+        } finally {
+            if (!recorded && !stored.isEmpty() && !stillReferenced(event.key())) {
+                List<String> keys = stored.stream().map(ImageVariant::getS3BucketPath).toList();
+                storage.removeAll(keys).whenComplete((ignored, cleanup) -> {
+                    if (cleanup != null) {
+                        log.error("Could not remove unrecorded variants {}: {}", keys, cleanup.getMessage());
+                    }
+                });
+            }
+            Timer.builder("image.variants.generate")
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Keys every configured variant of the object would be stored under
+     */
+    public List<String> variantKeys(String key) {
+        return Arrays.stream(widths).mapToObj(width -> variantKey(key, width)).toList();
+    }
+
+    /**
+     * Add the variants to the image; false if the image no longer exists
+     */
+    private boolean record(Long imageId, List<ImageVariant> variants) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                imageRepository.findById(imageId)
+                        .map(image -> image.getVariants().addAll(variants))
+                        .orElse(false)));
+    }
+
+    // When in doubt the variants stay; removing them under a live image would be worse
+    private boolean stillReferenced(String key) {
+        try {
+            return imageObjects.isReferenced(key);
+        } catch (RuntimeException e) {
+            log.warn("Could not check references to {}: {}", key, e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * The original and its format, or null if ImageIO can't read it or it has too many
+     * pixels to decode. Keys carry no extension, so the format comes from the reader.
+     */
+    private Decoded decode(String key) throws IOException {
+        try (InputStream in = storage.get(key);
+             ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                log.info("No variants for {}: not a readable image", key);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.warn("No variants for {}: {} pixels exceeds the {} limit", key, pixels, maxPixels);
+                    return null;
+                }
+                String format = reader.getFormatName().equalsIgnoreCase("png") ? "png" : "jpeg";
+                return new Decoded(reader.read(0), format);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Bilinear scaling, halving first while the target is less than half the size;
+     * a single bilinear step over a large ratio skips most source pixels
+     */
+    private static BufferedImage resize(BufferedImage source, int width, int height, String format) {
+        // JPEG has no alpha channel
+        int type = format.equals("png") ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            int nextWidth = Math.max(width, currentWidth / 2);
+            int nextHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, out)) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * images/sha256/ab/{digest} -> images/sha256/ab/{digest}_w128 (extensions, on older
+     * keys, are kept: user_1/product_2/{uuid}.jpg -> user_1/product_2/{uuid}_w128.jpg)
+     */
+    static String variantKey(String key, int width) {
+        int dot = key.lastIndexOf('.');
+        int slash = key.lastIndexOf('/');
+        if (dot <= slash) {
+            return key + "_w" + width;
+        }
+        return key.substring(0, dot) + "_w" + width + key.substring(dot);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.healthcheckapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StorageBackend held on the heap (storage.type=memory), for benchmarking the image
+ * path without disk or network in the numbers. Contents are lost on restart and
+ * unbounded, so it is not meant for production.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "memory")
+public class InMemoryStorageService implements StorageBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryStorageService.class);
+
+    private record StoredObject(byte[] data, String contentType, Instant lastModified) {
+    }
+
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+
+    public InMemoryStorageService() {
+        logger.warn("In-memory image storage is active; stored images are not persisted");
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String key, InputStreamSource content, long size, String contentType) {
+        try (InputStream in = content.getInputStream()) {
+            objects.put(key, new StoredObject(in.readAllBytes(), contentType, Instant.now()));
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        StoredObject object = objects.get(key);
+        if (object == null) {
+            throw new FileNotFoundException(key);
+        }
+        return new ByteArrayInputStream(object.data());
+    }
+
+    @Override
+    public Optional<ObjectStat> stat(String key) {
+        return Optional.ofNullable(objects.get(key))
+                .map(object -> new ObjectStat(key, object.data().length, object.contentType(), object.lastModified()));
+    }
+
+    @Override
+    public void copyRange(String key, long offset, long length, OutputStream out) throws IOException {
+        StoredObject object = objects.get(key);
+        if (object == null) {
+            throw new FileNotFoundException(key);
+        }
+        out.write(object.data(), Math.toIntExact(offset), Math.toIntExact(length));
+    }
+
+    @Override
+    public CompletableFuture<Void> rename(String from, String to) {
+        StoredObject object = objects.remove(from);
+        if (object == null) {
+            return CompletableFuture.failedFuture(new FileNotFoundException(from));
+        }
+        objects.put(to, object);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> remove(String key) {
+        objects.remove(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAll(Collection<String> keys) {
+        keys.forEach(objects::remove);
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -4,18 +4,35 @@ import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.EOFException;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * StorageBackend on the local filesystem under file.upload-dir (storage.type=local).
+ * Keys map to relative paths; writes complete before the returned future does.
+ * Ranged reads go through FileChannel.transferTo, so the file is never copied onto the heap.
+ */
 @Service
-public class LocalStorageService {
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+public class LocalStorageService implements StorageBackend {
 
     private static final Logger logger = LoggerFactory.getLogger(LocalStorageService.class);
 
@@ -32,52 +49,127 @@ public class LocalStorageService {
         }
     }
 
-    /**
-     * Store file locally and return the storage path
-     */
-    public String storeFile(MultipartFile file, Long userId, Long productId) throws IOException {
-        // Create directory structure: uploads/user_{userId}/product_{productId}/
-        String userDir = "user_" + userId;
-        String productDir = "product_" + productId;
-        Path directoryPath = Paths.get(uploadDir, userDir, productDir);
-
-        // Create directories if they don't exist
-        Files.createDirectories(directoryPath);
-
-        // Generate unique filename to avoid collisions
-        String originalFilename = file.getOriginalFilename();
-        String fileExtension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
+    @Override
+    public CompletableFuture<Void> put(String key, InputStreamSource content, long size, String contentType) {
+        try {
+            write(key, content);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        String uniqueFilename = UUID.randomUUID().toString() + fileExtension;
+    }
 
-        // Full file path
-        Path filePath = directoryPath.resolve(uniqueFilename);
+    @Override
+    public InputStream get(String key) throws IOException {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) {
+            throw new FileNotFoundException(key);
+        }
+        return Files.newInputStream(path);
+    }
 
-        // Copy file to the target location
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+    @Override
+    public Optional<ObjectStat> stat(String key) throws IOException {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        return Optional.of(new ObjectStat(key, Files.size(path), Files.probeContentType(path),
+                Files.getLastModifiedTime(path).toInstant()));
+    }
 
-        logger.info("File stored at: {}", filePath.toString());
+    @Override
+    public void copyRange(String key, long offset, long length, OutputStream out) throws IOException {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) {
+            throw new FileNotFoundException(key);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Not closed: closing the wrapper would close the caller's stream
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    throw new EOFException("File " + key + " ended at " + position + ", expected " + end + " bytes");
+                }
+                position += sent;
+            }
+        }
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) throws IOException {
+        Path path = resolve(key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
 
-        // Return relative path
-        return userDir + "/" + productDir + "/" + uniqueFilename;
+    @Override
+    public CompletableFuture<Void> rename(String from, String to) {
+        try {
+            Path source = resolve(from);
+            Path target = resolve(to);
+            Files.createDirectories(target.getParent());
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("File moved: {} -> {}", source, target);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
-    /**
-     * Delete file from local storage
-     */
-    public void deleteFile(String filePath) throws IOException {
-        Path path = Paths.get(uploadDir, filePath);
+    @Override
+    public CompletableFuture<Void> remove(String key) {
+        try {
+            delete(key);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAll(Collection<String> keys) {
+        IOException failure = null;
+        for (String key : keys) {
+            try {
+                delete(key);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        return failure == null ? CompletableFuture.completedFuture(null) : CompletableFuture.failedFuture(failure);
+    }
+
+    private void delete(String key) throws IOException {
+        Path path = resolve(key);
         Files.deleteIfExists(path);
-        logger.info("File deleted: {}", path.toString());
+        logger.info("File deleted: {}", path);
     }
 
-    /**
-     * Check if file exists
-     */
-    public boolean fileExists(String filePath) {
-        Path path = Paths.get(uploadDir, filePath);
-        return Files.exists(path);
+    private void write(String key, InputStreamSource content) throws IOException {
+        Path filePath = resolve(key);
+        Files.createDirectories(filePath.getParent());
+
+        try (InputStream in = content.getInputStream()) {
+            Files.copy(in, filePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        logger.info("File stored at: {}", filePath.toString());
+    }
+
+    // Keys are relative; anything resolving outside the upload directory is rejected
+    private Path resolve(String key) throws IOException {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IOException("Invalid storage key: " + key);
+        }
+        return path;
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt encoding on a dedicated, bounded pool so signup and password-change
+ * bursts can't occupy every core and starve cheap read traffic.
+ * - Pool size defaults to the core count; the queue is bounded
+ * - A full queue fails fast with ServiceOverloadedException (503 + Retry-After)
+ * - Exports queue depth, queue wait and hash duration under "auth.bcrypt.*"
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    @Value("${security.bcrypt.pool-size:0}")
+    private int poolSize;
+
+    @Value("${security.bcrypt.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${security.bcrypt.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private ThreadPoolExecutor executor;
+    private Timer waitTimer;
+    private Timer hashTimer;
+
+    @PostConstruct
+    public void init() {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+
+        executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.bcrypt.queue.depth", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a worker")
+                .register(registry);
+        waitTimer = Timer.builder("auth.bcrypt.wait")
+                .description("Time a password hash spent queued")
+                .register(registry);
+        hashTimer = Timer.builder("auth.bcrypt.hash")
+                .description("BCrypt encode duration")
+                .register(registry);
+
+        log.info("Password hashing pool initialized: threads={}, queueCapacity={}", threads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Encode a raw password on the hashing pool, blocking until the hash is ready
+     */
+    public String encode(CharSequence rawPassword) {
+        long submittedAt = System.nanoTime();
+        Future<String> hash;
+        try {
+            hash = executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return hashTimer.recordCallable(() -> passwordEncoder.encode(rawPassword));
+            });
+        } catch (RejectedExecutionException e) {
+            registry.counter("auth.bcrypt.rejected").increment();
+            log.warn("Password hashing rejected: queue full ({} waiting)", executor.getQueue().size());
+            throw new ServiceOverloadedException("Password hashing queue is full", retryAfterSeconds);
+        }
+
+        try {
+            return hash.get();
+        } catch (InterruptedException e) {
+            hash.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+}
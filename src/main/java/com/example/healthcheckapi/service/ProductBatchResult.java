@@ -0,0 +1,30 @@
+package com.example.healthcheckapi.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one item in a POST /v1/product/batch request, reported by request index
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProductBatchResult(int index, String sku, Status status, Long id, String error) {
+
+    public enum Status {
+        created, updated, conflict, invalid
+    }
+
+    public static ProductBatchResult created(int index, String sku, Long id) {
+        return new ProductBatchResult(index, sku, Status.created, id, null);
+    }
+
+    public static ProductBatchResult updated(int index, String sku, Long id) {
+        return new ProductBatchResult(index, sku, Status.updated, id, null);
+    }
+
+    public static ProductBatchResult conflict(int index, String sku, String error) {
+        return new ProductBatchResult(index, sku, Status.conflict, null, error);
+    }
+
+    public static ProductBatchResult invalid(int index, String sku, String error) {
+        return new ProductBatchResult(index, sku, Status.invalid, null, error);
+    }
+}
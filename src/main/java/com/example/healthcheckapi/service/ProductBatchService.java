@@ -0,0 +1,180 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.entity.Product;
+import com.example.healthcheckapi.entity.User;
+import com.example.healthcheckapi.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.hibernate.exception.ConstraintViolationException.ConstraintKind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk create/update of products keyed by SKU (POST /v1/product/batch).
+ * - Items are applied in chunks, one transaction per chunk, so a large sync never
+ *   holds a single long transaction; inserts are JDBC-batched (pooled sequence ids)
+ * - Each item gets its own result; a SKU owned by someone else is a per-row conflict
+ * - If a chunk hits a constraint violation (typically a unique-key race with a concurrent
+ *   writer), that chunk is retried row by row so only the offending rows fail: a duplicate
+ *   SKU is a conflict, any other violation ("data too long", a null column) is invalid
+ */
+@Service
+public class ProductBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductBatchService.class);
+
+    @Value("${product.batch.max-items:5000}")
+    private int maxItems;
+
+    @Value("${product.batch.chunk-size:500}")
+    private int chunkSize;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ExistenceFilterService existenceFilter;
+
+    @Autowired
+    private ProductCacheService productCache;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public ProductBatchService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public List<ProductBatchResult> apply(List<Product> items, Long ownerId) {
+        ProductBatchResult[] results = new ProductBatchResult[items.size()];
+
+        // Validate up front; only the first occurrence of a SKU in the request is applied
+        List<Integer> accepted = new ArrayList<>();
+        Set<String> seenSkus = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            Product item = items.get(i);
+            if (item == null) {
+                results[i] = ProductBatchResult.invalid(i, null, "Product is required");
+                continue;
+            }
+            Set<ConstraintViolation<Product>> violations = validator.validate(item);
+            if (!violations.isEmpty()) {
+                results[i] = ProductBatchResult.invalid(i, item.getSku(), violations.iterator().next().getMessage());
+            } else if (!seenSkus.add(item.getSku())) {
+                results[i] = ProductBatchResult.conflict(i, item.getSku(), "Duplicate SKU in request");
+            } else {
+                accepted.add(i);
+            }
+        }
+
+        for (int from = 0; from < accepted.size(); from += chunkSize) {
+            List<Integer> chunk = accepted.subList(from, Math.min(from + chunkSize, accepted.size()));
+            try {
+                store(transactionTemplate.execute(status -> applyChunk(chunk, items, ownerId)), results);
+            } catch (DataIntegrityViolationException e) {
+                logger.warn("Batch chunk hit a constraint violation, retrying {} rows individually", chunk.size());
+                for (Integer index : chunk) {
+                    try {
+                        store(transactionTemplate.execute(status -> applyChunk(List.of(index), items, ownerId)), results);
+                    } catch (DataIntegrityViolationException rowError) {
+                        String sku = items.get(index).getSku();
+                        if (isDuplicateSku(rowError)) {
+                            results[index] = ProductBatchResult.conflict(index, sku, "SKU already exists");
+                        } else {
+                            logger.warn("Batch row {} rejected by the database: {}", index, rowError.getMostSpecificCause().getMessage());
+                            results[index] = ProductBatchResult.invalid(index, sku, "Value rejected by the database");
+                        }
+                    }
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private List<ProductBatchResult> applyChunk(List<Integer> indices, List<Product> items, Long ownerId) {
+        List<String> skus = indices.stream().map(i -> items.get(i).getSku()).toList();
+        Map<String, Product> existing = productRepository.findBySkuIn(skus).stream()
+                .collect(Collectors.toMap(Product::getSku, Function.identity()));
+        User owner = entityManager.getReference(User.class, ownerId);
+
+        List<ProductBatchResult> chunkResults = new ArrayList<>(indices.size());
+        for (Integer index : indices) {
+            Product item = items.get(index);
+            Product current = existing.get(item.getSku());
+
+            if (current == null) {
+                // Fresh entity per attempt: a rolled-back chunk leaves ids on the ones it persisted
+                Product created = new Product();
+                created.setSku(item.getSku());
+                created.setName(item.getName());
+                created.setDescription(item.getDescription());
+                created.setManufacturer(item.getManufacturer());
+                created.setQuantity(item.getQuantity());
+                created.setOwner(owner);
+                productRepository.save(created);
+                chunkResults.add(ProductBatchResult.created(index, created.getSku(), created.getId()));
+            } else if (!current.getOwner().getId().equals(ownerId)) {
+                chunkResults.add(ProductBatchResult.conflict(index, item.getSku(), "SKU belongs to another user"));
+            } else {
+                current.setName(item.getName());
+                current.setDescription(item.getDescription());
+                current.setManufacturer(item.getManufacturer());
+                current.setQuantity(item.getQuantity());
+                chunkResults.add(ProductBatchResult.updated(index, item.getSku(), current.getId()));
+            }
+        }
+
+        // Flush here so batched statements (and any unique violation, translated by the
+        // repository) happen inside this chunk, then drop the entities so a long batch
+        // doesn't grow the persistence context
+        productRepository.flush();
+        entityManager.clear();
+        return chunkResults;
+    }
+
+    // The SKU index is the only unique key on products besides the primary key
+    private static boolean isDuplicateSku(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof org.hibernate.exception.ConstraintViolationException violation) {
+                String constraint = violation.getConstraintName();
+                return violation.getKind() == ConstraintKind.UNIQUE
+                        && (constraint == null || !constraint.toUpperCase(Locale.ROOT).endsWith("PRIMARY"));
+            }
+        }
+        return false;
+    }
+
+        // Called only for committed chunks
+    private void store(List<ProductBatchResult> chunkResults, ProductBatchResult[] results) {
+        for (ProductBatchResult result : chunkResults) {
+            results[result.index()] = result;
+            if (result.status() == ProductBatchResult.Status.created) {
+                existenceFilter.add(ExistenceFilterService.Key.SKU, result.sku());
+            } else if (result.status() == ProductBatchResult.Status.updated) {
+                productCache.invalidateAfterCommit(result.id());
+            }
+        }
+    }
+}
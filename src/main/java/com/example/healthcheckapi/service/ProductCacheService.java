@@ -0,0 +1,109 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.repository.ProductRepository;
+import com.example.healthcheckapi.repository.ProductSummary;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Read-through cache of product snapshots for GET /v1/product/{id}.
+ * - Holds immutable ProductSummary values, never managed entities
+ * - Bounded by approximate size in bytes
+ * - Concurrent misses for one id share a single load
+ * - Writers invalidate after their transaction commits; Caffeine's per-key
+ *   compute means a load that read the old row can't outlive that invalidation
+ * - Invalidation is local to this JVM: another instance keeps serving its copy until
+ *   it expires, so the TTL (product.cache.ttl-seconds, default 5s) is the bound on
+ *   cross-instance staleness, not just a safety net
+ * - Hit/miss, load latency and eviction metrics are exported as cache "products"
+ */
+@Service
+public class ProductCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCacheService.class);
+
+    @Value("${product.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product.cache.max-weight-bytes:67108864}")
+    private long maxWeightBytes;
+
+    @Value("${product.cache.ttl-seconds:5}")
+    private long ttlSeconds;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private LoadingCache<Long, ProductSummary> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Long id, ProductSummary product) -> weigh(product))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build(id -> productRepository.findSummaryById(id).orElse(null));
+
+        CaffeineCacheMetrics.monitor(registry, cache, "products");
+        log.info("Product cache initialized: enabled={}, maxWeightBytes={}, ttl={}s", enabled, maxWeightBytes, ttlSeconds);
+    }
+
+    /**
+     * Return the product snapshot, or null if it doesn't exist (absent ids are not cached)
+     */
+    public ProductSummary get(Long id) {
+        if (!enabled) {
+            return productRepository.findSummaryById(id).orElse(null);
+        }
+        return cache.get(id);
+    }
+
+    /**
+     * Invalidate once the current transaction commits (immediately if there is none)
+     */
+    public void invalidateAfterCommit(Long id) {
+        if (id == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(id);
+                }
+            });
+        } else {
+            cache.invalidate(id);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // Rough retained size: object headers + UTF-16 string payloads
+    private static int weigh(ProductSummary product) {
+        return 160 + 2 * (length(product.name()) + length(product.description())
+                + length(product.sku()) + length(product.manufacturer()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
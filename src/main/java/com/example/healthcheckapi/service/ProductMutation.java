@@ -0,0 +1,21 @@
+package com.example.healthcheckapi.service;
+
+import java.time.Instant;
+
+/**
+ * Outcome of an ownership-checked product write; lastUpdated is set when it was applied
+ */
+public record ProductMutation(Status status, Instant lastUpdated) {
+
+    public enum Status {
+        APPLIED, NOT_FOUND, FORBIDDEN, PRECONDITION_FAILED, SKU_CONFLICT
+    }
+
+    public static ProductMutation applied(Instant lastUpdated) {
+        return new ProductMutation(Status.APPLIED, lastUpdated);
+    }
+
+    public static ProductMutation failed(Status status) {
+        return new ProductMutation(status, null);
+    }
+}
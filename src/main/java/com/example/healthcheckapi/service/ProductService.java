@@ -3,10 +3,22 @@ package com.example.healthcheckapi.service;
 import com.example.healthcheckapi.entity.Product;
 import com.example.healthcheckapi.entity.User;
 import com.example.healthcheckapi.repository.ProductRepository;
+import com.example.healthcheckapi.repository.ProductSummary;
+import com.example.healthcheckapi.repository.StoredImageKey;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
 @Service
 @Transactional
 public class ProductService {
@@ -14,28 +26,169 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ExistenceFilterService existenceFilter;
+
+    @Autowired
+    private ProductCacheService productCache;
+
+    @Autowired
+    private ImageService imageService;
+
     public Product createProduct(Product product, User owner) {
         product.setOwner(owner);
-        return productRepository.save(product);
+        // Flush now: with sequence ids the INSERT (and a duplicate-SKU violation) would otherwise wait for commit
+        Product saved = productRepository.saveAndFlush(product);
+        existenceFilter.add(ExistenceFilterService.Key.SKU, saved.getSku());
+        return saved;
     }
 
+    /**
+     * Managed entity for write paths (always read from the database)
+     */
     public Product findById(Long id) {
         return productRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Read-only snapshot for GET, served from the product cache. Runs without a
+     * transaction so a cache hit never touches a connection.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public ProductSummary findSummaryById(Long id) {
+        return productCache.get(id);
+    }
+
+    /**
+     * Stream one keyset page (ids greater than afterId, ascending) into the sink, row by row.
+     * Returns the id to continue after, or null if this was the last page.
+     */
+    @Transactional(readOnly = true)
+    public Long streamPage(Long ownerId, long afterId, int limit, Consumer<ProductSummary> sink) {
+        // One extra row tells us whether another page exists
+        Limit fetch = Limit.of(limit + 1);
+        try (Stream<ProductSummary> rows = ownerId == null
+                ? productRepository.streamPage(afterId, fetch)
+                : productRepository.streamPageByOwner(ownerId, afterId, fetch)) {
+            Iterator<ProductSummary> it = rows.iterator();
+            Long lastId = null;
+            int written = 0;
+            while (it.hasNext()) {
+                ProductSummary row = it.next();
+                if (written == limit) {
+                    return lastId;
+                }
+                sink.accept(row);
+                lastId = row.id();
+                written++;
+            }
+            return null;
+        }
+    }
+
     public boolean existsBySku(String sku) {
-        return productRepository.existsBySku(sku);
+        if (!existenceFilter.mightContain(ExistenceFilterService.Key.SKU, sku)) {
+            return false;
+        }
+        boolean exists = productRepository.existsBySku(sku);
+        existenceFilter.recordLookup(ExistenceFilterService.Key.SKU, exists);
+        return exists;
+    }
+
+    /**
+     * UPDATE with the ownership (and optional If-Match version) check in the WHERE clause.
+     * Only non-null fields of changes are written. The row is read only when the
+     * update matches nothing, to tell 404 / 403 / 412 apart.
+     */
+    public ProductMutation updateOwned(Long id, Long ownerId, Collection<Instant> versions, Product changes) {
+        if (changes.getSku() != null && skuTakenByOther(changes.getSku(), id)) {
+            ProductMutation failed = probe(id, ownerId, null);
+            return failed != null ? failed : ProductMutation.failed(ProductMutation.Status.SKU_CONFLICT);
+        }
+
+        if (changes.getName() == null && changes.getDescription() == null && changes.getSku() == null
+                && changes.getManufacturer() == null && changes.getQuantity() == null) {
+            // Nothing to write (empty PATCH): only the checks apply, the timestamp stays
+            ProductSummary current = productRepository.findSummaryById(id).orElse(null);
+            ProductMutation failed = check(current, ownerId, versions);
+            return failed != null ? failed : ProductMutation.applied(current.dateLastUpdated());
+        }
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        int rows = versions != null && versions.isEmpty()
+                ? 0
+                : productRepository.updateOwned(id, ownerId, versions, changes, now);
+        if (rows == 0) {
+            ProductMutation failed = probe(id, ownerId, versions);
+            return failed != null ? failed : ProductMutation.failed(ProductMutation.Status.NOT_FOUND);
+        }
+
+        if (changes.getSku() != null) {
+            // SKU may have changed; the old one just becomes a stale "maybe"
+            existenceFilter.add(ExistenceFilterService.Key.SKU, changes.getSku());
+        }
+        productCache.invalidateAfterCommit(id);
+        return ProductMutation.applied(now);
+    }
+
+    /**
+     * DELETE (images first, bulk deletes don't cascade) with the ownership check in the WHERE clause.
+     * The images' stored objects are released in the same transaction and queued on the
+     * delete outbox, so removing a product makes no storage call per image. The product row
+     * is locked before the images are read, so none can be added between that read and the
+     * delete (its reference would never be released).
+     */
+    public ProductMutation deleteOwned(Long id, Long ownerId, Collection<Instant> versions) {
+        if (versions != null && versions.isEmpty()) {
+            ProductMutation failed = probe(id, ownerId, versions);
+            return failed != null ? failed : ProductMutation.failed(ProductMutation.Status.NOT_FOUND);
+        }
+
+        // Lock first: the read below then sees every image committed before it, and later
+        // inserts wait, failing their foreign key once the product is gone
+        productRepository.lockById(id);
+        // Read before the bulk delete removes the rows
+        List<StoredImageKey> stored = imageService.getStoredKeysByProductId(id);
+        int rows = productRepository.deleteOwned(id, ownerId, versions);
+        if (rows == 0) {
+            ProductMutation failed = probe(id, ownerId, versions);
+            return failed != null ? failed : ProductMutation.failed(ProductMutation.Status.NOT_FOUND);
+        }
+        imageService.releaseObjects(stored);
+
+        existenceFilter.markRemoved(ExistenceFilterService.Key.SKU);
+        productCache.invalidateAfterCommit(id);
+        return ProductMutation.applied(null);
+    }
+
+    private boolean skuTakenByOther(String sku, Long id) {
+        if (!existenceFilter.mightContain(ExistenceFilterService.Key.SKU, sku)) {
+            return false;
+        }
+        return productRepository.existsBySkuAndIdNot(sku, id);
     }
 
-    public Product updateProduct(Product product) {
-        return productRepository.save(product);
+    /**
+     * Why a write would not apply: null if the row exists, is owned and matches the versions
+     */
+    private ProductMutation probe(Long id, Long ownerId, Collection<Instant> versions) {
+        return check(productRepository.findSummaryById(id).orElse(null), ownerId, versions);
     }
 
-    public void deleteProduct(Product product) {
-        productRepository.delete(product);
+    private static ProductMutation check(ProductSummary current, Long ownerId, Collection<Instant> versions) {
+        if (current == null) {
+            return ProductMutation.failed(ProductMutation.Status.NOT_FOUND);
+        }
+        if (!current.ownerId().equals(ownerId)) {
+            return ProductMutation.failed(ProductMutation.Status.FORBIDDEN);
+        }
+        if (versions != null && !versions.contains(current.dateLastUpdated())) {
+            return ProductMutation.failed(ProductMutation.Status.PRECONDITION_FAILED);
+        }
+        return null;
     }
 
-    public boolean isOwner(Product product, String username) {
-        return product.getOwner().getUsername().equals(username);
+    public boolean isOwner(Product product, Long userId) {
+        return product.getOwner().getId().equals(userId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,179 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.repository.EmailVerificationTokenRepository;
+import com.example.healthcheckapi.repository.HealthCheckRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Retention for tables that only ever grow: health_checks (a row per probe) and expired
+ * email_verification_tokens.
+ * - Rows older than the table's retention are deleted oldest first in chunks of
+ *   retention.chunk-size, each its own short transaction, with retention.pause-ms between
+ *   chunks so locks stay short and replicas keep up
+ * - One instance purges at a time: the run holds the "retention-purge" scheduler lease,
+ *   renewed after every chunk; an instance that loses it stops
+ * - A run deletes at most retention.max-chunks-per-run chunks per table; the rest waits
+ *   for the next run
+ * - Metrics: "retention.purge" (table, outcome) and "retention.purge.rows" (table)
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    public static final String LEASE = "retention-purge";
+
+    @Value("${retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${retention.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${retention.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${retention.max-chunks-per-run:500}")
+    private int maxChunksPerRun;
+
+    @Value("${retention.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${retention.health-checks.max-age-hours:168}")
+    private long healthCheckMaxAgeHours;
+
+    // Counted from the token's expiry
+    @Value("${retention.verification-tokens.max-age-hours:24}")
+    private long verificationTokenMaxAgeHours;
+
+    @Autowired
+    private HealthCheckRepository healthCheckRepository;
+
+    @Autowired
+    private EmailVerificationTokenRepository tokenRepository;
+
+    @Autowired
+    private SchedulerLeaseService leases;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private List<Target> targets;
+
+    /**
+     * A table to purge: rows older than maxAge, one chunk per purge call (cutoff, limit)
+     */
+    private record Target(String table, Duration maxAge, ToIntBiFunction<Instant, Integer> purge) {
+    }
+
+    /**
+     * Outcome of purging one table
+     */
+    public record Purge(String table, int rows, int chunks, String outcome) {
+    }
+
+    public RetentionService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() {
+        chunkSize = Math.max(1, chunkSize);
+        targets = List.of(
+                new Target("health_checks", Duration.ofHours(healthCheckMaxAgeHours),
+                        healthCheckRepository::purgeBefore),
+                new Target("email_verification_tokens", Duration.ofHours(verificationTokenMaxAgeHours),
+                        tokenRepository::purgeExpiredBefore));
+        log.info("Retention initialized: enabled={}, chunkSize={}, pauseMs={}, healthChecks={}h, verificationTokens={}h",
+                enabled, chunkSize, pauseMs, healthCheckMaxAgeHours, verificationTokenMaxAgeHours);
+    }
+
+    @Scheduled(fixedDelayString = "${retention.interval-ms:600000}",
+            initialDelayString = "${retention.initial-delay-ms:60000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            purgeAll();
+        } catch (RuntimeException e) {
+            log.error("Retention purge failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Purge every table if this instance gets the lease; empty when another instance holds it
+     */
+    public List<Purge> purgeAll() {
+        if (!leases.tryAcquire(LEASE, Duration.ofSeconds(leaseSeconds))) {
+            registry.counter("retention.purge.skipped").increment();
+            log.debug("Retention purge skipped: another instance holds the lease");
+            return List.of();
+        }
+        try {
+            return targets.stream().map(this::purge).toList();
+        } finally {
+            leases.release(LEASE);
+        }
+    }
+
+    private Purge purge(Target target) {
+        long startTime = System.nanoTime();
+        Instant cutoff = Instant.now().minus(target.maxAge());
+        int rows = 0;
+        int chunks = 0;
+        String outcome = "complete";
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> target.purge().applyAsInt(cutoff, chunkSize));
+            rows += deleted != null ? deleted : 0;
+            chunks++;
+            if (deleted == null || deleted < chunkSize) {
+                break;
+            }
+            if (chunks >= maxChunksPerRun) {
+                outcome = "truncated";
+                break;
+            }
+            if (!leases.tryAcquire(LEASE, Duration.ofSeconds(leaseSeconds))) {
+                outcome = "lease_lost";
+                break;
+            }
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                outcome = "interrupted";
+                break;
+            }
+        }
+
+        Timer.builder("retention.purge")
+                .tag("table", target.table())
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        registry.counter("retention.purge.rows", "table", target.table()).increment(rows);
+        if (rows > 0 || !outcome.equals("complete")) {
+            log.info("Purged {} rows from {} older than {} in {} chunks ({})",
+                    rows, target.table(), cutoff, chunks, outcome);
+        }
+        return new Purge(target.table(), rows, chunks, outcome);
+    }
+}
@@ -8,138 +8,577 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.UUID;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * StorageBackend on S3 (storage.type=s3, the default).
+ * - Files up to the multipart threshold (0 = never) go up in a single PUT
+ * - Larger files are streamed as a multipart upload: parts are read sequentially from
+ *   the spooled file and uploaded in parallel on a bounded pool, each with a Content-MD5
+ *   S3 verifies; any failure aborts the upload so no orphaned parts are billed
+ * - The part buffers in flight are capped across all uploads
+ * - put / remove / removeAll run on S3AsyncClient and return as soon as the request is
+ *   issued, so no request thread waits on the network; multipart-sized files run the
+ *   multipart upload on its own pool instead
+ * - removeAll sends DeleteObjects in batches of up to 1000 keys
+ * - copyRange asks S3 for just the range and streams the body through as it arrives
+ * - rename is a server-side CopyObject followed by a delete of the source (S3 has no
+ *   rename); a failed source delete only leaves a staging object behind (logged)
+ * - presignPut signs a PUT (content type included) locally with S3Presigner; with
+ *   aws.s3.endpoint set the URL points at the stand-in, path-style
+ * - Every call, sync or async, is timed as "s3.call" (operation, outcome) until it completes
+ * - aws.s3.endpoint points the client at an S3-compatible stand-in (path-style)
+ */
 @Service
-public class S3Service {
+@ConditionalOnProperty(name = "storage.type", havingValue = "s3", matchIfMissing = true)
+public class S3Service implements StorageBackend {
     private static final Logger log = LoggerFactory.getLogger(S3Service.class);
 
+    // S3 rejects non-final parts smaller than this
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    // DeleteObjects accepts at most this many keys per request
+    private static final int DELETE_BATCH_SIZE = 1000;
+
     @Value("${aws.s3.bucket-name:}")
     private String bucket;
 
     @Value("${aws.region:us-east-1}")
     private String region;
 
+    @Value("${aws.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${aws.s3.multipart.threshold-bytes:8388608}")
+    private long multipartThreshold;
+
+    @Value("${aws.s3.multipart.part-size-bytes:8388608}")
+    private long partSize;
+
+    @Value("${aws.s3.multipart.concurrency:4}")
+    private int partConcurrency;
+
     private S3Client s3;
+    private S3AsyncClient asyncS3;
+    private S3Presigner presigner;
+    private ExecutorService partExecutor;
+    private ExecutorService multipartExecutor;
+    private Semaphore partBuffers;
 
     @Autowired
     private MeterRegistry registry;
 
     @PostConstruct
     public void init() {
+        partSize = Math.max(partSize, MIN_PART_SIZE);
+        AtomicInteger threadCount = new AtomicInteger();
+        partExecutor = Executors.newFixedThreadPool(partConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "s3-part-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // One buffered part per worker plus one being read ahead per worker
+        partBuffers = new Semaphore(partConcurrency * 2);
+        AtomicInteger multipartCount = new AtomicInteger();
+        multipartExecutor = Executors.newFixedThreadPool(partConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "s3-multipart-" + multipartCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
         if (bucket == null || bucket.isBlank()) {
             log.warn("S3 bucket name not configured. S3 operations will fail.");
             return;
         }
-        s3 = S3Client.builder()
+        S3ClientBuilder builder = S3Client.builder()
                 .region(Region.of(region))
-                .credentialsProvider(DefaultCredentialsProvider.create())
-                .build();
-        log.info("S3 client initialized for bucket: {} in region: {}", bucket, region);
+                .credentialsProvider(DefaultCredentialsProvider.create());
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint)).forcePathStyle(true);
+        }
+        s3 = builder.build();
+
+        S3AsyncClientBuilder asyncBuilder = S3AsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(DefaultCredentialsProvider.create());
+        if (endpoint != null && !endpoint.isBlank()) {
+            asyncBuilder.endpointOverride(URI.create(endpoint)).forcePathStyle(true);
+        }
+        asyncS3 = asyncBuilder.build();
+
+        S3Presigner.Builder presignerBuilder = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(DefaultCredentialsProvider.create());
+        if (endpoint != null && !endpoint.isBlank()) {
+            presignerBuilder.endpointOverride(URI.create(endpoint))
+                    .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
+        }
+        presigner = presignerBuilder.build();
+        log.info("S3 client initialized for bucket: {} in region: {}{}", bucket, region,
+                endpoint != null && !endpoint.isBlank() ? " via " + endpoint : "");
     }
 
     @PreDestroy
     public void close() {
+        if (partExecutor != null) {
+            partExecutor.shutdownNow();
+            multipartExecutor.shutdownNow();
+        }
+        if (asyncS3 != null) {
+            asyncS3.close();
+        }
+        if (presigner != null) {
+            presigner.close();
+        }
         if (s3 != null) {
             s3.close();
             log.info("S3 client closed");
         }
     }
 
-    public String upload(MultipartFile file, Long userId, Long productId) throws IOException {
-        long startTime = System.nanoTime();
-        String outcome = "success";
+    @Override
+    public Optional<PresignedPut> presignPut(String key, String contentType, Duration ttl) {
+        if (presigner == null) {
+            return Optional.empty();
+        }
+        PresignedPutObjectRequest presigned = presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(ttl)
+                .putObjectRequest(PutObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .contentType(contentType)
+                        .build())
+                .build());
 
-        if (s3 == null) {
-            throw new IOException("S3 client not initialized");
+        // The client's HTTP library sets Host itself; everything else signed must be sent as-is
+        Map<String, String> headers = new LinkedHashMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase("host")) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        log.info("Presigned S3 upload: bucket={}, key={}, expires={}", bucket, key, presigned.expiration());
+        return Optional.of(new PresignedPut(presigned.url().toString(), headers, presigned.expiration()));
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String key, InputStreamSource content, long size, String contentType) {
+        if (asyncS3 == null) {
+            return CompletableFuture.failedFuture(new IOException("S3 client not initialized"));
+        }
+
+        if (multipartThreshold > 0 && size > multipartThreshold) {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    multipartUpload(key, content, size, contentType);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, multipartExecutor);
         }
 
-        String ext = "";
-        String name = file.getOriginalFilename();
-        if (name != null && name.contains(".")) {
-            ext = name.substring(name.lastIndexOf("."));
+        AsyncRequestBody body;
+        try (InputStream in = content.getInputStream()) {
+            // At most the multipart threshold, so holding it in memory is bounded
+            body = AsyncRequestBody.fromBytes(in.readAllBytes());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        String key = String.format("user_%d/product_%d/%s%s", userId, productId, UUID.randomUUID(), ext);
 
-        log.info("Uploading file to S3: bucket={}, key={}, size={} bytes", bucket, key, file.getSize());
+        long startTime = System.nanoTime();
+        log.info("Uploading file to S3 (async): bucket={}, key={}, size={} bytes", bucket, key, size);
+
+        PutObjectRequest put = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .build();
+        return asyncS3.putObject(put, body).handle((response, error) -> {
+            Throwable cause = unwrap(error);
+            recordCall("putObject", cause == null ? "success" : "error", startTime);
+            if (cause != null) {
+                log.error("S3 upload failed: key={}, error={}", key, errorMessage(cause), cause);
+                throw new CompletionException(new IOException("S3 upload failed", cause));
+            }
+            log.info("S3 upload successful: key={}, duration={}ms", key,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            return null;
+        });
+    }
 
+    @Override
+    public InputStream get(String key) throws IOException {
+        if (s3 == null) {
+            throw new IOException("S3 client not initialized");
+        }
+        long startTime = System.nanoTime();
+        String outcome = "success";
         try {
-            PutObjectRequest put = PutObjectRequest.builder()
+            return s3.getObject(GetObjectRequest.builder()
                     .bucket(bucket)
                     .key(key)
-                    .contentType(file.getContentType())
-                    .build();
-            s3.putObject(put, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
-
-            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
-            log.info("S3 upload successful: key={}, duration={}ms", key, durationMs);
-
-            return key;
-
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new FileNotFoundException(key);
         } catch (S3Exception e) {
             outcome = "error";
-            String errorMsg = e.awsErrorDetails() != null
-                    ? e.awsErrorDetails().errorMessage()
-                    : e.getMessage();
-            log.error("S3 upload failed: key={}, error={}", key, errorMsg, e);
-            throw new IOException("S3 upload failed", e);
-
+            log.error("S3 get failed: key={}, error={}", key, errorMessage(e), e);
+            throw new IOException("S3 get failed", e);
         } finally {
-            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
-            Timer.builder("s3.call")
-                    .tag("operation", "putObject")
-                    .tag("outcome", outcome)
-                    .description("S3 operation timing")
-                    .register(registry)
-                    .record(durationMs, TimeUnit.MILLISECONDS);
+            recordCall("getObject", outcome, startTime);
         }
     }
 
-    public void delete(String key) throws IOException {
+    @Override
+    public Optional<ObjectStat> stat(String key) throws IOException {
+        if (s3 == null) {
+            throw new IOException("S3 client not initialized");
+        }
         long startTime = System.nanoTime();
         String outcome = "success";
+        try {
+            HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build());
+            return Optional.of(new ObjectStat(key, head.contentLength(), head.contentType(), head.lastModified()));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            outcome = "error";
+            log.error("S3 head failed: key={}, error={}", key, errorMessage(e), e);
+            throw new IOException("S3 head failed", e);
+        } finally {
+            recordCall("headObject", outcome, startTime);
+        }
+    }
 
+    @Override
+    public void copyRange(String key, long offset, long length, OutputStream out) throws IOException {
         if (s3 == null) {
             throw new IOException("S3 client not initialized");
         }
+        if (length == 0) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        String outcome = "success";
+        try (InputStream in = s3.getObject(GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .range("bytes=" + offset + "-" + (offset + length - 1))
+                .build())) {
+            in.transferTo(out);
+        } catch (NoSuchKeyException e) {
+            throw new FileNotFoundException(key);
+        } catch (S3Exception e) {
+            outcome = "error";
+            log.error("S3 ranged get failed: key={}, error={}", key, errorMessage(e), e);
+            throw new IOException("S3 get failed", e);
+        } catch (IOException e) {
+            // Usually the client went away mid-body
+            outcome = "error";
+            throw e;
+        } finally {
+            recordCall("getObject", outcome, startTime);
+        }
+    }
 
-        log.info("Deleting file from S3: bucket={}, key={}", bucket, key);
+    @Override
+    public CompletableFuture<Void> rename(String from, String to) {
+        if (asyncS3 == null) {
+            return CompletableFuture.failedFuture(new IOException("S3 client not initialized"));
+        }
 
-        try {
-            s3.deleteObject(DeleteObjectRequest.builder()
+        long startTime = System.nanoTime();
+        return asyncS3.copyObject(CopyObjectRequest.builder()
+                        .sourceBucket(bucket)
+                        .sourceKey(from)
+                        .destinationBucket(bucket)
+                        .destinationKey(to)
+                        .build())
+                .handle((response, error) -> {
+                    Throwable cause = unwrap(error);
+                    recordCall("copyObject", cause == null ? "success" : "error", startTime);
+                    if (cause != null) {
+                        log.error("S3 copy failed: from={}, to={}, error={}", from, to, errorMessage(cause), cause);
+                        throw new CompletionException(new IOException("S3 copy failed", cause));
+                    }
+                    return null;
+                })
+                .thenCompose(ignored -> remove(from).exceptionally(e -> {
+                    log.warn("Copied {} to {} but could not delete the source: {}", from, to, e.getMessage());
+                    return null;
+                }));
+    }
+
+    @Override
+    public CompletableFuture<Void> remove(String key) {
+        if (asyncS3 == null) {
+            return CompletableFuture.failedFuture(new IOException("S3 client not initialized"));
+        }
+
+        long startTime = System.nanoTime();
+        log.info("Deleting file from S3 (async): bucket={}, key={}", bucket, key);
+
+        return asyncS3.deleteObject(DeleteObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .build())
+                .handle((response, error) -> {
+                    Throwable cause = unwrap(error);
+                    recordCall("deleteObject", cause == null ? "success" : "error", startTime);
+                    if (cause != null) {
+                        log.error("S3 delete failed: key={}, error={}", key, errorMessage(cause), cause);
+                        throw new CompletionException(new IOException("S3 delete failed", cause));
+                    }
+                    log.info("S3 delete successful: key={}, duration={}ms", key,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                    return null;
+                });
+    }
+
+    /**
+     * DeleteObjects in batches of up to 1000 keys (the S3 limit), sent concurrently
+     */
+    @Override
+    public CompletableFuture<Void> removeAll(Collection<String> keys) {
+        if (asyncS3 == null) {
+            return CompletableFuture.failedFuture(new IOException("S3 client not initialized"));
+        }
+
+        List<String> all = List.copyOf(keys);
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += DELETE_BATCH_SIZE) {
+            List<ObjectIdentifier> batch = all.subList(from, Math.min(from + DELETE_BATCH_SIZE, all.size())).stream()
+                    .map(key -> ObjectIdentifier.builder().key(key).build())
+                    .toList();
+            batches.add(deleteBatch(batch));
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private CompletableFuture<Void> deleteBatch(List<ObjectIdentifier> batch) {
+        long startTime = System.nanoTime();
+        return asyncS3.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(bucket)
+                        // Quiet mode: only failures are listed in the response
+                        .delete(Delete.builder().objects(batch).quiet(true).build())
+                        .build())
+                .handle((response, error) -> {
+                    Throwable cause = unwrap(error);
+                    boolean failed = cause != null || response.hasErrors() && !response.errors().isEmpty();
+                    recordCall("deleteObjects", failed ? "error" : "success", startTime);
+                    if (cause != null) {
+                        log.error("S3 batch delete failed: keys={}, error={}", batch.size(), errorMessage(cause), cause);
+                        throw new CompletionException(new IOException("S3 batch delete failed", cause));
+                    }
+                    if (failed) {
+                        S3Error first = response.errors().get(0);
+                        log.error("S3 batch delete left {} of {} keys: first={}, error={}",
+                                response.errors().size(), batch.size(), first.key(), first.message());
+                        throw new CompletionException(new IOException(
+                                "S3 batch delete failed for " + response.errors().size() + " keys"));
+                    }
+                    log.info("S3 batch delete successful: keys={}, duration={}ms", batch.size(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                    return null;
+                });
+    }
+
+    private void multipartUpload(String key, InputStreamSource content, long size, String contentType) throws IOException {
+        long startTime = System.nanoTime();
+        String outcome = "success";
+        String uploadId = null;
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+
+        log.info("Uploading file to S3 in parts: bucket={}, key={}, size={} bytes, partSize={}",
+                bucket, key, size, partSize);
+
+        try (InputStream in = content.getInputStream()) {
+            uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .build()).uploadId();
+
+            int partNumber = 0;
+            while (true) {
+                // Bounds buffered parts across uploads; released once the part is sent
+                partBuffers.acquire();
+                byte[] buffer;
+                try {
+                    buffer = in.readNBytes((int) partSize);
+                } catch (IOException e) {
+                    partBuffers.release();
+                    throw e;
+                }
+                if (buffer.length == 0 && partNumber > 0) {
+                    partBuffers.release();
+                    break;
+                }
+                int number = ++partNumber;
+                String id = uploadId;
+                parts.add(partExecutor.submit(() -> {
+                    try {
+                        return uploadPart(key, id, number, buffer);
+                    } finally {
+                        partBuffers.release();
+                    }
+                }));
+                if (buffer.length < partSize) {
+                    break;
+                }
+            }
+
+            List<CompletedPart> completed = new ArrayList<>(parts.size());
+            for (Future<CompletedPart> part : parts) {
+                completed.add(part.get());
+            }
+            completed.sort(Comparator.comparing(CompletedPart::partNumber));
+
+            s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
                     .bucket(bucket)
                     .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
                     .build());
 
             long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
-            log.info("S3 delete successful: key={}, duration={}ms", key, durationMs);
+            log.info("S3 multipart upload successful: key={}, parts={}, duration={}ms", key, completed.size(), durationMs);
 
-        } catch (S3Exception e) {
+        } catch (InterruptedException e) {
+            outcome = "error";
+            Thread.currentThread().interrupt();
+            abort(key, uploadId, parts);
+            throw new IOException("S3 multipart upload interrupted", e);
+
+        } catch (ExecutionException | IOException | SdkException e) {
             outcome = "error";
-            String errorMsg = e.awsErrorDetails() != null
-                    ? e.awsErrorDetails().errorMessage()
-                    : e.getMessage();
-            log.error("S3 delete failed: key={}, error={}", key, errorMsg, e);
-            throw new IOException("S3 delete failed", e);
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            log.error("S3 multipart upload failed: key={}, error={}", key, cause.getMessage(), cause);
+            abort(key, uploadId, parts);
+            throw new IOException("S3 upload failed", cause);
 
         } finally {
-            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
-            Timer.builder("s3.call")
-                    .tag("operation", "deleteObject")
-                    .tag("outcome", outcome)
-                    .description("S3 operation timing")
-                    .register(registry)
-                    .record(durationMs, TimeUnit.MILLISECONDS);
+            recordCall("multipartUpload", outcome, startTime);
+        }
+    }
+
+    private CompletedPart uploadPart(String key, String uploadId, int partNumber, byte[] data) {
+        UploadPartResponse response = s3.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) data.length)
+                        .contentMD5(md5(data))
+                        .build(),
+                RequestBody.fromBytes(data));
+        return CompletedPart.builder()
+                .partNumber(partNumber)
+                .eTag(response.eTag())
+                .build();
+    }
+
+    // Parts still in flight are awaited first: one landing after the abort would be kept (and billed)
+    private void abort(String key, String uploadId, List<Future<CompletedPart>> parts) {
+        for (Future<CompletedPart> part : parts) {
+            try {
+                part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // already reported
+            }
+        }
+        if (uploadId == null) {
+            return;
+        }
+        try {
+            s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+            log.info("S3 multipart upload aborted: key={}, uploadId={}", key, uploadId);
+        } catch (SdkException e) {
+            log.error("S3 multipart abort failed: key={}, uploadId={}, error={}", key, uploadId, e.getMessage());
+        }
+    }
+
+    private static String md5(byte[] data) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("MD5").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    private void recordCall(String operation, String outcome, long startTime) {
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Timer.builder("s3.call")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .description("S3 operation timing")
+                .register(registry)
+                .record(durationMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static String errorMessage(Throwable error) {
+        if (error instanceof S3Exception e && e.awsErrorDetails() != null) {
+            return e.awsErrorDetails().errorMessage();
         }
+        return error.getMessage();
     }
-}
\ No newline at end of file
+}
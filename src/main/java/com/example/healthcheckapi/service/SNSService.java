@@ -1,33 +1,96 @@
 package com.example.healthcheckapi.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.sns.SnsClient;
-import software.amazon.awssdk.services.sns.model.PublishRequest;
-import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Verification messages for the signup flow. Signup writes them to the verification outbox
+ * (VerificationOutboxService), whose relay hands them here in batches.
+ * - verificationMessage renders the body the verification Lambda consumes
+ * - publish sends up to 10 messages (the SNS limit) in one PublishBatch call; a failed call
+ *   and retryable per-entry failures are retried with jittered exponential backoff up to
+ *   aws.sns.max-attempts, and whatever still failed is returned to the caller
+ * - Entries SNS rejects as the sender's fault are not retried: they are returned as
+ *   rejected, and the dead-letter log (event "sns_dead_letter") records the id, email and
+ *   reason. Never the body, which carries a live token and link; the caller keeps what is
+ *   needed to replay.
+ * - Metrics: "sns.publish.batch.size", "sns.publish.latency" (outcome) and
+ *   "sns.publish.dead_letter" (reason)
+ * - Without a topic ARN it runs in mock mode and only logs
+ */
 @Service
 public class SNSService {
     private static final Logger log = LoggerFactory.getLogger(SNSService.class);
 
+    // PublishBatch accepts at most this many entries per request
+    public static final int MAX_BATCH_SIZE = 10;
+
+    private static final String SUBJECT = "Email Verification Required";
+
     @Value("${aws.sns.topic-arn:}")
     private String topicArn;
 
     @Value("${aws.region:us-east-1}")
     private String region;
 
+    @Value("${aws.sns.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${aws.sns.retry-base-ms:200}")
+    private long retryBaseMs;
+
+    @Value("${aws.sns.retry-max-ms:2000}")
+    private long retryMaxMs;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry registry;
+
     private SnsClient snsClient;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Message body the verification Lambda consumes
+     */
+    record VerificationMessage(String email, String token, String verificationLink, String timestamp) {
+    }
+
+    /**
+     * A rendered message to publish; id is the caller's reference to it
+     */
+    public record Outgoing(long id, String email, String json) {
+    }
+
+    /**
+     * unpublished: worth sending again later; rejected: SNS will refuse them every time
+     */
+    public record PublishResult(List<Outgoing> unpublished, List<Outgoing> rejected) {
+    }
 
     @PostConstruct
     public void init() {
@@ -50,35 +113,132 @@ public class SNSService {
         }
     }
 
-    public void publishUserVerificationMessage(String email, String token, String domain) {
+    public String verificationMessage(String email, String token, String domain) {
+        VerificationMessage message = new VerificationMessage(email, token,
+                String.format("http://%s/v1/user/verify?email=%s&token=%s", domain, email, token),
+                String.valueOf(System.currentTimeMillis()));
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize verification message for " + email, e);
+        }
+    }
+
+    /**
+     * Send one batch (at most MAX_BATCH_SIZE), retrying what failed retryably; returns the
+     * messages that are still unpublished and those SNS rejected (already dead-lettered)
+     */
+    public PublishResult publish(List<Outgoing> batch) {
+        if (batch.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " messages per batch, got " + batch.size());
+        }
         if (snsClient == null) {
-            log.info("SNS Mock: Would send verification to {} with token {} at domain {}", email, token, domain);
-            return;
+            batch.forEach(outgoing -> log.info("SNS Mock: Would send verification to {} (message {})",
+                    outgoing.email(), outgoing.id()));
+            return new PublishResult(List.of(), List.of());
         }
 
+        DistributionSummary.builder("sns.publish.batch.size")
+                .register(registry)
+                .record(batch.size());
+
+        List<Outgoing> remaining = batch;
+        List<Outgoing> rejected = new ArrayList<>();
+        for (int attempt = 1; ; attempt++) {
+            long startTime = System.nanoTime();
+            String outcome;
+            List<Outgoing> retry;
+            try {
+                retry = send(remaining, rejected);
+                outcome = retry.isEmpty() ? "success" : "partial";
+            } catch (SdkException e) {
+                log.warn("SNS PublishBatch of {} failed (attempt {}): {}", remaining.size(), attempt, e.getMessage());
+                retry = remaining;
+                outcome = "error";
+            }
+            Timer.builder("sns.publish.latency")
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+
+            if (retry.isEmpty() || attempt >= maxAttempts) {
+                return new PublishResult(retry, rejected);
+            }
+            try {
+                Thread.sleep(backoff(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new PublishResult(retry, rejected);
+            }
+            remaining = retry;
+        }
+    }
+
+    /**
+     * One PublishBatch call; returns the entries worth sending again and adds those SNS
+     * rejected to rejected
+     */
+    private List<Outgoing> send(List<Outgoing> batch, List<Outgoing> rejected) {
+        List<PublishBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            entries.add(PublishBatchRequestEntry.builder()
+                    .id(Integer.toString(i))
+                    .message(batch.get(i).json())
+                    .subject(SUBJECT)
+                    .build());
+        }
+
+        PublishBatchResponse response = snsClient.publishBatch(PublishBatchRequest.builder()
+                .topicArn(topicArn)
+                .publishBatchRequestEntries(entries)
+                .build());
+        if (log.isDebugEnabled()) {
+            response.successful().forEach(entry -> log.debug("SNS message published: MessageId={}, Email={}",
+                    entry.messageId(), batch.get(Integer.parseInt(entry.id())).email()));
+        }
+        if (!response.hasFailed() || response.failed().isEmpty()) {
+            return List.of();
+        }
+
+        List<Outgoing> retry = new ArrayList<>();
+        List<Outgoing> refused = new ArrayList<>();
+        for (BatchResultErrorEntry failure : response.failed()) {
+            Outgoing outgoing = batch.get(Integer.parseInt(failure.id()));
+            log.warn("SNS rejected message for {}: code={}, senderFault={}, {}",
+                    outgoing.email(), failure.code(), failure.senderFault(), failure.message());
+            // A sender fault fails the same way every time
+            if (Boolean.TRUE.equals(failure.senderFault())) {
+                refused.add(outgoing);
+            } else {
+                retry.add(outgoing);
+            }
+        }
+        if (!refused.isEmpty()) {
+            deadLetter(refused, "rejected");
+            rejected.addAll(refused);
+        }
+        return retry;
+    }
+
+    private long backoff(int attempt) {
+        // Full jitter: a random wait up to the exponential bound, so retries don't line up
+        long bound = Math.min(retryBaseMs << Math.min(attempt - 1, 20), retryMaxMs);
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private void deadLetter(List<Outgoing> messages, String reason) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        registry.counter("sns.publish.dead_letter", "reason", reason).increment(messages.size());
         try {
-            Map<String, String> message = new HashMap<>();
-            message.put("email", email);
-            message.put("token", token);
-            message.put("verificationLink", String.format("http://%s/v1/user/verify?email=%s&token=%s",
-                    domain, email, token));
-            message.put("timestamp", String.valueOf(System.currentTimeMillis()));
-
-            String messageJson = objectMapper.writeValueAsString(message);
-
-            PublishRequest publishRequest = PublishRequest.builder()
-                    .topicArn(topicArn)
-                    .message(messageJson)
-                    .subject("Email Verification Required")
-                    .build();
-
-            PublishResponse response = snsClient.publish(publishRequest);
-            log.info("SNS message published: MessageId={}, Email={}",
-                    response.messageId(), email);
-
-        } catch (Exception e) {
-            log.error("Failed to publish SNS message for email: {}", email, e);
-            throw new RuntimeException("Failed to send verification email", e);
+            MDC.put("event", "sns_dead_letter");
+            for (Outgoing outgoing : messages) {
+                log.error("Verification message not published ({}): id={}, email={}",
+                        reason, outgoing.id(), outgoing.email());
+            }
+        } finally {
+            MDC.remove("event");
         }
     }
-}
\ No newline at end of file
+}
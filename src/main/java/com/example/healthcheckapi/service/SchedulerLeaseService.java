@@ -0,0 +1,61 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.repository.SchedulerLeaseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Leader election for scheduled jobs that must run on one instance at a time.
+ * - Each job has a row in scheduler_leases; tryAcquire takes it when it is free, expired
+ *   or already held by this instance (which extends it), in one conditional UPDATE
+ * - A lease ends on its own after the ttl, so a crashed leader is replaced without help;
+ *   long jobs call tryAcquire again as they go to keep it
+ * - release hands it back early, only if this instance still holds it
+ */
+@Service
+public class SchedulerLeaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(SchedulerLeaseService.class);
+
+    @Autowired
+    private SchedulerLeaseRepository leaseRepository;
+
+    // One owner id per process
+    private final String ownerId = UUID.randomUUID().toString();
+
+    private final TransactionTemplate transactionTemplate;
+
+    public SchedulerLeaseService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * Take or extend the named lease for ttl; false when another instance holds it
+     */
+    public boolean tryAcquire(String name, Duration ttl) {
+        Instant now = Instant.now();
+        Integer acquired = transactionTemplate.execute(status -> {
+            leaseRepository.ensure(name);
+            return leaseRepository.acquire(name, ownerId, now, now.plus(ttl));
+        });
+        boolean held = acquired != null && acquired > 0;
+        log.debug("Lease {} {} by {}", name, held ? "held" : "not acquired", ownerId);
+        return held;
+    }
+
+    public void release(String name) {
+        transactionTemplate.executeWithoutResult(status -> leaseRepository.release(name, ownerId));
+    }
+}
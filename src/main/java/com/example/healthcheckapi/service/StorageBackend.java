@@ -0,0 +1,110 @@
+package com.example.healthcheckapi.service;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Object storage behind image files. Exactly one implementation is active, chosen at
+ * startup by storage.type: s3 (default), local or memory.
+ * - Keys are relative, '/'-separated paths; uploads go to a staging key and are then
+ *   renamed to their content-addressed key (see contentKey)
+ * - Writes and deletes return futures so a backend can do network I/O without holding
+ *   the caller's thread; reads are plain blocking calls
+ * - Backends clients can reach directly (S3) can presign a PUT, so upload bytes skip
+ *   this service entirely
+ * - Deleting a missing key is not an error
+ */
+public interface StorageBackend {
+
+    /**
+     * Metadata of a stored object
+     */
+    record ObjectStat(String key, long size, String contentType, Instant lastModified) {
+    }
+
+    /**
+     * A URL a client can PUT the object to directly, with the headers it must send
+     */
+    record PresignedPut(String url, Map<String, String> headers, Instant expiresAt) {
+    }
+
+    CompletableFuture<Void> put(String key, InputStreamSource content, long size, String contentType);
+
+    /**
+     * Sign a direct upload of key, valid for ttl; empty for backends clients can't reach
+     * (local disk, memory). Signing is local, no request is made.
+     */
+    default Optional<PresignedPut> presignPut(String key, String contentType, Duration ttl) {
+        return Optional.empty();
+    }
+
+    /**
+     * Open the object for reading; FileNotFoundException if it doesn't exist
+     */
+    InputStream get(String key) throws IOException;
+
+    Optional<ObjectStat> stat(String key) throws IOException;
+
+    /**
+     * Write length bytes of the object, starting at offset, to out (which is left open).
+     * The range must lie within the object; FileNotFoundException if it doesn't exist.
+     */
+    void copyRange(String key, long offset, long length, OutputStream out) throws IOException;
+
+    /**
+     * The file holding the object, for backends that keep one on local disk; lets the
+     * servlet container send it with sendfile
+     */
+    default Optional<Path> localFile(String key) throws IOException {
+        return Optional.empty();
+    }
+
+    /**
+     * Move an object to a new key, replacing whatever is stored there
+     */
+    CompletableFuture<Void> rename(String from, String to);
+
+    CompletableFuture<Void> remove(String key);
+
+    CompletableFuture<Void> removeAll(Collection<String> keys);
+
+    /**
+     * Where an upload is written while its digest (and so its final key) is not yet known
+     */
+    static String stagingKey() {
+        return "staging/" + UUID.randomUUID();
+    }
+
+    /**
+     * Content-addressed key: images/sha256/{first two hex digits}/{hex digest}. Identical
+     * bytes always map to the same key; the prefix keeps local directories small.
+     */
+    static String contentKey(byte[] sha256) {
+        String hex = HexFormat.of().formatHex(sha256);
+        return "images/sha256/" + hex.substring(0, 2) + "/" + hex;
+    }
+
+    /**
+     * Key for a new image that isn't content-addressed (direct uploads, where the digest
+     * is never seen): user_{userId}/product_{productId}/{uuid}{.ext}
+     */
+    static String imageKey(Long userId, Long productId, String originalFilename) {
+        String ext = "";
+        if (originalFilename != null && originalFilename.contains(".")) {
+            ext = originalFilename.substring(originalFilename.lastIndexOf("."));
+        }
+        return String.format("user_%d/product_%d/%s%s", userId, productId, UUID.randomUUID(), ext);
+    }
+}
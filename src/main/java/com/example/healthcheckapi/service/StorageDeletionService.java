@@ -0,0 +1,209 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.entity.ImageObject;
+import com.example.healthcheckapi.entity.StorageDeletion;
+import com.example.healthcheckapi.repository.ImageObjectRepository;
+import com.example.healthcheckapi.repository.StorageDeletionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for stored objects that are no longer referenced.
+ * - enqueue writes rows in the caller's transaction, so the row delete that orphans an
+ *   object and the note to remove it commit (or roll back) together; the client never
+ *   waits on storage
+ * - The relay claims due rows with a lease (one UPDATE ... LIMIT), so several instances
+ *   can drain the table without deleting the same keys; a crashed relay's lease expires
+ * - Each claimed batch (storage.outbox.batch-size, at most the 1000 keys S3 DeleteObjects
+ *   accepts) is one removeAll call, made while the batch's image_objects rows (tombstones,
+ *   see ImageObjectService) are locked; an upload of the same bytes waits that long
+ * - A failed batch is retried with exponential backoff; rows stay until the backend
+ *   confirms, so nothing is dropped
+ * - Rows whose content key was uploaded again since they were queued are dropped instead
+ *   of deleting a live object; the lock makes that check hold until the delete is done
+ * - Metrics: "storage.outbox.relay" (outcome), "storage.outbox.deleted" (keys) and
+ *   "storage.outbox.lag" (queued to deleted)
+ */
+@Service
+public class StorageDeletionService {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageDeletionService.class);
+
+    // S3 DeleteObjects accepts at most this many keys per request
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    @Value("${storage.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.outbox.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${storage.outbox.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${storage.outbox.retry-base-seconds:5}")
+    private long retryBaseSeconds;
+
+    @Value("${storage.outbox.retry-max-seconds:3600}")
+    private long retryMaxSeconds;
+
+    @Autowired
+    private StorageDeletionRepository storageDeletionRepository;
+
+    @Autowired
+    private ImageObjectRepository imageObjectRepository;
+
+    @Autowired
+    private StorageBackend storage;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public StorageDeletionService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() {
+        batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        log.info("Storage delete relay initialized: enabled={}, batchSize={}, leaseSeconds={}",
+                enabled, batchSize, leaseSeconds);
+    }
+
+    /**
+     * Queue the objects (all belonging to sourceKey) for deletion; only as part of the
+     * transaction that removed their last reference
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String sourceKey, Collection<String> keys) {
+        Instant now = Instant.now();
+        storageDeletionRepository.saveAll(keys.stream()
+                .map(key -> new StorageDeletion(key, sourceKey, now))
+                .toList());
+    }
+
+    @Scheduled(fixedDelayString = "${storage.outbox.poll-interval-ms:1000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            // A full batch means there is probably more waiting
+            while (drain() == batchSize) {
+                log.debug("Storage delete outbox has more due rows, draining again");
+            }
+        } catch (RuntimeException e) {
+            log.error("Storage delete relay failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Claim one batch of due rows and delete their objects; returns the number of rows
+     * completed (0 when the batch failed, so the relay backs off until the next poll)
+     */
+    public int drain() {
+        String owner = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        List<StorageDeletion> batch = transactionTemplate.execute(status -> {
+            int claimed = storageDeletionRepository.claim(owner, now, now.plusSeconds(leaseSeconds), batchSize);
+            if (claimed == 0) {
+                return List.of();
+            }
+            return storageDeletionRepository.findByLeaseOwner(owner);
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        long startTime = System.nanoTime();
+        List<Long> ids = batch.stream().map(StorageDeletion::getId).toList();
+        Set<String> sources = batch.stream().map(StorageDeletion::getSourceKey).collect(Collectors.toCollection(TreeSet::new));
+        Integer deleted;
+        try {
+            deleted = transactionTemplate.execute(status -> delete(batch, sources));
+        } catch (CompletionException e) {
+            // Rolled back: the rows and tombstones are kept for the retry
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            int attempts = batch.stream().mapToInt(StorageDeletion::getAttempts).max().orElse(0) + 1;
+            Instant retryAt = Instant.now().plus(backoff(attempts));
+            transactionTemplate.executeWithoutResult(status ->
+                    storageDeletionRepository.reschedule(ids, retryAt));
+            record("error", startTime);
+            log.warn("Storage delete of {} keys failed (attempt {}), retrying at {}: {}",
+                    batch.size(), attempts, retryAt, cause.getMessage());
+            return 0;
+        }
+
+        record("success", startTime);
+        registry.counter("storage.outbox.deleted").increment(deleted != null ? deleted : 0);
+        Timer lag = registry.timer("storage.outbox.lag");
+        Instant done = Instant.now();
+        batch.forEach(row -> lag.record(Duration.between(row.getDateCreated(), done)));
+        log.info("Deleted {} stored objects from the outbox", deleted);
+        return batch.size();
+    }
+
+    /**
+     * Delete the batch's objects while holding the reference rows of their content keys,
+     * then drop the rows and tombstones; returns the number of objects deleted. Holding
+     * the lock across the storage call is what keeps a concurrent upload of the same
+     * bytes from reviving a key whose object is about to go: its acquire waits here.
+     */
+    private int delete(List<StorageDeletion> batch, Set<String> sources) {
+        Set<String> live = imageObjectRepository.findByObjectKeyInOrderByObjectKey(sources).stream()
+                .filter(object -> object.getRefCount() > 0)
+                .map(ImageObject::getObjectKey)
+                .collect(Collectors.toSet());
+        if (!live.isEmpty()) {
+            log.info("Dropping queued deletes for {} objects uploaded again since", live.size());
+        }
+        List<String> keys = batch.stream()
+                .filter(row -> !live.contains(row.getSourceKey()))
+                .map(StorageDeletion::getObjectKey)
+                .distinct()
+                .toList();
+        if (!keys.isEmpty()) {
+            storage.removeAll(keys).join();
+        }
+        storageDeletionRepository.deleteAllByIdInBatch(batch.stream().map(StorageDeletion::getId).toList());
+        imageObjectRepository.deleteTombstones(sources);
+        return keys.size();
+    }
+
+    private Duration backoff(int attempts) {
+        // Shift bounded so it can't overflow; the cap applies long before that anyway
+        long seconds = retryBaseSeconds << Math.min(attempts - 1, 20);
+        return Duration.ofSeconds(Math.min(seconds, retryMaxSeconds));
+    }
+
+    private void record(String outcome, long startTime) {
+        Timer.builder("storage.outbox.relay")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+}
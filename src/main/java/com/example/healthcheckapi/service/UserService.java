@@ -1,33 +1,72 @@
 package com.example.healthcheckapi.service;
 
+import com.example.healthcheckapi.config.AuthenticatedUser;
 import com.example.healthcheckapi.entity.User;
 import com.example.healthcheckapi.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import java.util.ArrayList;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private CredentialCacheService credentialCacheService;
+
+    @Autowired
+    private ExistenceFilterService existenceFilter;
+
+    @Autowired
+    private VerificationOutboxService verificationOutbox;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public UserService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        return new org.springframework.security.core.userdetails.User(
+        return new AuthenticatedUser(
+                user.getId(),
                 user.getUsername(),
                 user.getPassword(),
-                new ArrayList<>()
+                user.isEmailVerified()
+        );
+    }
+
+    /**
+     * Persist a re-encoded hash after login when the stored BCrypt cost is outdated.
+     * The plaintext is unchanged, so cached credentials stay valid.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User entity = userRepository.findByUsername(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        entity.setPassword(newPassword);
+        userRepository.save(entity);
+
+        return new AuthenticatedUser(
+                entity.getId(),
+                entity.getUsername(),
+                newPassword,
+                entity.isEmailVerified()
         );
     }
 
@@ -39,20 +78,53 @@ public class UserService implements UserDetailsService {
         return userRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Reference to a user whose id is already known (no query)
+     */
+    public User getReference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
+
     public boolean existsByUsername(String username) {
-        return userRepository.existsByUsername(username);
+        if (!existenceFilter.mightContain(ExistenceFilterService.Key.USERNAME, username)) {
+            return false;
+        }
+        boolean exists = userRepository.existsByUsername(username);
+        existenceFilter.recordLookup(ExistenceFilterService.Key.USERNAME, exists);
+        return exists;
     }
 
     public User createUser(User user) {
-        // Encode password before saving
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        return createUser(user, null);
+    }
+
+    /**
+     * With a verification domain, the user and the outgoing verification message commit in
+     * one transaction; the outbox relay issues the token when it sends the message
+     */
+    public User createUser(User user, String verificationDomain) {
+        // Encode password before saving; hashing stays outside the transaction
+        user.setPassword(passwordHashingService.encode(user.getPassword()));
+        User saved = transactionTemplate.execute(status -> {
+            User created = userRepository.save(user);
+            if (verificationDomain != null) {
+                verificationOutbox.enqueue(created.getUsername(), verificationDomain);
+            }
+            return created;
+        });
+        existenceFilter.add(ExistenceFilterService.Key.USERNAME, saved.getUsername());
+        return saved;
     }
 
     public User updateUser(User user, String newPassword) {
         if (newPassword != null) {
-            user.setPassword(passwordEncoder.encode(newPassword));
+            user.setPassword(passwordHashingService.encode(newPassword));
+        }
+        User saved = userRepository.save(user);
+        if (newPassword != null) {
+            // Old password must stop working immediately, not after the cache TTL
+            credentialCacheService.invalidate(saved.getUsername());
         }
-        return userRepository.save(user);
+        return saved;
     }
 }
@@ -0,0 +1,266 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.entity.VerificationOutboxMessage;
+import com.example.healthcheckapi.repository.VerificationOutboxRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox for verification messages.
+ * - enqueue writes the message in the signup transaction, so a user never commits without
+ *   the message that lets them verify, whatever the state of SNS
+ * - The token is issued when a claimed row is sent, not at signup: its lifetime (60s) is
+ *   far shorter than the retry backoff, so a token issued at signup would be dead in any
+ *   message sent after an outage. Each attempt carries a fresh token; those of attempts
+ *   that failed expire unused.
+ * - The relay claims due rows with a lease (one UPDATE ... LIMIT), so several instances
+ *   can publish at once without picking up the same rows; a crashed relay's lease expires.
+ *   The lease is renewed before every PublishBatch call, and a relay that finds rows gone
+ *   to another owner stops sending. Rows are only settled (deleted, rescheduled, parked)
+ *   while still leased to the relay that sent them. Delivery is at least once: a relay
+ *   stalled past its lease inside one call can still overlap the next claim.
+ * - Claimed rows go out through SNS PublishBatch, 10 per call; published rows are deleted,
+ *   rows SNS rejected are parked for replay (rejected_at) and the rest retried with
+ *   jittered exponential backoff
+ * - SNS I/O runs with no transaction open
+ * - Metrics: "verification.outbox.relay" (outcome), "verification.outbox.published" and
+ *   "verification.outbox.lag" (signup to published); "verification.outbox.depth" (rows
+ *   waiting, parked ones excluded) and "verification.outbox.oldest.age" are sampled every
+ *   verification.outbox.metrics-interval-ms, on every instance whether or not it relays
+ */
+@Service
+public class VerificationOutboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(VerificationOutboxService.class);
+
+    @Value("${verification.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${verification.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${verification.outbox.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${verification.outbox.retry-base-seconds:5}")
+    private long retryBaseSeconds;
+
+    @Value("${verification.outbox.retry-max-seconds:600}")
+    private long retryMaxSeconds;
+
+    @Value("${verification.outbox.metrics-interval-ms:15000}")
+    private long metricsIntervalMs;
+
+    @Autowired
+    private VerificationOutboxRepository outboxRepository;
+
+    @Autowired
+    private SNSService snsService;
+
+    @Autowired
+    private EmailVerificationService verificationService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Last sample of the table; oldest is null when it was empty
+     */
+    private record Backlog(long depth, Instant oldest) {
+    }
+
+    private final AtomicReference<Backlog> backlog = new AtomicReference<>(new Backlog(0, null));
+
+    public VerificationOutboxService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() {
+        batchSize = Math.max(1, batchSize);
+        Gauge.builder("verification.outbox.depth", backlog, ref -> ref.get().depth())
+                .description("Verification messages waiting in the outbox")
+                .register(registry);
+        // Measured from the sample, so a relay that stopped shows a growing age between samples
+        Gauge.builder("verification.outbox.oldest.age", backlog, ref -> {
+                    Instant oldest = ref.get().oldest();
+                    return oldest == null ? 0 : Duration.between(oldest, Instant.now()).toMillis() / 1e3;
+                })
+                .description("Seconds since the oldest waiting verification message was queued")
+                .baseUnit("seconds")
+                .register(registry);
+        log.info("Verification outbox relay initialized: enabled={}, batchSize={}, leaseSeconds={}, metricsIntervalMs={}",
+                enabled, batchSize, leaseSeconds, metricsIntervalMs);
+    }
+
+    /**
+     * Queue the verification message for a new user; only as part of the signup transaction
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String email, String domain) {
+        outboxRepository.save(new VerificationOutboxMessage(email, domain, Instant.now()));
+    }
+
+    @Scheduled(fixedDelayString = "${verification.outbox.poll-interval-ms:1000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            // A full batch means there is probably more waiting
+            while (drain() == batchSize) {
+                log.debug("Verification outbox has more due rows, draining again");
+            }
+        } catch (RuntimeException e) {
+            log.error("Verification outbox relay failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${verification.outbox.metrics-interval-ms:15000}")
+    public void sampleBacklog() {
+        try {
+            backlog.set(new Backlog(outboxRepository.countByRejectedAtIsNull(),
+                    outboxRepository.findFirstByRejectedAtIsNullOrderByIdAsc()
+                    .map(VerificationOutboxMessage::getDateCreated)
+                    .orElse(null)));
+        } catch (RuntimeException e) {
+            log.warn("Could not sample the verification outbox: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claim one batch of due rows and publish them; returns the number of rows published or
+     * parked (less than a full batch when any failed, so the relay waits for the next poll)
+     */
+    public int drain() {
+        String owner = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        List<VerificationOutboxMessage> batch = transactionTemplate.execute(status -> {
+            int claimed = outboxRepository.claim(owner, now, now.plusSeconds(leaseSeconds), batchSize);
+            return claimed == 0 ? List.<VerificationOutboxMessage>of() : outboxRepository.findByLeaseOwner(owner);
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        // Fresh tokens for this attempt, committed before any link that carries them goes out
+        List<SNSService.Outgoing> outgoing = transactionTemplate.execute(status -> batch.stream()
+                .map(row -> new SNSService.Outgoing(row.getId(), row.getEmail(), snsService.verificationMessage(
+                        row.getEmail(), verificationService.issueToken(row.getEmail()), row.getDomain())))
+                .toList());
+
+        long startTime = System.nanoTime();
+        List<VerificationOutboxMessage> done = new ArrayList<>(batch.size());
+        List<VerificationOutboxMessage> failed = new ArrayList<>();
+        List<Long> rejected = new ArrayList<>();
+        for (int from = 0; from < batch.size(); from += SNSService.MAX_BATCH_SIZE) {
+            // Each call may retry for a while, so the whole batch can outlive one lease
+            if (from > 0 && !renewLease(owner, batch.size())) {
+                log.warn("Verification outbox lease lost after {} of {} rows; leaving the rest to their new owner",
+                        from, batch.size());
+                break;
+            }
+            int to = Math.min(from + SNSService.MAX_BATCH_SIZE, batch.size());
+            List<VerificationOutboxMessage> chunk = batch.subList(from, to);
+            SNSService.PublishResult result = snsService.publish(outgoing.subList(from, to));
+            Set<Long> unpublished = result.unpublished().stream()
+                    .map(SNSService.Outgoing::id)
+                    .collect(Collectors.toSet());
+            result.rejected().forEach(message -> rejected.add(message.id()));
+            for (VerificationOutboxMessage row : chunk) {
+                if (unpublished.contains(row.getId())) {
+                    failed.add(row);
+                } else if (!rejected.contains(row.getId())) {
+                    done.add(row);
+                }
+            }
+        }
+
+        Instant retryAt = failed.isEmpty() ? null : Instant.now().plus(backoff(
+                failed.stream().mapToInt(VerificationOutboxMessage::getAttempts).max().orElse(0) + 1));
+        Integer settled = transactionTemplate.execute(status -> {
+            int rows = 0;
+            if (!done.isEmpty()) {
+                rows += outboxRepository.deleteLeased(
+                        done.stream().map(VerificationOutboxMessage::getId).toList(), owner);
+            }
+            if (!failed.isEmpty()) {
+                rows += outboxRepository.reschedule(
+                        failed.stream().map(VerificationOutboxMessage::getId).toList(), owner, retryAt);
+            }
+            if (!rejected.isEmpty()) {
+                rows += outboxRepository.park(rejected, owner, Instant.now());
+            }
+            return rows;
+        });
+        int sent = done.size() + failed.size() + rejected.size();
+        if (settled == null || settled < sent) {
+            // Another relay holds them now and settles them after its own attempt
+            log.warn("Verification outbox lease lost before settling: {} of {} rows left to their new owner",
+                    sent - (settled == null ? 0 : settled), sent);
+        }
+
+        record(failed.isEmpty() ? "success" : done.isEmpty() ? "error" : "partial", startTime);
+        registry.counter("verification.outbox.published").increment(done.size());
+        Timer lag = registry.timer("verification.outbox.lag");
+        Instant published = Instant.now();
+        done.forEach(row -> lag.record(Duration.between(row.getDateCreated(), published)));
+        if (!rejected.isEmpty()) {
+            log.warn("Parked {} verification messages SNS rejected: ids={}", rejected.size(), rejected);
+        }
+        if (failed.isEmpty()) {
+            log.info("Published {} verification messages from the outbox", done.size());
+        } else {
+            log.warn("Published {} verification messages; {} failed, retrying at {}", done.size(), failed.size(), retryAt);
+        }
+        // Parked rows are settled too
+        return done.size() + rejected.size();
+    }
+
+    /**
+     * Push the lease out again; false when some claimed rows are no longer held by this owner
+     */
+    private boolean renewLease(String owner, int claimed) {
+        Integer renewed = transactionTemplate.execute(status ->
+                outboxRepository.extendLease(owner, Instant.now().plusSeconds(leaseSeconds)));
+        return renewed != null && renewed == claimed;
+    }
+
+    private Duration backoff(int attempts) {
+        // Exponential with jitter in the upper half, so instances retrying after an outage spread out
+        long seconds = Math.min(retryBaseSeconds << Math.min(attempts - 1, 20), retryMaxSeconds);
+        long millis = TimeUnit.SECONDS.toMillis(seconds);
+        return Duration.ofMillis(millis / 2 + ThreadLocalRandom.current().nextLong(millis / 2 + 1));
+    }
+
+    private void record(String outcome, long startTime) {
+        Timer.builder("verification.outbox.relay")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+}
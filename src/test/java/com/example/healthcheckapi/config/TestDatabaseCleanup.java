@@ -1,5 +1,7 @@
 package com.example.healthcheckapi.config;
 
+import com.example.healthcheckapi.service.CredentialCacheService;
+import com.example.healthcheckapi.service.ProductCacheService;
 import org.springframework.test.context.TestContext;
 import org.springframework.test.context.support.AbstractTestExecutionListener;
 
@@ -16,6 +18,12 @@ public class TestDatabaseCleanup extends AbstractTestExecutionListener {
     public void afterTestMethod(TestContext testContext) throws Exception {
         DataSource dataSource = testContext.getApplicationContext().getBean(DataSource.class);
         cleanDatabase(dataSource);
+
+        // Cached credentials would point at users that no longer exist
+        testContext.getApplicationContext().getBeanProvider(CredentialCacheService.class)
+                .ifAvailable(CredentialCacheService::invalidateAll);
+        testContext.getApplicationContext().getBeanProvider(ProductCacheService.class)
+                .ifAvailable(ProductCacheService::invalidateAll);
     }
 
     private void cleanDatabase(DataSource dataSource) {
@@ -37,8 +45,11 @@ public class TestDatabaseCleanup extends AbstractTestExecutionListener {
             }
             rs.close();
 
-            // Truncate all tables
+            // Truncate all tables (sequence tables must keep their single row)
             for (String table : tables) {
+                if (table.endsWith("_seq")) {
+                    continue;
+                }
                 stmt.execute("TRUNCATE TABLE " + table);
             }
 
@@ -0,0 +1,34 @@
+package com.example.healthcheckapi.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hibernate StatementInspector that counts SELECTs resolving a user by username.
+ * Enable with hibernate.session_factory.statement_inspector.
+ */
+public class UserLookupCounter implements StatementInspector {
+
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    public static void reset() {
+        COUNT.set(0);
+    }
+
+    public static int count() {
+        return COUNT.get();
+    }
+
+    @Override
+    public String inspect(String sql) {
+        String normalized = sql.toLowerCase(Locale.ROOT);
+        if (normalized.startsWith("select")
+                && normalized.contains(" from users ")
+                && normalized.contains(".username=?")) {
+            COUNT.incrementAndGet();
+        }
+        return sql;
+    }
+}
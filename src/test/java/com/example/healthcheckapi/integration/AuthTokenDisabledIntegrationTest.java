@@ -0,0 +1,62 @@
+package com.example.healthcheckapi.integration;
+
+import com.example.healthcheckapi.entity.User;
+import com.example.healthcheckapi.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Base64;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * No signing keys and no ephemeral-key opt-in: bearer tokens are off, Basic keeps working
+ */
+@TestPropertySource(properties = {
+        "auth.token.signing-keys=",
+        "auth.token.allow-ephemeral-key=false"
+})
+public class AuthTokenDisabledIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private User testUser;
+    private String authHeader;
+
+    @BeforeEach
+    public void setup() {
+        userRepository.deleteAll();
+        testUser = new User();
+        testUser.setUsername("nokeys@test.com");
+        testUser.setPassword(passwordEncoder.encode("password123"));
+        testUser.setFirstName("No");
+        testUser.setLastName("Keys");
+        testUser = userRepository.save(testUser);
+        authHeader = "Basic " + Base64.getEncoder().encodeToString("nokeys@test.com:password123".getBytes());
+    }
+
+    @Test
+    public void testIssueToken_NoSigningKeys_NotImplemented() throws Exception {
+        mockMvc.perform(post("/v1/auth/token").header("Authorization", authHeader))
+                .andExpect(status().isNotImplemented());
+
+        // Any bearer token is rejected; Basic still works
+        mockMvc.perform(get("/v1/user/" + testUser.getId()).header("Authorization", "Bearer local.e30.AAAA"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/v1/user/" + testUser.getId()).header("Authorization", authHeader))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.healthcheckapi.integration;
+
+import com.example.healthcheckapi.entity.Image;
+import com.example.healthcheckapi.entity.Product;
+import com.example.healthcheckapi.entity.StorageDeletion;
+import com.example.healthcheckapi.entity.User;
+import com.example.healthcheckapi.repository.ImageObjectRepository;
+import com.example.healthcheckapi.repository.ImageRepository;
+import com.example.healthcheckapi.repository.ProductRepository;
+import com.example.healthcheckapi.repository.StorageDeletionRepository;
+import com.example.healthcheckapi.repository.UserRepository;
+import com.example.healthcheckapi.service.DirectUploadService;
+import com.example.healthcheckapi.service.LocalStorageService;
+import com.example.healthcheckapi.service.StorageBackend;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Presigned upload flow. The local backend can't presign, so the spy hands out a
+ * stand-in URL and the test writes the object itself, as the client's PUT would.
+ */
+public class DirectUploadIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private ImageObjectRepository imageObjectRepository;
+
+    @Autowired
+    private StorageDeletionRepository storageDeletionRepository;
+
+    @Autowired
+    private DirectUploadService directUploadService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @MockitoSpyBean
+    private LocalStorageService localStorageService;
+
+    private Product testProduct;
+    private String authHeader;
+
+    @BeforeEach
+    public void setup() {
+        imageRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User testUser = new User();
+        testUser.setUsername("direct@test.com");
+        testUser.setPassword(passwordEncoder.encode("password123"));
+        testUser.setFirstName("Direct");
+        testUser.setLastName("Uploader");
+        testUser = userRepository.save(testUser);
+
+        testProduct = new Product();
+        testProduct.setName("Direct Product");
+        testProduct.setDescription("Presigned upload target");
+        testProduct.setSku("DIRECT-001");
+        testProduct.setManufacturer("DirectCorp");
+        testProduct.setQuantity(1);
+        testProduct.setOwner(testUser);
+        testProduct = productRepository.save(testProduct);
+
+        authHeader = "Basic " + Base64.getEncoder().encodeToString("direct@test.com:password123".getBytes());
+    }
+
+    private void presignSucceeds() {
+        doAnswer(invocation -> Optional.of(new StorageBackend.PresignedPut(
+                "http://localhost:9000/test-bucket/" + invocation.getArgument(0) + "?X-Amz-Signature=test",
+                Map.of("content-type", invocation.getArgument(1)),
+                Instant.now().plus(invocation.<Duration>getArgument(2)))))
+                .when(localStorageService).presignPut(any(), any(), any());
+    }
+
+    private Long requestUploadUrl(String fileName) throws Exception {
+        String response = mockMvc.perform(post("/v1/product/" + testProduct.getId() + "/image/upload-url")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"file_name\": \"" + fileName + "\"}")
+                        .header("Authorization", authHeader))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.upload_url", startsWith("http://localhost:9000/test-bucket/")))
+                .andExpect(jsonPath("$.method").value("PUT"))
+                .andExpect(jsonPath("$.headers.content-type").exists())
+                .andReturn().getResponse().getContentAsString();
+        return ((Number) objectMapper.readValue(response, Map.class).get("image_id")).longValue();
+    }
+
+    private String completeUrl(Long imageId) {
+        return "/v1/product/" + testProduct.getId() + "/image/" + imageId + "/complete";
+    }
+
+    @Test
+    public void testDirectUpload_CompleteAfterPut() throws Exception {
+        presignSucceeds();
+        Long imageId = requestUploadUrl("front.png");
+
+        // Pending: invisible, and completing before the PUT is a conflict
+        mockMvc.perform(get("/v1/product/" + testProduct.getId() + "/image"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(post(completeUrl(imageId)).header("Authorization", authHeader))
+                .andExpect(status().isConflict());
+
+        // The client's PUT
+        String key = imageRepository.findById(imageId).orElseThrow().getS3BucketPath();
+        byte[] bytes = "direct png bytes".getBytes();
+        localStorageService.put(key, new ByteArrayResource(bytes), bytes.length, "image/png").join();
+
+        mockMvc.perform(post(completeUrl(imageId)).header("Authorization", authHeader))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.image_id").value(imageId))
+                .andExpect(jsonPath("$.file_name").value("front.png"))
+                .andExpect(jsonPath("$.s3_bucket_path").value(key));
+
+        mockMvc.perform(get("/v1/product/" + testProduct.getId() + "/image/" + imageId))
+                .andExpect(status().isOk());
+        assertEquals(1, imageObjectRepository.findById(key).orElseThrow().getRefCount());
+
+        // A retried completion gets the same answer
+        mockMvc.perform(post(completeUrl(imageId)).header("Authorization", authHeader))
+                .andExpect(status().isCreated());
+        assertEquals(1, imageObjectRepository.findById(key).orElseThrow().getRefCount());
+    }
+
+    @Test
+    public void testDirectUpload_RejectionAfterConcurrentCompletion_KeepsImage() throws Exception {
+        presignSucceeds();
+        Long imageId = requestUploadUrl("front.png");
+        // Loaded by a second complete request before the first one finished
+        Image stale = directUploadService.findUpload(imageId, testProduct.getId());
+        String key = stale.getS3BucketPath();
+        byte[] bytes = "direct png bytes".getBytes();
+        localStorageService.put(key, new ByteArrayResource(bytes), bytes.length, "image/png").join();
+        mockMvc.perform(post(completeUrl(imageId)).header("Authorization", authHeader))
+                .andExpect(status().isCreated());
+
+        // The second request's HEAD sees a re-PUT that fails validation
+        localStorageService.put(key, new ByteArrayResource(new byte[0]), 0, "image/png").join();
+        DirectUploadService.Completion completion = directUploadService.complete(stale);
+
+        // The completed image and its object stay
+        assertEquals(DirectUploadService.Completion.Status.COMPLETED, completion.status());
+        assertTrue(imageRepository.existsById(imageId));
+        assertEquals(0, storageDeletionRepository.count());
+    }
+
+    @Test
+    public void testDirectUpload_PutAgainAfterCompletion_NotServed() throws Exception {
+        presignSucceeds();
+        Long imageId = requestUploadUrl("front.png");
+        String key = imageRepository.findById(imageId).orElseThrow().getS3BucketPath();
+        byte[] bytes = "direct png bytes".getBytes();
+        localStorageService.put(key, new ByteArrayResource(bytes), bytes.length, "image/png").join();
+        mockMvc.perform(post(completeUrl(imageId)).header("Authorization", authHeader))
+                .andExpect(status().isCreated());
+        String contentUrl = "/v1/product/" + testProduct.getId() + "/image/" + imageId + "/content";
+        mockMvc.perform(get(contentUrl)).andExpect(status().isOk());
+
+        // The still-valid presigned URL is used again: different bytes, later Last-Modified
+        doAnswer(invocation -> Optional.of(new StorageBackend.ObjectStat(key, 1 << 30, "text/html",
+                Instant.now().plusSeconds(60))))
+                .when(localStorageService).stat(eq(key));
+
+        mockMvc.perform(get(contentUrl)).andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testDirectUpload_InvalidFileName() throws Exception {
+        mockMvc.perform(post("/v1/product/" + testProduct.getId() + "/image/upload-url")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"file_name\": \"notes.txt\"}")
+                        .header("Authorization", authHeader))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(0, imageRepository.count());
+    }
+
+    @Test
+    public void testDirectUpload_BackendCannotPresign() throws Exception {
+        mockMvc.perform(post("/v1/product/" + testProduct.getId() + "/image/upload-url")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"file_name\": \"front.png\"}")
+                        .header("Authorization", authHeader))
+                .andExpect(status().isNotImplemented());
+
+        assertEquals(0, imageRepository.count());
+    }
+
+    @Test
+    public void testDirectUpload_ExpiredPendingSwept() throws Exception {
+        presignSucceeds();
+        Long expired = requestUploadUrl("abandoned.jpg");
+        Long fresh = requestUploadUrl("in-progress.jpg");
+        String expiredKey = imageRepository.findById(expired).orElseThrow().getS3BucketPath();
+        jdbcTemplate.update("UPDATE images SET date_created = ? WHERE image_id = ?",
+                Timestamp.from(Instant.now().minus(Duration.ofDays(1))), expired);
+
+        directUploadService.sweep();
+
+        // Only the expired upload is gone; whatever it stored is queued for deletion
+        assertFalse(imageRepository.existsById(expired));
+        assertTrue(imageRepository.existsById(fresh));
+        assertTrue(storageDeletionRepository.findAll().stream()
+                .map(StorageDeletion::getObjectKey)
+                .anyMatch(expiredKey::equals));
+        mockMvc.perform(post(completeUrl(expired)).header("Authorization", authHeader))
+                .andExpect(status().isNotFound());
+    }
+}
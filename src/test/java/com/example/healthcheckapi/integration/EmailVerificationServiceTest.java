@@ -0,0 +1,136 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.repository.EmailVerificationTokenRepository;
+import com.example.healthcheckapi.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class EmailVerificationServiceTest {
+
+    private static final String EMAIL = "signed@test.com";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UserRepository userRepository;
+    private EmailVerificationTokenRepository tokenRepository;
+    private CredentialCacheService credentialCacheService;
+    private EmailVerificationService verificationService;
+
+    private EmailVerificationService newService(String signingKeys, long ttlSeconds) {
+        EmailVerificationService service = new EmailVerificationService();
+        // Set required fields via reflection (since @Value annotations won't work in unit tests)
+        ReflectionTestUtils.setField(service, "tokenMode", "signed");
+        ReflectionTestUtils.setField(service, "signingKeys", signingKeys);
+        ReflectionTestUtils.setField(service, "activeKeyId", "");
+        ReflectionTestUtils.setField(service, "ttlSeconds", ttlSeconds);
+        ReflectionTestUtils.setField(service, "replayCacheSize", 100L);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "registry", meterRegistry);
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+        ReflectionTestUtils.setField(service, "tokenRepository", tokenRepository);
+        ReflectionTestUtils.setField(service, "credentialCacheService", credentialCacheService);
+        service.init();
+        return service;
+    }
+
+    private static String key(String kid, char fill) {
+        return kid + ":" + Base64.getEncoder().encodeToString(String.valueOf(fill).repeat(32).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("email.verification.token").tag("result", result).counter().count();
+    }
+
+    @BeforeEach
+    public void setup() {
+        userRepository = mock(UserRepository.class);
+        tokenRepository = mock(EmailVerificationTokenRepository.class);
+        credentialCacheService = mock(CredentialCacheService.class);
+        verificationService = newService(key("k1", 'a'), 60);
+        when(userRepository.markEmailVerified(eq(EMAIL), any())).thenReturn(1);
+    }
+
+    @Test
+    public void testSignedToken_VerifiesWithOneUpdateAndNoTokenRow() {
+        String token = verificationService.issueToken(EMAIL);
+
+        assertTrue(verificationService.verifyToken(EMAIL, token));
+
+        verify(userRepository).markEmailVerified(eq(EMAIL), any());
+        verify(userRepository, never()).findByUsername(any());
+        verifyNoInteractions(tokenRepository);
+        verify(credentialCacheService).invalidate(EMAIL);
+        assertFalse(verificationService.hasUnverifiedToken(EMAIL));
+    }
+
+    @Test
+    public void testSignedToken_ReplayRejectedWithoutQuery() {
+        String token = verificationService.issueToken(EMAIL);
+        assertTrue(verificationService.verifyToken(EMAIL, token));
+
+        assertFalse(verificationService.verifyToken(EMAIL, token));
+
+        verify(userRepository, times(1)).markEmailVerified(any(), any());
+        assertEquals(1, count("replayed"));
+    }
+
+    @Test
+    public void testSignedToken_OtherEmailRejected() {
+        String token = verificationService.issueToken(EMAIL);
+
+        assertFalse(verificationService.verifyToken("someone-else@test.com", token));
+
+        verify(userRepository, never()).markEmailVerified(any(), any());
+        assertEquals(1, count("email_mismatch"));
+    }
+
+    @Test
+    public void testSignedToken_TamperedOrForeignKeyRejected() {
+        String token = verificationService.issueToken(EMAIL);
+        String[] parts = token.split("\\.");
+        String forgedPayload = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                ("{\"jti\":\"x\",\"sub\":\"" + EMAIL + "\",\"exp\":9999999999}").getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(verificationService.verifyToken(EMAIL, parts[0] + "." + forgedPayload + "." + parts[2]));
+        // Same key id, different secret
+        String foreign = newService(key("k1", 'b'), 60).issueToken(EMAIL);
+        assertFalse(verificationService.verifyToken(EMAIL, foreign));
+        assertFalse(verificationService.verifyToken(EMAIL, "not-a-token"));
+
+        verify(userRepository, never()).markEmailVerified(any(), any());
+        assertEquals(2, count("bad_signature"));
+        assertEquals(1, count("malformed"));
+    }
+
+    @Test
+    public void testSignedToken_ExpiredRejected() {
+        EmailVerificationService shortLived = newService(key("k1", 'a'), 0);
+        String token = shortLived.issueToken(EMAIL);
+
+        assertFalse(shortLived.verifyToken(EMAIL, token));
+
+        verify(userRepository, never()).markEmailVerified(any(), any());
+        assertEquals(1, count("expired"));
+    }
+
+    @Test
+    public void testSignedToken_AlreadyVerifiedUserUnchanged() {
+        when(userRepository.markEmailVerified(eq(EMAIL), any())).thenReturn(0);
+
+        assertFalse(verificationService.verifyToken(EMAIL, verificationService.issueToken(EMAIL)));
+
+        verify(credentialCacheService, never()).invalidate(any());
+        assertEquals(1, count("not_pending"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.entity.HealthCheck;
+import com.example.healthcheckapi.repository.HealthCheckRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class HealthCheckServiceTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HealthCheckRepository healthCheckRepository;
+    private HealthCheckService healthCheckService;
+
+    private HealthCheckService newService(String mode, long probeIntervalMs, long maxStalenessMs) {
+        HealthCheckService service = new HealthCheckService();
+        // Set required fields via reflection (since @Value annotations won't work in unit tests)
+        ReflectionTestUtils.setField(service, "mode", mode);
+        ReflectionTestUtils.setField(service, "probeIntervalMs", probeIntervalMs);
+        ReflectionTestUtils.setField(service, "maxStalenessMs", maxStalenessMs);
+        ReflectionTestUtils.setField(service, "healthCheckRepository", healthCheckRepository);
+        ReflectionTestUtils.setField(service, "registry", meterRegistry);
+        service.init();
+        return service;
+    }
+
+    @BeforeEach
+    public void setup() {
+        healthCheckRepository = mock(HealthCheckRepository.class);
+        when(healthCheckRepository.saveAndFlush(any(HealthCheck.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (healthCheckService != null) {
+            healthCheckService.shutdown();
+        }
+    }
+
+    @Test
+    public void testInline_EveryCallChecksDatabase() {
+        healthCheckService = newService("inline", 60_000, 60_000);
+
+        assertTrue(healthCheckService.isHealthy());
+        assertTrue(healthCheckService.isHealthy());
+
+        verify(healthCheckRepository, times(2)).saveAndFlush(any(HealthCheck.class));
+    }
+
+    @Test
+    public void testBackground_AnswersFromLastProbe() {
+        // Long interval: only the initial probe runs on its own
+        healthCheckService = newService("background", 60_000, 60_000);
+        verify(healthCheckRepository, timeout(2000)).saveAndFlush(any(HealthCheck.class));
+        // The status is published right after the insert returns
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!healthCheckService.isHealthy() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(healthCheckService.isHealthy());
+        }
+        verify(healthCheckRepository, times(1)).saveAndFlush(any(HealthCheck.class));
+
+        // A failing probe flips the published status
+        when(healthCheckRepository.saveAndFlush(any(HealthCheck.class)))
+                .thenThrow(new DataAccessResourceFailureException("Communications link failure"));
+        healthCheckService.probe();
+        assertFalse(healthCheckService.isHealthy());
+        assertEquals(1, meterRegistry.get("health.check.probe").tag("outcome", "unhealthy").timer().count());
+    }
+
+    @Test
+    public void testBackground_StaleStatusIsUnhealthy() throws Exception {
+        healthCheckService = newService("background", 60_000, 50);
+        healthCheckService.probe();
+        assertTrue(healthCheckService.isHealthy());
+
+        // No probe finished within the staleness bound (e.g. one stuck on the database)
+        Thread.sleep(100);
+
+        assertFalse(healthCheckService.isHealthy());
+    }
+
+    @Test
+    public void testBackground_UnhealthyBeforeFirstProbe() {
+        when(healthCheckRepository.saveAndFlush(any(HealthCheck.class))).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return invocation.getArgument(0);
+        });
+        healthCheckService = newService("background", 60_000, 60_000);
+
+        assertFalse(healthCheckService.isHealthy());
+    }
+}
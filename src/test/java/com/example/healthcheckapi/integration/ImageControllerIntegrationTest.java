@@ -1,11 +1,17 @@
 package com.example.healthcheckapi.integration;
 
 import com.example.healthcheckapi.entity.Image;
+import com.example.healthcheckapi.entity.ImageVariant;
 import com.example.healthcheckapi.entity.Product;
+import com.example.healthcheckapi.entity.StorageDeletion;
 import com.example.healthcheckapi.entity.User;
+import com.example.healthcheckapi.repository.ImageObjectRepository;
 import com.example.healthcheckapi.repository.ImageRepository;
 import com.example.healthcheckapi.repository.ProductRepository;
+import com.example.healthcheckapi.repository.StorageDeletionRepository;
 import com.example.healthcheckapi.repository.UserRepository;
+import com.example.healthcheckapi.service.StorageBackend;
+import com.example.healthcheckapi.service.StorageDeletionService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,12 +22,22 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -48,9 +64,21 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
     @Autowired
     private ImageRepository imageRepository;
 
+    @Autowired
+    private ImageObjectRepository imageObjectRepository;
+
+    @Autowired
+    private StorageDeletionRepository storageDeletionRepository;
+
+    @Autowired
+    private StorageDeletionService storageDeletions;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Value("${file.upload-dir:./uploads}")
     private String uploadDir;
 
@@ -130,7 +158,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "fake image content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated())
@@ -143,8 +171,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.file_name").value("test-image.jpg"))
                 .andExpect(jsonPath("$.date_created").exists())
                 .andExpect(jsonPath("$.s3_bucket_path").exists())
-                .andExpect(jsonPath("$.s3_bucket_path",
-                        startsWith("user_" + testUser.getId())));
+                .andExpect(jsonPath("$.s3_bucket_path", startsWith("images/sha256/")));
 
         // Verify database persistence
         assertEquals(1, imageRepository.count());
@@ -164,7 +191,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "fake png content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated())
@@ -180,7 +207,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "fake jpeg content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated())
@@ -197,7 +224,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content 1".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file1)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated());
@@ -210,7 +237,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content 2".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file2)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated());
@@ -223,7 +250,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content 3".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file3)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated());
@@ -252,7 +279,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "user1 content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file1)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated());
@@ -264,19 +291,165 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "user2 content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + anotherProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + anotherProduct.getId() + "/image")
                         .file(file2)
                         .header("Authorization", anotherAuthHeader))
                 .andExpect(status().isCreated());
 
-        // Both should succeed - files stored in different directories
+        // Both should succeed - different content, so different objects
         assertEquals(2, imageRepository.count());
 
         List<Image> images = imageRepository.findAll();
-        // Verify they're in different user directories
         assertNotEquals(images.get(0).getS3BucketPath(), images.get(1).getS3BucketPath());
     }
 
+    @Test
+    public void testUploadImage_IdenticalContentSharesObject() throws Exception {
+        Product anotherProduct = new Product();
+        anotherProduct.setName("Second Product");
+        anotherProduct.setDescription("Same product shot");
+        anotherProduct.setSku("IMG-TEST-003");
+        anotherProduct.setManufacturer("TestCorp");
+        anotherProduct.setQuantity(3);
+        anotherProduct.setOwner(testUser);
+        anotherProduct = productRepository.save(anotherProduct);
+
+        byte[] shot = "the same product shot".getBytes();
+        Image first = uploadBytes(testProduct, "front.jpg", shot);
+        Image second = uploadBytes(anotherProduct, "front-copy.jpg", shot);
+
+        // One stored object, two references
+        assertEquals(first.getS3BucketPath(), second.getS3BucketPath());
+        Path object = Paths.get(uploadDir, first.getS3BucketPath());
+        assertTrue(Files.exists(object));
+        assertEquals(2, imageObjectRepository.findById(first.getS3BucketPath()).orElseThrow().getRefCount());
+        try (var files = Files.walk(Paths.get(uploadDir))) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+
+        // Deleting one image keeps the object for the other
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() + "/image/" + first.getImageId())
+                        .header("Authorization", authHeader))
+                .andExpect(status().isNoContent());
+        assertTrue(Files.exists(object));
+        assertEquals(1, imageObjectRepository.findById(first.getS3BucketPath()).orElseThrow().getRefCount());
+
+        // The last reference queues it for removal
+        performAsync(mockMvc, delete("/v1/product/" + anotherProduct.getId() + "/image/" + second.getImageId())
+                        .header("Authorization", authHeader))
+                .andExpect(status().isNoContent());
+        assertTrue(Files.exists(object));
+        storageDeletions.drain();
+        assertFalse(Files.exists(object));
+        assertFalse(imageObjectRepository.existsById(first.getS3BucketPath()));
+    }
+
+    @Test
+    public void testUploadImage_SameContentAfterDelete_QueuedDeleteDropped() throws Exception {
+        byte[] shot = "deleted, then uploaded again".getBytes();
+        Image first = uploadBytes(testProduct, "again.jpg", shot);
+        String key = first.getS3BucketPath();
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() + "/image/" + first.getImageId())
+                        .header("Authorization", authHeader))
+                .andExpect(status().isNoContent());
+        // The reference row stays, at zero, while the delete is queued
+        assertEquals(0, imageObjectRepository.findById(key).orElseThrow().getRefCount());
+
+        Image second = uploadBytes(testProduct, "again.jpg", shot);
+        assertEquals(key, second.getS3BucketPath());
+        assertEquals(1, imageObjectRepository.findById(key).orElseThrow().getRefCount());
+
+        // The relay sees the object is live again and drops the queued delete
+        storageDeletions.drain();
+        assertTrue(Files.exists(Paths.get(uploadDir, key)));
+        assertEquals(0, storageDeletionRepository.count());
+    }
+
+    @Test
+    public void testUploadImage_SameContentWhileRelayDeletes_WaitsAndStoresOwnCopy() throws Exception {
+        byte[] shot = "uploaded while its delete is in flight".getBytes();
+        Image first = uploadBytes(testProduct, "inflight.jpg", shot);
+        String key = first.getS3BucketPath();
+        Path object = Paths.get(uploadDir, key);
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() + "/image/" + first.getImageId())
+                        .header("Authorization", authHeader))
+                .andExpect(status().isNoContent());
+
+        // Hold the reference row the way the relay does across its storage call
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CountDownLatch locked = new CountDownLatch(1);
+        CompletableFuture<Void> relay = CompletableFuture.runAsync(() ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    imageObjectRepository.findByObjectKeyInOrderByObjectKey(List.of(key));
+                    locked.countDown();
+                    try {
+                        Thread.sleep(500);
+                        Files.delete(object);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    imageObjectRepository.deleteTombstones(List.of(key));
+                }));
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        // The upload waits for the delete to commit, then moves its own copy in
+        Image second = uploadBytes(testProduct, "inflight.jpg", shot);
+        relay.join();
+
+        assertEquals(key, second.getS3BucketPath());
+        assertTrue(Files.exists(object));
+        assertEquals(1, imageObjectRepository.findById(key).orElseThrow().getRefCount());
+    }
+
+    @Test
+    public void testUploadImages_Batch_PerFileResults() throws Exception {
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image/batch")
+                        .file(new MockMultipartFile("file", "front.jpg", "image/jpeg", "front view".getBytes()))
+                        .file(new MockMultipartFile("file", "notes.txt", "text/plain", "not an image".getBytes()))
+                        .file(new MockMultipartFile("file", "back.png", "image/png", "back view".getBytes()))
+                        .header("Authorization", authHeader))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.summary.created").value(2))
+                .andExpect(jsonPath("$.summary.invalid").value(1))
+                .andExpect(jsonPath("$.results", hasSize(3)))
+                .andExpect(jsonPath("$.results[0].status").value("created"))
+                .andExpect(jsonPath("$.results[0].file_name").value("front.jpg"))
+                .andExpect(jsonPath("$.results[0].image_id").exists())
+                .andExpect(jsonPath("$.results[1].status").value("invalid"))
+                .andExpect(jsonPath("$.results[1].image_id").doesNotExist())
+                .andExpect(jsonPath("$.results[2].status").value("created"));
+
+        // Only the valid files were stored and inserted
+        assertEquals(2, imageRepository.count());
+        assertEquals(2, imageObjectRepository.count());
+        for (Image image : imageRepository.findByProduct_Id(testProduct.getId())) {
+            assertTrue(Files.exists(Paths.get(uploadDir, image.getS3BucketPath())));
+        }
+    }
+
+    @Test
+    public void testUploadImages_Batch_NotOwner() throws Exception {
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image/batch")
+                        .file(new MockMultipartFile("file", "front.jpg", "image/jpeg", "front view".getBytes()))
+                        .header("Authorization", anotherAuthHeader))
+                .andExpect(status().isForbidden());
+
+        assertEquals(0, imageRepository.count());
+    }
+
+    @Test
+    public void testUploadImages_Batch_TooManyFiles() throws Exception {
+        var request = multipart("/v1/product/" + testProduct.getId() + "/image/batch");
+        for (int i = 0; i <= 20; i++) {
+            request.file(new MockMultipartFile("file", "img-" + i + ".jpg", "image/jpeg", ("image " + i).getBytes()));
+        }
+
+        performAsync(mockMvc, request.header("Authorization", authHeader))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(0, imageRepository.count());
+    }
+
     @Test
     public void testGetAllImages_PublicAccess() throws Exception {
         // Upload images first
@@ -322,6 +495,216 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.s3_bucket_path").exists());
     }
 
+    @Test
+    public void testGetImages_ConditionalGet() throws Exception {
+        Image uploadedImage = uploadTestImage("etag-image.jpg");
+        String imageUrl = "/v1/product/" + testProduct.getId() + "/image/" + uploadedImage.getImageId();
+        String listUrl = "/v1/product/" + testProduct.getId() + "/image";
+
+        String imageETag = mockMvc.perform(get(imageUrl))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get(imageUrl).header("If-None-Match", imageETag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        String listETag = mockMvc.perform(get(listUrl))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get(listUrl).header("If-None-Match", listETag))
+                .andExpect(status().isNotModified());
+
+        // Adding an image changes the list ETag
+        uploadTestImage("etag-image-2.jpg");
+        mockMvc.perform(get(listUrl).header("If-None-Match", listETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    public void testGetImageContent_Full() throws Exception {
+        Image uploadedImage = uploadTestImage("content-full.jpg");
+        String body = "content of content-full.jpg";
+
+        mockMvc.perform(get(contentUrl(uploadedImage)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/jpeg"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().longValue("Content-Length", body.length()))
+                .andExpect(header().exists("ETag"))
+                .andExpect(content().string(body));
+    }
+
+    @Test
+    public void testGetImageContent_SingleRange() throws Exception {
+        Image uploadedImage = uploadTestImage("content-range.jpg");
+        int length = "content of content-range.jpg".length();
+
+        mockMvc.perform(get(contentUrl(uploadedImage)).header("Range", "bytes=0-6"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 0-6/" + length))
+                .andExpect(header().longValue("Content-Length", 7))
+                .andExpect(content().string("content"));
+
+        // Suffix range: the last four bytes
+        mockMvc.perform(get(contentUrl(uploadedImage)).header("Range", "bytes=-4"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes " + (length - 4) + "-" + (length - 1) + "/" + length))
+                .andExpect(content().string(".jpg"));
+
+        // Open-ended range past the end is clamped
+        mockMvc.perform(get(contentUrl(uploadedImage)).header("Range", "bytes=11-1000"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 11-" + (length - 1) + "/" + length))
+                .andExpect(content().string("content-range.jpg"));
+    }
+
+    @Test
+    public void testGetImageContent_MultipleRanges() throws Exception {
+        Image uploadedImage = uploadTestImage("content-multi.jpg");
+        int length = "content of content-multi.jpg".length();
+
+        var response = mockMvc.perform(get(contentUrl(uploadedImage)).header("Range", "bytes=0-6,11-15"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Type", startsWith("multipart/byteranges; boundary=")))
+                .andReturn().getResponse();
+
+        String boundary = response.getContentType().substring(response.getContentType().indexOf("boundary=") + 9);
+        String body = response.getContentAsString();
+        assertEquals(body.length(), Long.parseLong(response.getHeader("Content-Length")));
+        assertEquals("\r\n--" + boundary + "\r\n"
+                + "Content-Type: image/jpeg\r\n"
+                + "Content-Range: bytes 0-6/" + length + "\r\n\r\n"
+                + "content"
+                + "\r\n--" + boundary + "\r\n"
+                + "Content-Type: image/jpeg\r\n"
+                + "Content-Range: bytes 11-15/" + length + "\r\n\r\n"
+                + "conte"
+                + "\r\n--" + boundary + "--\r\n", body);
+    }
+
+    @Test
+    public void testGetImageContent_RangeNotSatisfiable() throws Exception {
+        Image uploadedImage = uploadTestImage("content-416.jpg");
+        int length = "content of content-416.jpg".length();
+
+        mockMvc.perform(get(contentUrl(uploadedImage)).header("Range", "bytes=1000-2000"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */" + length));
+    }
+
+    @Test
+    public void testGetImageContent_IfRangeMismatchSendsWholeObject() throws Exception {
+        Image uploadedImage = uploadTestImage("content-if-range.jpg");
+
+        mockMvc.perform(get(contentUrl(uploadedImage))
+                        .header("Range", "bytes=0-6")
+                        .header("If-Range", "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string("content of content-if-range.jpg"));
+    }
+
+    @Test
+    public void testGetImageContent_WeakIfRangeSendsWholeObject() throws Exception {
+        Image uploadedImage = uploadTestImage("content-weak-if-range.jpg");
+        String etag = mockMvc.perform(get(contentUrl(uploadedImage)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // If-Range needs a strong match: the current tag marked weak doesn't qualify
+        mockMvc.perform(get(contentUrl(uploadedImage))
+                        .header("Range", "bytes=0-6")
+                        .header("If-Range", "W/" + etag))
+                .andExpect(status().isOk())
+                .andExpect(content().string("content of content-weak-if-range.jpg"));
+
+        mockMvc.perform(get(contentUrl(uploadedImage))
+                        .header("Range", "bytes=0-6")
+                        .header("If-Range", etag))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("content"));
+    }
+
+    @Test
+    public void testGetImageContent_LocalFileHandedToSendfile() throws Exception {
+        Image uploadedImage = uploadTestImage("content-sendfile.jpg");
+        Path file = Paths.get(uploadDir, uploadedImage.getS3BucketPath()).toAbsolutePath().normalize();
+
+        // Tomcat offers sendfile: the handler names the file region and writes no body itself
+        mockMvc.perform(get(contentUrl(uploadedImage))
+                        .header("Range", "bytes=11-17")
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().longValue("Content-Length", 7))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", file.toString()))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.start", 11L))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.end", 18L))
+                .andExpect(content().string(""));
+
+        // Without it the bytes are copied into the response
+        mockMvc.perform(get(contentUrl(uploadedImage)).header("Range", "bytes=11-17"))
+                .andExpect(status().isPartialContent())
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", nullValue()))
+                .andExpect(content().string("content"));
+    }
+
+    @Test
+    public void testGetImageContent_NotFound() throws Exception {
+        mockMvc.perform(get("/v1/product/" + testProduct.getId() + "/image/999999/content"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testUploadImage_VariantsGeneratedInBackground() throws Exception {
+        BufferedImage picture = new BufferedImage(1200, 600, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(picture, "png", png);
+        MockMultipartFile file = new MockMultipartFile("file", "large.png", "image/png", png.toByteArray());
+
+        String response = performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
+                        .file(file)
+                        .header("Authorization", authHeader))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long imageId = ((Number) objectMapper.readValue(response, java.util.Map.class).get("image_id")).longValue();
+
+        // Variants are recorded after the upload response, by the background pool
+        Image image = null;
+        for (int attempt = 0; attempt < 100; attempt++) {
+            image = imageRepository.findById(imageId).orElseThrow();
+            if (image.getVariants().size() == 3) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(List.of(128, 512, 1024),
+                image.getVariants().stream().map(ImageVariant::getWidth).sorted().toList());
+        for (ImageVariant variant : image.getVariants()) {
+            assertEquals(variant.getWidth() / 2, variant.getHeight());
+            assertTrue(Files.exists(Paths.get(uploadDir, variant.getS3BucketPath())));
+        }
+
+        mockMvc.perform(get("/v1/product/" + testProduct.getId() + "/image/" + imageId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.variants", hasSize(3)));
+
+        byte[] thumbnail = mockMvc.perform(get("/v1/product/" + testProduct.getId() + "/image/" + imageId
+                        + "/content").param("width", "128"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(128, ImageIO.read(new ByteArrayInputStream(thumbnail)).getWidth());
+
+        // Deleting the image removes its variants too
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() + "/image/" + imageId)
+                        .header("Authorization", authHeader))
+                .andExpect(status().isNoContent());
+        storageDeletions.drain();
+        for (ImageVariant variant : image.getVariants()) {
+            assertFalse(Files.exists(Paths.get(uploadDir, variant.getS3BucketPath())));
+        }
+    }
+
     @Test
     public void testDeleteImage_Success() throws Exception {
         // Upload an image
@@ -334,7 +717,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         assertTrue(Files.exists(Paths.get(uploadDir, filePath)));
 
         // Delete the image
-        mockMvc.perform(delete("/v1/product/" + testProduct.getId() +
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() +
                         "/image/" + imageId)
                         .header("Authorization", authHeader))
                 .andExpect(status().isNoContent());
@@ -342,8 +725,11 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         // Verify image deleted from database
         assertFalse(imageRepository.existsById(imageId));
 
-        // Verify file deleted from disk
+        // The file is queued on the outbox, and gone once the relay has run
+        assertTrue(Files.exists(Paths.get(uploadDir, filePath)));
+        assertTrue(storageDeletions.drain() > 0);
         assertFalse(Files.exists(Paths.get(uploadDir, filePath)));
+        assertEquals(0, storageDeletionRepository.count());
     }
 
     @Test
@@ -354,7 +740,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         Image image3 = uploadTestImage("keep2.jpg");
 
         // Delete middle image
-        mockMvc.perform(delete("/v1/product/" + testProduct.getId() +
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() +
                         "/image/" + image2.getImageId())
                         .header("Authorization", authHeader))
                 .andExpect(status().isNoContent());
@@ -377,7 +763,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file))
                 .andExpect(status().isUnauthorized());
 
@@ -394,7 +780,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file))
                 .andExpect(status().isUnauthorized())
                 .andExpect(header().string("WWW-Authenticate", containsString("Basic")));
@@ -412,7 +798,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         String invalidAuth = "Basic " + Base64.getEncoder()
                 .encodeToString("imagetest@test.com:wrongpassword".getBytes());
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", invalidAuth))
                 .andExpect(status().isUnauthorized());
@@ -428,7 +814,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         );
 
         // Try to upload to testUser's product using anotherUser's credentials
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", anotherAuthHeader))
                 .andExpect(status().isForbidden());
@@ -446,7 +832,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/99999/image")
+        performAsync(mockMvc, multipart("/v1/product/99999/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isNotFound());
@@ -461,7 +847,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "gif content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isBadRequest());
@@ -478,7 +864,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "pdf content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isBadRequest());
@@ -493,7 +879,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "text content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isBadRequest());
@@ -508,7 +894,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 new byte[0]
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isBadRequest());
@@ -516,7 +902,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
 
     @Test
     public void testUploadImage_NoFileProvided() throws Exception {
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .header("Authorization", authHeader))
                 .andExpect(status().isBadRequest());
     }
@@ -530,7 +916,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isBadRequest());
@@ -579,7 +965,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
     public void testDeleteImage_WithoutAuthentication() throws Exception {
         Image image = uploadTestImage("test.jpg");
 
-        mockMvc.perform(delete("/v1/product/" + testProduct.getId() +
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() +
                         "/image/" + image.getImageId()))
                 .andExpect(status().isUnauthorized());
 
@@ -592,7 +978,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         Image image = uploadTestImage("test.jpg");
 
         // Try to delete with another user's credentials
-        mockMvc.perform(delete("/v1/product/" + testProduct.getId() +
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() +
                         "/image/" + image.getImageId())
                         .header("Authorization", anotherAuthHeader))
                 .andExpect(status().isForbidden());
@@ -603,14 +989,14 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
 
     @Test
     public void testDeleteImage_NonExistentProduct() throws Exception {
-        mockMvc.perform(delete("/v1/product/99999/image/1")
+        performAsync(mockMvc, delete("/v1/product/99999/image/1")
                         .header("Authorization", authHeader))
                 .andExpect(status().isNotFound());
     }
 
     @Test
     public void testDeleteImage_NonExistentImage() throws Exception {
-        mockMvc.perform(delete("/v1/product/" + testProduct.getId() + "/image/99999")
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() + "/image/99999")
                         .header("Authorization", authHeader))
                 .andExpect(status().isNotFound());
     }
@@ -631,7 +1017,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         Image image = uploadTestImage("test.jpg");
 
         // Try to delete using second product's ID
-        mockMvc.perform(delete("/v1/product/" + anotherProduct.getId() +
+        performAsync(mockMvc, delete("/v1/product/" + anotherProduct.getId() +
                         "/image/" + image.getImageId())
                         .header("Authorization", authHeader))
                 .andExpect(status().isNotFound());
@@ -646,13 +1032,13 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         Long imageId = image.getImageId();
 
         // Delete once
-        mockMvc.perform(delete("/v1/product/" + testProduct.getId() +
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() +
                         "/image/" + imageId)
                         .header("Authorization", authHeader))
                 .andExpect(status().isNoContent());
 
         // Try to delete again
-        mockMvc.perform(delete("/v1/product/" + testProduct.getId() +
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() +
                         "/image/" + imageId)
                         .header("Authorization", authHeader))
                 .andExpect(status().isNotFound());
@@ -669,7 +1055,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated());
@@ -684,7 +1070,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated());
@@ -699,7 +1085,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated())
@@ -717,7 +1103,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content".getBytes()
         );
 
-        mockMvc.perform(multipart("/v1/product/" + testProduct.getId() + "/image")
+        performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
                         .file(file)
                         .header("Authorization", authHeader))
                 .andExpect(status().isCreated());
@@ -733,7 +1119,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content 1".getBytes()
         );
 
-        String response1 = mockMvc.perform(
+        String response1 = performAsync(mockMvc,
                         multipart("/v1/product/" + testProduct.getId() + "/image")
                                 .file(file1)
                                 .header("Authorization", authHeader))
@@ -747,7 +1133,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "content 2".getBytes()
         );
 
-        String response2 = mockMvc.perform(
+        String response2 = performAsync(mockMvc,
                         multipart("/v1/product/" + testProduct.getId() + "/image")
                                 .file(file2)
                                 .header("Authorization", authHeader))
@@ -771,7 +1157,7 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
                 "test content".getBytes()
         );
 
-        String response = mockMvc.perform(
+        String response = performAsync(mockMvc,
                         multipart("/v1/product/" + testProduct.getId() + "/image")
                                 .file(file)
                                 .header("Authorization", authHeader))
@@ -788,8 +1174,9 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         assertEquals(testProduct.getId(), savedImage.getProduct().getId());
         assertNotNull(savedImage.getDateCreated());
         assertNotNull(savedImage.getS3BucketPath());
-        assertTrue(savedImage.getS3BucketPath()
-                .startsWith("user_" + testUser.getId() + "/product_" + testProduct.getId()));
+        // Content-addressed: the key is the SHA-256 of the bytes
+        assertEquals(StorageBackend.contentKey(MessageDigest.getInstance("SHA-256").digest("test content".getBytes())),
+                savedImage.getS3BucketPath());
 
         // Verify file on disk
         Path filePath = Paths.get(uploadDir, savedImage.getS3BucketPath());
@@ -809,12 +1196,13 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         assertTrue(imageRepository.existsById(imageId));
 
         // Delete
-        mockMvc.perform(delete("/v1/product/" + testProduct.getId() +
+        performAsync(mockMvc, delete("/v1/product/" + testProduct.getId() +
                         "/image/" + imageId)
                         .header("Authorization", authHeader))
                 .andExpect(status().isNoContent());
 
         // Verify complete removal
+        storageDeletions.drain();
         assertFalse(imageRepository.existsById(imageId));
         assertFalse(Files.exists(filePath));
         assertNull(imageRepository.findById(imageId).orElse(null));
@@ -836,6 +1224,29 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
         assertEquals(0, imageRepository.count());
     }
 
+    @Test
+    public void testDeleteProduct_StoredObjectsRemovedByRelay() throws Exception {
+        Image first = uploadTestImage("product1.jpg");
+        Image second = uploadTestImage("product2.jpg");
+
+        mockMvc.perform(delete("/v1/product/" + testProduct.getId())
+                        .header("Authorization", authHeader))
+                .andExpect(status().isNoContent());
+
+        // Both objects (and their variant keys) queued with the delete, removed in one relay batch
+        assertEquals(0, imageRepository.count());
+        assertTrue(imageObjectRepository.findAll().stream().allMatch(object -> object.getRefCount() == 0));
+        List<String> queued = storageDeletionRepository.findAll().stream()
+                .map(StorageDeletion::getObjectKey)
+                .toList();
+        assertTrue(queued.containsAll(List.of(first.getS3BucketPath(), second.getS3BucketPath())));
+        assertEquals(queued.size(), storageDeletions.drain());
+        assertFalse(Files.exists(Paths.get(uploadDir, first.getS3BucketPath())));
+        assertFalse(Files.exists(Paths.get(uploadDir, second.getS3BucketPath())));
+        assertEquals(0, storageDeletionRepository.count());
+        assertEquals(0, imageObjectRepository.count());
+    }
+
     @Test
     public void testMultipleImagesHandling() throws Exception {
         int imageCount = 10;
@@ -853,16 +1264,24 @@ public class ImageControllerIntegrationTest extends BaseIntegrationTest {
 
     // ========== HELPER METHODS ==========
 
+    private String contentUrl(Image image) {
+        return "/v1/product/" + testProduct.getId() + "/image/" + image.getImageId() + "/content";
+    }
+
     private Image uploadTestImage(String filename) throws Exception {
+        return uploadBytes(testProduct, filename, ("content of " + filename).getBytes());
+    }
+
+    private Image uploadBytes(Product product, String filename, byte[] content) throws Exception {
         MockMultipartFile file = new MockMultipartFile(
                 "file",
                 filename,
                 "image/jpeg",
-                ("content of " + filename).getBytes()
+                content
         );
 
-        String response = mockMvc.perform(
-                        multipart("/v1/product/" + testProduct.getId() + "/image")
+        String response = performAsync(mockMvc,
+                        multipart("/v1/product/" + product.getId() + "/image")
                                 .file(file)
                                 .header("Authorization", authHeader))
                 .andExpect(status().isCreated())
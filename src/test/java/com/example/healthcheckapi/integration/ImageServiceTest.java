@@ -0,0 +1,336 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.entity.Image;
+import com.example.healthcheckapi.entity.ImageVariant;
+import com.example.healthcheckapi.entity.Product;
+import com.example.healthcheckapi.repository.ImageRepository;
+import com.example.healthcheckapi.repository.StoredImageKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ImageServiceTest {
+
+    // SHA-256 of "content"
+    private static final String CONTENT_KEY = StorageBackend.contentKey(sha256("content"));
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private StorageBackend storage;
+
+    @Mock
+    private ImageObjectService imageObjects;
+
+    @Mock
+    private ImageVariantService imageVariants;
+
+    @Mock
+    private StorageDeletionService storageDeletions;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ImageService imageService;
+
+    private Product product;
+    private MockMultipartFile file;
+
+    @BeforeEach
+    public void setup() {
+        product = new Product();
+        product.setId(7L);
+        file = new MockMultipartFile("file", "photo.jpg", "image/jpeg", "content".getBytes());
+    }
+
+    // Backends read the content exactly once; so does this stub, which completes the digest
+    private ArgumentCaptor<String> storeSucceeds() {
+        ArgumentCaptor<String> staging = ArgumentCaptor.forClass(String.class);
+        when(storage.put(staging.capture(), any(), eq(file.getSize()), eq("image/jpeg"))).thenAnswer(invocation -> {
+            try (InputStream in = invocation.<InputStreamSource>getArgument(1).getInputStream()) {
+                in.readAllBytes();
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+        return staging;
+    }
+
+    private static byte[] sha256(String content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content.getBytes());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testUpload_NewContent_MovedToDigestKey() throws Exception {
+        ArgumentCaptor<String> staging = storeSucceeds();
+        when(imageObjects.acquire(CONTENT_KEY)).thenReturn(true);
+        when(storage.rename(any(), eq(CONTENT_KEY))).thenReturn(CompletableFuture.completedFuture(null));
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Image saved = imageService.uploadImage(file, product).get();
+
+        assertEquals(CONTENT_KEY, saved.getS3BucketPath());
+        assertTrue(staging.getValue().startsWith("staging/"));
+        verify(storage).rename(staging.getValue(), CONTENT_KEY);
+        verify(storage, never()).remove(any());
+    }
+
+    @Test
+    public void testUpload_DuplicateContent_ExistingObjectReused() throws Exception {
+        ArgumentCaptor<String> staging = storeSucceeds();
+        when(imageObjects.acquire(CONTENT_KEY)).thenReturn(false);
+        when(storage.stat(CONTENT_KEY)).thenReturn(Optional.of(
+                new StorageBackend.ObjectStat(CONTENT_KEY, 7, "image/jpeg", Instant.now())));
+        when(storage.remove(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Image saved = imageService.uploadImage(file, product).get();
+
+        assertEquals(CONTENT_KEY, saved.getS3BucketPath());
+        verify(storage, never()).rename(any(), any());
+        verify(storage).remove(staging.getValue());
+    }
+
+    @Test
+    public void testUpload_ConcurrentDuplicate_FirstRenameFails_SecondPromotesOwnCopy() throws Exception {
+        ArgumentCaptor<String> staging = storeSucceeds();
+        // The first upload creates the reference; the second arrives while the first's rename is in flight
+        when(imageObjects.acquire(CONTENT_KEY)).thenReturn(true, false);
+        CompletableFuture<Void> firstRename = new CompletableFuture<>();
+        when(storage.rename(any(), eq(CONTENT_KEY)))
+                .thenReturn(firstRename, CompletableFuture.completedFuture(null));
+        when(storage.stat(CONTENT_KEY)).thenReturn(Optional.empty());
+        when(storage.remove(any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        CompletableFuture<Image> first = imageService.uploadImage(file, product);
+        Image second = imageService.uploadImage(file, product).get();
+        firstRename.completeExceptionally(new IOException("CopyObject failed"));
+
+        // The second row only exists because its own copy was moved to the content key
+        assertEquals(CONTENT_KEY, second.getS3BucketPath());
+        List<String> stagingKeys = staging.getAllValues();
+        verify(storage).rename(stagingKeys.get(1), CONTENT_KEY);
+        ExecutionException error = assertThrows(ExecutionException.class, first::get);
+        assertInstanceOf(IOException.class, error.getCause());
+        verify(imageObjects).releaseAndQueue(eq(CONTENT_KEY), any());
+        verify(storage).remove(stagingKeys.get(0));
+        verify(storage, never()).remove(CONTENT_KEY);
+        verify(imageRepository, times(1)).save(any(Image.class));
+    }
+
+    @Test
+    public void testUpload_InsertFails_ReferenceReleasedAndObjectQueued() {
+        storeSucceeds();
+        when(imageObjects.acquire(CONTENT_KEY)).thenReturn(true);
+        when(storage.rename(any(), eq(CONTENT_KEY))).thenReturn(CompletableFuture.completedFuture(null));
+        when(imageRepository.save(any(Image.class))).thenThrow(new DataIntegrityViolationException("product gone"));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> imageService.uploadImage(file, product).get());
+        assertInstanceOf(DataIntegrityViolationException.class, error.getCause());
+
+        // Like any other last reference, the object goes through the delete outbox
+        verify(imageObjects).releaseAndQueue(CONTENT_KEY, Set.of(CONTENT_KEY));
+        verify(storage, never()).remove(CONTENT_KEY);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void testUpload_StoredEventPublishedAfterInsert() throws Exception {
+        storeSucceeds();
+        when(imageObjects.acquire(CONTENT_KEY)).thenReturn(true);
+        when(storage.rename(any(), eq(CONTENT_KEY))).thenReturn(CompletableFuture.completedFuture(null));
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> {
+            Image saved = invocation.getArgument(0);
+            saved.setImageId(11L);
+            return saved;
+        });
+
+        imageService.uploadImage(file, product).get();
+
+        var order = inOrder(imageRepository, eventPublisher);
+        order.verify(imageRepository).save(any(Image.class));
+        order.verify(eventPublisher).publishEvent(new ImageStoredEvent(11L, CONTENT_KEY));
+    }
+
+    @Test
+    public void testUpload_StorageFails_NothingInserted() {
+        when(storage.put(any(), any(), anyLong(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("S3 upload failed")));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> imageService.uploadImage(file, product).get());
+        assertInstanceOf(IOException.class, error.getCause());
+
+        verify(imageObjects, never()).acquire(any());
+        verify(imageRepository, never()).save(any());
+        verify(storage, never()).remove(any());
+    }
+
+    @Test
+    public void testUploadBatch_InsertFallsBackRowByRow() throws Exception {
+        ReflectionTestUtils.setField(imageService, "poolSize", 2);
+        ReflectionTestUtils.setField(imageService, "queueCapacity", 10);
+        ReflectionTestUtils.setField(imageService, "registry", new SimpleMeterRegistry());
+        imageService.init();
+        try {
+            MockMultipartFile first = new MockMultipartFile("file", "a.jpg", "image/jpeg", "first".getBytes());
+            MockMultipartFile second = new MockMultipartFile("file", "b.png", "image/png", "second".getBytes());
+            MockMultipartFile notImage = new MockMultipartFile("file", "notes.txt", "text/plain", "text".getBytes());
+            String firstKey = StorageBackend.contentKey(sha256("first"));
+            String secondKey = StorageBackend.contentKey(sha256("second"));
+
+            when(storage.put(any(), any(), anyLong(), any())).thenAnswer(invocation -> {
+                try (InputStream in = invocation.<InputStreamSource>getArgument(1).getInputStream()) {
+                    in.readAllBytes();
+                }
+                return CompletableFuture.completedFuture(null);
+            });
+            when(imageObjects.acquire(any())).thenReturn(true);
+            when(storage.rename(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+            when(imageRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("batch failed"));
+            when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> {
+                Image image = invocation.getArgument(0);
+                if (image.getS3BucketPath().equals(secondKey)) {
+                    throw new DataIntegrityViolationException("row failed");
+                }
+                image.setImageId(21L);
+                return image;
+            });
+
+            List<ImageBatchResult> results = imageService.uploadImages(List.of(first, second, notImage), product).get();
+
+            assertEquals(ImageBatchResult.created(0, "a.jpg", 21L), results.get(0));
+            assertEquals(ImageBatchResult.Status.failed, results.get(1).status());
+            assertEquals(ImageBatchResult.Status.invalid, results.get(2).status());
+            // The invalid file was never stored; the failed row's object is released and queued
+            verify(storage, times(2)).put(any(), any(), anyLong(), any());
+            verify(imageObjects).releaseAndQueue(secondKey, Set.of(secondKey));
+            verify(imageObjects, never()).releaseAndQueue(eq(firstKey), any());
+            verify(storage, never()).remove(any());
+            verify(eventPublisher).publishEvent(new ImageStoredEvent(21L, firstKey));
+        } finally {
+            imageService.shutdown();
+        }
+    }
+
+    @Test
+    public void testDelete_SharedObjectKept() {
+        Image image = new Image();
+        image.setImageId(5L);
+        image.setS3BucketPath(CONTENT_KEY);
+        when(imageRepository.lockById(5L)).thenReturn(Optional.of(5L));
+        when(imageObjects.release(CONTENT_KEY)).thenReturn(false);
+
+        imageService.deleteImage(image);
+
+        verify(imageRepository).delete(image);
+        verify(storageDeletions, never()).enqueue(any(), any());
+    }
+
+    @Test
+    public void testDelete_LastReferenceQueuedNotRemoved() {
+        Image image = new Image();
+        image.setImageId(3L);
+        image.setS3BucketPath("user_1/product_7/abc.jpg");
+        when(imageRepository.lockById(3L)).thenReturn(Optional.of(3L));
+        when(imageObjects.release("user_1/product_7/abc.jpg")).thenReturn(true);
+        when(imageVariants.variantKeys("user_1/product_7/abc.jpg")).thenReturn(List.of());
+
+        imageService.deleteImage(image);
+
+        // Row, reference and outbox entry in one transaction; storage is left to the relay
+        var order = inOrder(imageRepository, imageObjects, storageDeletions);
+        order.verify(imageRepository).lockById(3L);
+        order.verify(imageRepository).delete(image);
+        order.verify(imageObjects).release("user_1/product_7/abc.jpg");
+        order.verify(storageDeletions).enqueue("user_1/product_7/abc.jpg", Set.of("user_1/product_7/abc.jpg"));
+        verifyNoInteractions(storage);
+    }
+
+    @Test
+    public void testDelete_VariantsQueuedWithOriginal() {
+        Image image = new Image();
+        image.setImageId(4L);
+        image.setS3BucketPath("user_1/product_7/abc.png");
+        // Loaded before the generator recorded the 512px variant
+        image.getVariants().add(new ImageVariant(128, 64, "user_1/product_7/abc_w128.png"));
+        when(imageRepository.lockById(4L)).thenReturn(Optional.of(4L));
+        when(imageRepository.lockVariantKeys(4L))
+                .thenReturn(List.of("user_1/product_7/abc_w128.png", "user_1/product_7/abc_w512.png"));
+        when(imageObjects.release("user_1/product_7/abc.png")).thenReturn(true);
+        when(imageVariants.variantKeys("user_1/product_7/abc.png"))
+                .thenReturn(List.of("user_1/product_7/abc_w128.png", "user_1/product_7/abc_w1024.png"));
+
+        imageService.deleteImage(image);
+
+        verify(imageObjects, times(1)).release("user_1/product_7/abc.png");
+        verify(storageDeletions).enqueue("user_1/product_7/abc.png", Set.of(
+                "user_1/product_7/abc.png",
+                "user_1/product_7/abc_w128.png",
+                "user_1/product_7/abc_w512.png",
+                "user_1/product_7/abc_w1024.png"));
+    }
+
+    @Test
+    public void testDelete_AlreadyDeleted_NothingReleased() {
+        Image image = new Image();
+        image.setImageId(6L);
+        image.setS3BucketPath(CONTENT_KEY);
+        when(imageRepository.lockById(6L)).thenReturn(Optional.empty());
+
+        imageService.deleteImage(image);
+
+        // The concurrent delete released the reference; a second release would take another
+        verify(imageRepository, never()).delete(any(Image.class));
+        verifyNoInteractions(imageObjects, storageDeletions);
+    }
+
+    @Test
+    public void testReleaseObjects_OneReferencePerImage() {
+        // Two images of a product over the same bytes: two references released, one delete queued
+        when(imageObjects.release(CONTENT_KEY)).thenReturn(false, true);
+        when(imageVariants.variantKeys(CONTENT_KEY)).thenReturn(List.of());
+
+        imageService.releaseObjects(List.of(
+                new StoredImageKey(1L, CONTENT_KEY, null),
+                new StoredImageKey(2L, CONTENT_KEY, null)));
+
+        verify(imageObjects, times(2)).release(CONTENT_KEY);
+        verify(storageDeletions, times(1)).enqueue(CONTENT_KEY, Set.of(CONTENT_KEY));
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.healthcheckapi.integration;
+
+import com.example.healthcheckapi.entity.Product;
+import com.example.healthcheckapi.entity.User;
+import com.example.healthcheckapi.repository.ImageRepository;
+import com.example.healthcheckapi.repository.ProductRepository;
+import com.example.healthcheckapi.repository.UserRepository;
+import com.example.healthcheckapi.service.LocalStorageService;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Parallel uploads stalled mid-transfer must not hold pooled connections,
+ * so reads keep being served while storage is slow.
+ */
+@TestPropertySource(properties = {
+        "file.upload-dir=./build/test-uploads"
+})
+public class ImageUploadConnectionTest extends BaseIntegrationTest {
+
+    private static final int UPLOADS = 4;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @MockitoSpyBean
+    private LocalStorageService localStorageService;
+
+    private Product testProduct;
+    private String authHeader;
+
+    @BeforeEach
+    public void setup() {
+        imageRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User testUser = new User();
+        testUser.setUsername("pool@test.com");
+        testUser.setPassword(passwordEncoder.encode("password123"));
+        testUser.setFirstName("Pool");
+        testUser.setLastName("Watcher");
+        testUser = userRepository.save(testUser);
+
+        testProduct = new Product();
+        testProduct.setName("Pool Product");
+        testProduct.setDescription("Upload target");
+        testProduct.setSku("POOL-001");
+        testProduct.setManufacturer("PoolCorp");
+        testProduct.setQuantity(1);
+        testProduct.setOwner(testUser);
+        testProduct = productRepository.save(testProduct);
+
+        authHeader = "Basic " + Base64.getEncoder().encodeToString("pool@test.com:password123".getBytes());
+    }
+
+    @Test
+    public void testParallelUploads_NoConnectionHeldDuringStorage() throws Exception {
+        CountDownLatch inStorage = new CountDownLatch(UPLOADS);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            inStorage.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(localStorageService).put(any(), any(), anyLong(), any());
+
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        ExecutorService executor = Executors.newFixedThreadPool(UPLOADS);
+        try {
+            List<Future<Integer>> uploads = new ArrayList<>();
+            for (int i = 0; i < UPLOADS; i++) {
+                MockMultipartFile file = new MockMultipartFile(
+                        "file", "slow-" + i + ".jpg", "image/jpeg", new byte[64 * 1024]);
+                uploads.add(executor.submit(() -> performAsync(mockMvc, multipart("/v1/product/" + testProduct.getId() + "/image")
+                                .file(file)
+                                .header("Authorization", authHeader))
+                        .andReturn().getResponse().getStatus()));
+            }
+
+            // Every upload is now stalled inside storage
+            assertTrue(inStorage.await(10, TimeUnit.SECONDS));
+            assertEquals(0, pool.getActiveConnections());
+
+            // Reads are still served meanwhile
+            mockMvc.perform(get("/v1/product/" + testProduct.getId()))
+                    .andExpect(status().isOk());
+            assertEquals(0, pool.getActiveConnections());
+
+            release.countDown();
+            for (Future<Integer> upload : uploads) {
+                assertEquals(201, upload.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        assertEquals(UPLOADS, imageRepository.findByProduct_Id(testProduct.getId()).size());
+    }
+}
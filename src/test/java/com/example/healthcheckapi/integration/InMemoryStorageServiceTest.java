@@ -0,0 +1,61 @@
+package com.example.healthcheckapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryStorageServiceTest {
+
+    private final StorageBackend storage = new InMemoryStorageService();
+
+    @Test
+    public void testPutGetStatRemove() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "a.png", "image/png", "png bytes".getBytes());
+
+        storage.put("user_1/product_1/a.png", file, file.getSize(), file.getContentType()).get();
+
+        try (InputStream in = storage.get("user_1/product_1/a.png")) {
+            assertArrayEquals("png bytes".getBytes(), in.readAllBytes());
+        }
+        StorageBackend.ObjectStat stat = storage.stat("user_1/product_1/a.png").orElseThrow();
+        assertEquals(9, stat.size());
+        assertEquals("image/png", stat.contentType());
+        assertNotNull(stat.lastModified());
+
+        storage.remove("user_1/product_1/a.png").get();
+        assertTrue(storage.stat("user_1/product_1/a.png").isEmpty());
+        assertThrows(FileNotFoundException.class, () -> storage.get("user_1/product_1/a.png"));
+
+        // Missing keys are not an error
+        storage.remove("user_1/product_1/a.png").get();
+    }
+
+    @Test
+    public void testRemoveAll() throws Exception {
+        for (String key : List.of("k1", "k2", "k3")) {
+            MockMultipartFile file = new MockMultipartFile("file", key, "image/jpeg", key.getBytes());
+            storage.put(key, file, file.getSize(), file.getContentType()).get();
+        }
+
+        storage.removeAll(List.of("k1", "k3", "missing")).get();
+
+        assertTrue(storage.stat("k1").isEmpty());
+        assertTrue(storage.stat("k2").isPresent());
+        assertTrue(storage.stat("k3").isEmpty());
+    }
+
+    @Test
+    public void testImageKey() {
+        String key = StorageBackend.imageKey(4L, 9L, "photo.final.JPG");
+
+        assertTrue(key.startsWith("user_4/product_9/"));
+        assertTrue(key.endsWith(".JPG"));
+        assertNotEquals(key, StorageBackend.imageKey(4L, 9L, "photo.final.JPG"));
+        assertFalse(StorageBackend.imageKey(4L, 9L, "noextension").contains("."));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.healthcheckapi.service;
+
+import com.example.healthcheckapi.config.AuthenticatedUser;
+import com.example.healthcheckapi.config.CachingAuthenticationProvider;
+import com.example.healthcheckapi.config.CostAwareBCryptPasswordEncoder;
+import com.example.healthcheckapi.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PasswordHashingServiceTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasswordHashingService hashingService;
+
+    private PasswordHashingService newService(PasswordEncoder encoder, int poolSize, int queueCapacity) {
+        PasswordHashingService service = new PasswordHashingService();
+        // Set required fields via reflection (since @Value annotations won't work in unit tests)
+        ReflectionTestUtils.setField(service, "poolSize", poolSize);
+        ReflectionTestUtils.setField(service, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(service, "retryAfterSeconds", 2L);
+        ReflectionTestUtils.setField(service, "passwordEncoder", encoder);
+        ReflectionTestUtils.setField(service, "registry", meterRegistry);
+        service.init();
+        return service;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (hashingService != null) {
+            hashingService.shutdown();
+        }
+    }
+
+    @Test
+    public void testEncode_ProducesMatchingHashAndRecordsMetrics() {
+        CostAwareBCryptPasswordEncoder encoder = new CostAwareBCryptPasswordEncoder(4);
+        hashingService = newService(encoder, 1, 4);
+
+        String hash = hashingService.encode("password123");
+
+        assertTrue(encoder.matches("password123", hash));
+        assertEquals(1, meterRegistry.get("auth.bcrypt.hash").timer().count());
+        assertEquals(1, meterRegistry.get("auth.bcrypt.wait").timer().count());
+    }
+
+    @Test
+    public void testEncode_QueueFull_FailsFast() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new CostAwareBCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.encode(rawPassword);
+            }
+        };
+        hashingService = newService(blocking, 1, 1);
+
+        // One hash running, one queued
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hashingService.encode("first-password"));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hashingService.encode("second-password"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("auth.bcrypt.queue.depth").gauge().value() < 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1.0, meterRegistry.get("auth.bcrypt.queue.depth").gauge().value());
+
+        ServiceOverloadedException ex = assertThrows(ServiceOverloadedException.class,
+                () -> hashingService.encode("third-password"));
+        assertEquals(2L, ex.getRetryAfterSeconds());
+
+        release.countDown();
+        assertNotNull(running.get(10, TimeUnit.SECONDS));
+        assertNotNull(queued.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testUpgradeEncoding_WhenCostDiffers() {
+        CostAwareBCryptPasswordEncoder cost4 = new CostAwareBCryptPasswordEncoder(4);
+        CostAwareBCryptPasswordEncoder cost5 = new CostAwareBCryptPasswordEncoder(5);
+        String hash = cost5.encode("password123");
+
+        assertFalse(cost5.upgradeEncoding(hash));
+        assertTrue(cost4.upgradeEncoding(hash));
+        assertFalse(cost4.upgradeEncoding("not-a-bcrypt-hash"));
+    }
+
+    @Test
+    public void testLoginUpgrade_EncodesOnHashingPool() {
+        CostAwareBCryptPasswordEncoder encoder = new CostAwareBCryptPasswordEncoder(4);
+        hashingService = newService(encoder, 1, 4);
+        AuthenticatedUser stored = new AuthenticatedUser(1L, "user@example.com",
+                new CostAwareBCryptPasswordEncoder(5).encode("password123"), true);
+        UserService userService = mock(UserService.class);
+        when(userService.loadUserByUsername("user@example.com")).thenReturn(stored);
+        when(userService.updatePassword(any(), anyString())).thenAnswer(invocation ->
+                new AuthenticatedUser(1L, "user@example.com", invocation.getArgument(1), true));
+        CachingAuthenticationProvider provider = new CachingAuthenticationProvider(
+                userService, encoder, hashingService, mock(CredentialCacheService.class));
+
+        Authentication result = provider.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated("user@example.com", "password123"));
+
+        assertTrue(result.isAuthenticated());
+        verify(userService).updatePassword(eq(stored), argThat(hash ->
+                encoder.matches("password123", hash) && !encoder.upgradeEncoding(hash)));
+        assertEquals(1, meterRegistry.get("auth.bcrypt.hash").timer().count());
+    }
+
+    @Test
+    public void testLoginUpgrade_PoolFull_LoginStillSucceeds() {
+        CostAwareBCryptPasswordEncoder encoder = new CostAwareBCryptPasswordEncoder(4);
+        PasswordHashingService saturated = mock(PasswordHashingService.class);
+        when(saturated.encode(any())).thenThrow(new ServiceOverloadedException("Password hashing queue is full", 1));
+        UserService userService = mock(UserService.class);
+        when(userService.loadUserByUsername("user@example.com")).thenReturn(new AuthenticatedUser(1L, "user@example.com",
+                new CostAwareBCryptPasswordEncoder(5).encode("password123"), true));
+        CachingAuthenticationProvider provider = new CachingAuthenticationProvider(
+                userService, encoder, saturated, mock(CredentialCacheService.class));
+
+        Authentication result = provider.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated("user@example.com", "password123"));
+
+        assertTrue(result.isAuthenticated());
+        assertEquals("user@example.com", result.getName());
+        verify(userService, never()).updatePassword(any(), anyString());
+    }
+}
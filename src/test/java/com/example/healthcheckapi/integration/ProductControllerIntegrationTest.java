@@ -1,7 +1,10 @@
 package com.example.healthcheckapi.integration;
 
+import com.example.healthcheckapi.entity.Image;
 import com.example.healthcheckapi.entity.Product;
 import com.example.healthcheckapi.entity.User;
+import com.example.healthcheckapi.repository.ImageRepository;
+import com.example.healthcheckapi.repository.StorageDeletionRepository;
 import com.example.healthcheckapi.repository.ProductRepository;
 import com.example.healthcheckapi.repository.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -40,6 +43,12 @@ public class ProductControllerIntegrationTest extends BaseIntegrationTest {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private StorageDeletionRepository storageDeletionRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
@@ -113,6 +122,43 @@ public class ProductControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.quantity").value(0));
     }
 
+    @Test
+    public void testCreateProduct_WithBearerToken() throws Exception {
+        String response = mockMvc.perform(post("/v1/auth/token")
+                        .header("Authorization", authHeader))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token_type").value("Bearer"))
+                .andExpect(jsonPath("$.access_token").exists())
+                .andReturn().getResponse().getContentAsString();
+        String token = (String) objectMapper.readValue(response, Map.class).get("access_token");
+
+        Map<String, Object> productRequest = new HashMap<>();
+        productRequest.put("name", "Token Product");
+        productRequest.put("description", "Created with a bearer token");
+        productRequest.put("sku", "TOK-001");
+        productRequest.put("manufacturer", "TokenCorp");
+        productRequest.put("quantity", 5);
+
+        mockMvc.perform(post("/v1/product")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(productRequest)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.owner_user_id").value(testUser.getId()));
+
+        // Tampered token is rejected
+        mockMvc.perform(post("/v1/product")
+                        .header("Authorization", "Bearer " + token + "x")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(productRequest)))
+                .andExpect(status().isUnauthorized());
+
+        // A token cannot be exchanged for a new token
+        mockMvc.perform(post("/v1/auth/token")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     public void testGetProduct_PublicAccess() throws Exception {
         // Create a product
@@ -135,6 +181,92 @@ public class ProductControllerIntegrationTest extends BaseIntegrationTest {
                 .andExpect(jsonPath("$.owner_user_id").value(testUser.getId()));
     }
 
+    @Test
+    public void testGetProduct_CacheInvalidatedOnWrite() throws Exception {
+        Product product = new Product();
+        product.setName("Cached");
+        product.setDescription("Cache coherence");
+        product.setSku("CACHE-001");
+        product.setManufacturer("CacheCorp");
+        product.setQuantity(5);
+        product.setOwner(testUser);
+        Long productId = productRepository.save(product).getId();
+
+        // Populate the cache
+        mockMvc.perform(get("/v1/product/" + productId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity").value(5))
+                .andExpect(jsonPath("$.owner_user_id").value(testUser.getId()));
+
+        mockMvc.perform(patch("/v1/product/" + productId)
+                        .header("Authorization", authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"quantity\": 7}"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/v1/product/" + productId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity").value(7));
+
+        mockMvc.perform(delete("/v1/product/" + productId)
+                        .header("Authorization", authHeader))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/v1/product/" + productId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGetProduct_ETagAndConditionalRequests() throws Exception {
+        Product product = new Product();
+        product.setName("Tagged");
+        product.setDescription("ETag test");
+        product.setSku("ETAG-001");
+        product.setManufacturer("TagCorp");
+        product.setQuantity(5);
+        product.setOwner(testUser);
+        Long productId = productRepository.save(product).getId();
+
+        String etag = mockMvc.perform(get("/v1/product/" + productId))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/v1/product/" + productId).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // Stale If-Match is rejected without touching the product
+        mockMvc.perform(patch("/v1/product/" + productId)
+                        .header("Authorization", authHeader)
+                        .header("If-Match", "\"stale\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"quantity\": 9}"))
+                .andExpect(status().isPreconditionFailed());
+        assertEquals(5, productRepository.findById(productId).orElseThrow().getQuantity());
+
+        String newETag = mockMvc.perform(patch("/v1/product/" + productId)
+                        .header("Authorization", authHeader)
+                        .header("If-Match", etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"quantity\": 9}"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, newETag);
+
+        // Old ETag no longer matches; the new one does
+        mockMvc.perform(get("/v1/product/" + productId).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", newETag))
+                .andExpect(jsonPath("$.quantity").value(9));
+
+        mockMvc.perform(delete("/v1/product/" + productId)
+                        .header("Authorization", authHeader)
+                        .header("If-Match", etag))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     public void testUpdateProduct_PUT_Success() throws Exception {
         // Create a product
@@ -685,6 +817,84 @@ public class ProductControllerIntegrationTest extends BaseIntegrationTest {
         assertNull(productRepository.findById(productId).orElse(null));
     }
 
+    @Test
+    public void testDeleteProduct_RemovesImageRows() throws Exception {
+        Product product = new Product();
+        product.setName("With Images");
+        product.setDescription("Bulk delete");
+        product.setSku("DEL-IMG");
+        product.setManufacturer("DelCorp");
+        product.setQuantity(1);
+        product.setOwner(testUser);
+        Long productId = productRepository.save(product).getId();
+
+        Image image = new Image();
+        image.setFileName("photo.jpg");
+        image.setS3BucketPath("user_" + testUser.getId() + "/product_" + productId + "/photo.jpg");
+        image.setProduct(productRepository.findById(productId).orElseThrow());
+        imageRepository.save(image);
+
+        mockMvc.perform(delete("/v1/product/" + productId)
+                        .header("Authorization", authHeader))
+                .andExpect(status().isNoContent());
+
+        assertFalse(productRepository.existsById(productId));
+        assertTrue(imageRepository.findByProduct_Id(productId).isEmpty());
+        // The stored object is queued for the outbox relay in the same transaction
+        assertTrue(storageDeletionRepository.findAll().stream()
+                .anyMatch(row -> row.getObjectKey().equals(image.getS3BucketPath())));
+    }
+
+    @Test
+    public void testUpdateProduct_OwnershipCheckedBeforeSkuConflict() throws Exception {
+        User anotherUser = new User();
+        anotherUser.setUsername("sku-owner@test.com");
+        anotherUser.setPassword(passwordEncoder.encode("password789"));
+        anotherUser.setFirstName("Sku");
+        anotherUser.setLastName("Owner");
+        anotherUser = userRepository.save(anotherUser);
+
+        Product theirs = new Product();
+        theirs.setName("Theirs");
+        theirs.setDescription("Not yours");
+        theirs.setSku("OWN-001");
+        theirs.setManufacturer("OwnCorp");
+        theirs.setQuantity(1);
+        theirs.setOwner(anotherUser);
+        Long theirId = productRepository.save(theirs).getId();
+
+        Product mine = new Product();
+        mine.setName("Mine");
+        mine.setDescription("Yours");
+        mine.setSku("OWN-002");
+        mine.setManufacturer("OwnCorp");
+        mine.setQuantity(1);
+        mine.setOwner(testUser);
+        Long mineId = productRepository.save(mine).getId();
+
+        // Taken SKU on someone else's product: ownership wins
+        mockMvc.perform(patch("/v1/product/" + theirId)
+                        .header("Authorization", authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sku\": \"OWN-002\"}"))
+                .andExpect(status().isForbidden());
+
+        // Taken SKU on your own product is a bad request; keeping your own SKU is fine
+        mockMvc.perform(patch("/v1/product/" + mineId)
+                        .header("Authorization", authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sku\": \"OWN-001\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/v1/product/" + mineId)
+                        .header("Authorization", authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sku\": \"OWN-002\", \"name\": \"Renamed\"}"))
+                .andExpect(status().isNoContent());
+
+        assertEquals("Theirs", productRepository.findById(theirId).orElseThrow().getName());
+        assertEquals("Renamed", productRepository.findById(mineId).orElseThrow().getName());
+    }
+
     @Test
     public void testWrongHttpMethod_PostToSpecificProduct() throws Exception {
         mockMvc.perform(post("/v1/product/1")
@@ -695,11 +905,193 @@ public class ProductControllerIntegrationTest extends BaseIntegrationTest {
     }
 
     @Test
-    public void testWrongHttpMethod_GetToProductCollection() throws Exception {
-        mockMvc.perform(get("/v1/product")
-                        .header("Authorization", authHeader))
+    public void testWrongHttpMethod_PutToProductCollection() throws Exception {
+        mockMvc.perform(put("/v1/product")
+                        .header("Authorization", authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
                 .andExpect(status().isForbidden());
     }
+
+    @Test
+    public void testBatchUpsert_PerItemResults() throws Exception {
+        User otherUser = new User();
+        otherUser.setUsername("batch-other@test.com");
+        otherUser.setPassword(passwordEncoder.encode("password123"));
+        otherUser.setFirstName("Other");
+        otherUser.setLastName("Owner");
+        otherUser = userRepository.save(otherUser);
+
+        Product mine = new Product();
+        mine.setName("Mine");
+        mine.setDescription("Existing own product");
+        mine.setSku("BATCH-MINE");
+        mine.setManufacturer("BatchCorp");
+        mine.setQuantity(1);
+        mine.setOwner(testUser);
+        mine = productRepository.save(mine);
+
+        Product theirs = new Product();
+        theirs.setName("Theirs");
+        theirs.setDescription("Someone else's product");
+        theirs.setSku("BATCH-THEIRS");
+        theirs.setManufacturer("BatchCorp");
+        theirs.setQuantity(1);
+        theirs.setOwner(otherUser);
+        productRepository.save(theirs);
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        items.add(batchItem("BATCH-NEW-1", 10));
+        items.add(batchItem("BATCH-NEW-2", 20));
+        items.add(batchItem("BATCH-MINE", 99));
+        items.add(batchItem("BATCH-THEIRS", 5));
+        items.add(batchItem("BATCH-NEW-1", 30));
+        items.add(batchItem("BATCH-BAD", 200));
+
+        mockMvc.perform(post("/v1/product/batch")
+                        .header("Authorization", authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(items)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.length()").value(6))
+                .andExpect(jsonPath("$.results[0].status").value("created"))
+                .andExpect(jsonPath("$.results[0].id").exists())
+                .andExpect(jsonPath("$.results[1].status").value("created"))
+                .andExpect(jsonPath("$.results[2].status").value("updated"))
+                .andExpect(jsonPath("$.results[2].id").value(mine.getId()))
+                .andExpect(jsonPath("$.results[3].status").value("conflict"))
+                .andExpect(jsonPath("$.results[4].status").value("conflict"))
+                .andExpect(jsonPath("$.results[5].status").value("invalid"))
+                .andExpect(jsonPath("$.summary.created").value(2))
+                .andExpect(jsonPath("$.summary.updated").value(1));
+
+        assertEquals(4, productRepository.count());
+        assertEquals(99, productRepository.findById(mine.getId()).orElseThrow().getQuantity());
+    }
+
+    @Test
+    public void testBatchUpsert_ColumnOverflowIsInvalidNotConflict() throws Exception {
+        // Passes bean validation, but the name column only holds 255 characters
+        Map<String, Object> tooLong = batchItem("BATCH-LONG", 1);
+        tooLong.put("name", "x".repeat(300));
+
+        mockMvc.perform(post("/v1/product/batch")
+                        .header("Authorization", authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(batchItem("BATCH-OK", 1), tooLong))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("created"))
+                .andExpect(jsonPath("$.results[1].status").value("invalid"))
+                .andExpect(jsonPath("$.results[1].sku").value("BATCH-LONG"))
+                .andExpect(jsonPath("$.summary.created").value(1));
+
+        assertTrue(productRepository.findBySkuIn(List.of("BATCH-LONG")).isEmpty());
+    }
+
+    @Test
+    public void testBatchUpsert_EmptyAndUnauthenticated() throws Exception {
+        mockMvc.perform(post("/v1/product/batch")
+                        .header("Authorization", authHeader)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/v1/product/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(batchItem("BATCH-ANON", 1)))))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private Map<String, Object> batchItem(String sku, int quantity) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("name", "Batch " + sku);
+        item.put("description", "Batch item");
+        item.put("sku", sku);
+        item.put("manufacturer", "BatchCorp");
+        item.put("quantity", quantity);
+        return item;
+    }
+
+    @Test
+    public void testListProducts_KeysetPagination() throws Exception {
+        List<Long> createdIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Product product = new Product();
+            product.setName("Listed " + i);
+            product.setDescription("Listing test");
+            product.setSku("LIST-" + i);
+            product.setManufacturer("ListCorp");
+            product.setQuantity(i);
+            product.setOwner(testUser);
+            createdIds.add(productRepository.save(product).getId());
+        }
+
+        List<Long> seenIds = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            var request = get("/v1/product").param("limit", "2");
+            if (cursor != null) {
+                request.param("after", cursor);
+            }
+            String body = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$.products.length()").value(lessThanOrEqualTo(2)))
+                    .andExpect(jsonPath("$.products[0].owner_user_id").value(testUser.getId()))
+                    .andExpect(jsonPath("$.products[0].date_added").exists())
+                    .andReturn().getResponse().getContentAsString();
+
+            Map<?, ?> page = objectMapper.readValue(body, Map.class);
+            for (Object item : (List<?>) page.get("products")) {
+                seenIds.add(((Number) ((Map<?, ?>) item).get("id")).longValue());
+            }
+            cursor = (String) page.get("next");
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(createdIds, seenIds);
+    }
+
+    @Test
+    public void testListProducts_FilterByOwner() throws Exception {
+        User otherUser = new User();
+        otherUser.setUsername("lister@test.com");
+        otherUser.setPassword(passwordEncoder.encode("password123"));
+        otherUser.setFirstName("Other");
+        otherUser.setLastName("Owner");
+        otherUser = userRepository.save(otherUser);
+
+        for (int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setName("Owned " + i);
+            product.setDescription("Owner filter test");
+            product.setSku("OWN-" + i);
+            product.setManufacturer("OwnerCorp");
+            product.setQuantity(1);
+            product.setOwner(i == 0 ? otherUser : testUser);
+            productRepository.save(product);
+        }
+
+        mockMvc.perform(get("/v1/product").param("owner", String.valueOf(otherUser.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products.length()").value(1))
+                .andExpect(jsonPath("$.products[0].sku").value("OWN-0"))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    public void testListProducts_InvalidParameters() throws Exception {
+        mockMvc.perform(get("/v1/product").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/v1/product").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/v1/product").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
     @Test
     public void testMultipleRequestsHandledCorrectly() throws Exception {
         // Create 5 products in sequence - verifies system handles multiple operations
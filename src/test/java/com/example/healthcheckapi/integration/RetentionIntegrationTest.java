@@ -0,0 +1,107 @@
+package com.example.healthcheckapi.integration;
+
+import com.example.healthcheckapi.entity.EmailVerificationToken;
+import com.example.healthcheckapi.entity.HealthCheck;
+import com.example.healthcheckapi.repository.EmailVerificationTokenRepository;
+import com.example.healthcheckapi.repository.HealthCheckRepository;
+import com.example.healthcheckapi.repository.SchedulerLeaseRepository;
+import com.example.healthcheckapi.service.RetentionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = {
+        "retention.chunk-size=2",
+        "retention.pause-ms=0",
+        "retention.health-checks.max-age-hours=24",
+        "retention.verification-tokens.max-age-hours=1"
+})
+public class RetentionIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private HealthCheckRepository healthCheckRepository;
+
+    @Autowired
+    private EmailVerificationTokenRepository tokenRepository;
+
+    @Autowired
+    private SchedulerLeaseRepository leaseRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private void healthChecks(int count, Duration age) {
+        IntStream.range(0, count).forEach(i -> {
+            Long id = healthCheckRepository.save(new HealthCheck()).getCheckId();
+            jdbcTemplate.update("UPDATE health_checks SET check_datetime = ? WHERE check_id = ?",
+                    Timestamp.from(Instant.now().minus(age)), id);
+        });
+    }
+
+    private void token(String email, Duration expiredFor) {
+        EmailVerificationToken token = new EmailVerificationToken();
+        token.setUserEmail(email);
+        Long id = tokenRepository.save(token).getId();
+        jdbcTemplate.update("UPDATE email_verification_tokens SET expires_at = ? WHERE id = ?",
+                Timestamp.from(Instant.now().minus(expiredFor)), id);
+    }
+
+    @Test
+    public void testPurge_DeletesOnlyRowsPastRetentionInChunks() {
+        healthChecks(5, Duration.ofDays(2));
+        healthChecks(2, Duration.ofHours(1));
+        token("old@test.com", Duration.ofHours(3));
+        token("recent@test.com", Duration.ofMinutes(5));
+
+        List<RetentionService.Purge> purges = retentionService.purgeAll();
+
+        RetentionService.Purge healthChecks = purges.stream()
+                .filter(purge -> purge.table().equals("health_checks")).findFirst().orElseThrow();
+        assertEquals(5, healthChecks.rows());
+        // 2 + 2 + 1: the short chunk ends the run
+        assertEquals(3, healthChecks.chunks());
+        assertEquals("complete", healthChecks.outcome());
+        assertEquals(2, healthCheckRepository.count());
+
+        assertFalse(tokenRepository.existsByUserEmailAndVerifiedFalse("old@test.com"));
+        assertTrue(tokenRepository.existsByUserEmailAndVerifiedFalse("recent@test.com"));
+
+        // Lease handed back at the end of the run
+        assertNull(leaseRepository.findById(RetentionService.LEASE).orElseThrow().getOwner());
+    }
+
+    @Test
+    public void testPurge_SkippedWhileAnotherInstanceHoldsLease() {
+        healthChecks(3, Duration.ofDays(2));
+        transactionTemplate.executeWithoutResult(status -> {
+            leaseRepository.ensure(RetentionService.LEASE);
+            Instant now = Instant.now();
+            assertEquals(1, leaseRepository.acquire(RetentionService.LEASE, "other-instance", now, now.plusSeconds(60)));
+        });
+
+        assertTrue(retentionService.purgeAll().isEmpty());
+        assertEquals(3, healthCheckRepository.count());
+
+        // Once that lease has expired, this instance takes over
+        jdbcTemplate.update("UPDATE scheduler_leases SET lease_until = ? WHERE name = ?",
+                Timestamp.from(Instant.now().minusSeconds(1)), RetentionService.LEASE);
+        assertFalse(retentionService.purgeAll().isEmpty());
+        assertEquals(0, healthCheckRepository.count());
+    }
+}
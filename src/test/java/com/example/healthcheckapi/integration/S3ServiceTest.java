@@ -5,17 +5,38 @@ import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -27,6 +48,9 @@ public class S3ServiceTest {
     @Mock
     private S3Client s3Client;
 
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
     @Spy
     private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
@@ -39,10 +63,11 @@ public class S3ServiceTest {
         ReflectionTestUtils.setField(s3Service, "bucket", "test-bucket");
         ReflectionTestUtils.setField(s3Service, "region", "us-east-1");
         ReflectionTestUtils.setField(s3Service, "s3", s3Client);
+        ReflectionTestUtils.setField(s3Service, "asyncS3", s3AsyncClient);
     }
 
     @Test
-    public void testUpload_Success() throws IOException {
+    public void testPut_Success() throws Exception {
         MockMultipartFile file = new MockMultipartFile(
                 "file",
                 "test.jpg",
@@ -51,59 +76,23 @@ public class S3ServiceTest {
         );
 
         // Mock S3 response
-        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
-                .thenReturn(PutObjectResponse.builder().build());
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
 
         // Upload
-        String result = s3Service.upload(file, 1L, 1L);
+        s3Service.put("user_1/product_1/test.jpg", file, file.getSize(), file.getContentType()).get();
 
         // Verify
-        assertNotNull(result);
-        assertTrue(result.startsWith("user_1/product_1/"));
-        assertTrue(result.endsWith(".jpg"));
-        verify(s3Client, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3AsyncClient, times(1)).putObject(request.capture(), any(AsyncRequestBody.class));
+        assertEquals("test-bucket", request.getValue().bucket());
+        assertEquals("user_1/product_1/test.jpg", request.getValue().key());
+        assertEquals("image/jpeg", request.getValue().contentType());
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
     }
 
     @Test
-    public void testUpload_DifferentExtensions() throws IOException {
-        MockMultipartFile pngFile = new MockMultipartFile(
-                "file",
-                "test.png",
-                "image/png",
-                "png content".getBytes()
-        );
-
-        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
-                .thenReturn(PutObjectResponse.builder().build());
-
-        String result = s3Service.upload(pngFile, 2L, 3L);
-
-        assertNotNull(result);
-        assertTrue(result.startsWith("user_2/product_3/"));
-        assertTrue(result.endsWith(".png"));
-    }
-
-    @Test
-    public void testUpload_FileWithoutExtension() throws IOException {
-        MockMultipartFile file = new MockMultipartFile(
-                "file",
-                "noextension",
-                "image/jpeg",
-                "content".getBytes()
-        );
-
-        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
-                .thenReturn(PutObjectResponse.builder().build());
-
-        String result = s3Service.upload(file, 1L, 1L);
-
-        assertNotNull(result);
-        assertTrue(result.startsWith("user_1/product_1/"));
-        assertFalse(result.contains("."));
-    }
-
-    @Test
-    public void testUpload_S3Exception() {
+    public void testPut_S3Exception() {
         MockMultipartFile file = new MockMultipartFile(
                 "file",
                 "test.jpg",
@@ -112,90 +101,228 @@ public class S3ServiceTest {
         );
 
         // Mock S3 exception
-        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
-                .thenThrow(S3Exception.builder()
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(S3Exception.builder()
                         .message("S3 error")
-                        .build());
+                        .build()));
 
         // Verify exception is thrown
-        assertThrows(IOException.class, () -> {
-            s3Service.upload(file, 1L, 1L);
-        });
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> s3Service.put("user_1/product_1/test.jpg", file, file.getSize(), file.getContentType()).get());
+        assertInstanceOf(IOException.class, error.getCause());
+        assertEquals(1, meterRegistry.get("s3.call")
+                .tag("operation", "putObject")
+                .tag("outcome", "error")
+                .timer().count());
     }
 
     @Test
-    public void testDelete_Success() throws IOException {
+    public void testRemove_Success() throws Exception {
         String key = "user_1/product_1/test.jpg";
 
-        when(s3Client.deleteObject(any(DeleteObjectRequest.class)))
-                .thenReturn(DeleteObjectResponse.builder().build());
+        when(s3AsyncClient.deleteObject(any(DeleteObjectRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteObjectResponse.builder().build()));
 
-        // Should not throw exception
-        assertDoesNotThrow(() -> s3Service.delete(key));
+        s3Service.remove(key).get();
 
-        verify(s3Client, times(1)).deleteObject(any(DeleteObjectRequest.class));
+        ArgumentCaptor<DeleteObjectRequest> request = ArgumentCaptor.forClass(DeleteObjectRequest.class);
+        verify(s3AsyncClient, times(1)).deleteObject(request.capture());
+        assertEquals(key, request.getValue().key());
     }
 
     @Test
-    public void testDelete_S3Exception() {
-        String key = "user_1/product_1/test.jpg";
-
-        when(s3Client.deleteObject(any(DeleteObjectRequest.class)))
-                .thenThrow(S3Exception.builder()
-                        .message("Delete failed")
-                        .build());
-
-        // Verify exception is thrown
-        assertThrows(IOException.class, () -> {
-            s3Service.delete(key);
-        });
+    public void testRemove_S3Exception() {
+        when(s3AsyncClient.deleteObject(any(DeleteObjectRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(S3Exception.builder().message("Delete failed").build()));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> s3Service.remove("user_1/product_1/test.jpg").get());
+        assertInstanceOf(IOException.class, error.getCause());
+        assertEquals(1, meterRegistry.get("s3.call")
+                .tag("operation", "deleteObject")
+                .tag("outcome", "error")
+                .timer().count());
     }
 
     @Test
-    public void testUpload_UniqueKeys() throws IOException {
-        MockMultipartFile file1 = new MockMultipartFile(
-                "file",
-                "same-name.jpg",
-                "image/jpeg",
-                "content 1".getBytes()
-        );
-
-        MockMultipartFile file2 = new MockMultipartFile(
-                "file",
-                "same-name.jpg",
-                "image/jpeg",
-                "content 2".getBytes()
-        );
+    public void testPut_AboveThreshold_MultipartWithChecksums() throws Exception {
+        enableMultipart();
+        byte[] content = new byte[25];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "large.jpg", "image/jpeg", content);
+        String key = "user_1/product_2/large.jpg";
+
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> {
+                    UploadPartRequest request = invocation.getArgument(0);
+                    return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+                });
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().build());
+
+        s3Service.put(key, file, file.getSize(), file.getContentType()).get();
+
+        verify(s3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+
+        // 25 bytes in 10-byte parts: 10 + 10 + 5, each carrying its MD5
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3Client, times(3)).uploadPart(parts.capture(), any(RequestBody.class));
+        for (UploadPartRequest part : parts.getAllValues()) {
+            assertEquals("upload-1", part.uploadId());
+            assertEquals(key, part.key());
+            assertNotNull(part.contentMD5());
+        }
+        assertEquals(List.of(10L, 10L, 5L), parts.getAllValues().stream()
+                .sorted(Comparator.comparing(UploadPartRequest::partNumber))
+                .map(UploadPartRequest::contentLength)
+                .toList());
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        assertEquals(List.of("etag-1", "etag-2", "etag-3"), complete.getValue().multipartUpload().parts().stream()
+                .map(CompletedPart::eTag)
+                .toList());
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
 
-        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
-                .thenReturn(PutObjectResponse.builder().build());
+    @Test
+    public void testPut_MultipartPartFails_Aborted() {
+        enableMultipart();
+        MockMultipartFile file = new MockMultipartFile("file", "large.jpg", "image/jpeg", new byte[25]);
+
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-2").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> {
+                    UploadPartRequest request = invocation.getArgument(0);
+                    if (request.partNumber() == 2) {
+                        throw S3Exception.builder().message("Part rejected").build();
+                    }
+                    return UploadPartResponse.builder().eTag("etag").build();
+                });
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> s3Service.put("user_1/product_1/large.jpg", file, file.getSize(), file.getContentType()).get());
+        assertInstanceOf(IOException.class, error.getCause());
+
+        ArgumentCaptor<AbortMultipartUploadRequest> abort = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(s3Client).abortMultipartUpload(abort.capture());
+        assertEquals("upload-2", abort.getValue().uploadId());
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
 
-        String key1 = s3Service.upload(file1, 1L, 1L);
-        String key2 = s3Service.upload(file2, 1L, 1L);
+    @Test
+    public void testPut_ManyInFlightFromOneThread() throws Exception {
+        // Stand-in for a slow S3 endpoint: every PUT completes after a fixed latency
+        long latencyMs = 200;
+        int uploads = 16;
+        ScheduledExecutorService s3Latency = Executors.newSingleThreadScheduledExecutor();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> {
+                    peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    CompletableFuture<PutObjectResponse> response = new CompletableFuture<>();
+                    s3Latency.schedule(() -> {
+                        inFlight.decrementAndGet();
+                        response.complete(PutObjectResponse.builder().build());
+                    }, latencyMs, TimeUnit.MILLISECONDS);
+                    return response;
+                });
+
+        try {
+            // One "worker" thread issues every upload
+            long started = System.nanoTime();
+            List<CompletableFuture<Void>> puts = new ArrayList<>();
+            for (int i = 0; i < uploads; i++) {
+                MockMultipartFile file = new MockMultipartFile("file", "load-" + i + ".jpg", "image/jpeg", new byte[1024]);
+                puts.add(s3Service.put("user_1/product_1/load-" + i + ".jpg", file, file.getSize(), file.getContentType()));
+            }
+            long issuedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            CompletableFuture.allOf(puts.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+            long totalMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            // The thread never waited on the network, and all uploads overlapped: a blocking
+            // client would need uploads * latency (3.2s) on the same thread
+            assertTrue(issuedMs < latencyMs, "issuing took " + issuedMs + "ms");
+            assertEquals(uploads, peakInFlight.get());
+            assertTrue(totalMs < latencyMs * 4, "uploads took " + totalMs + "ms");
+            assertEquals(uploads, meterRegistry.get("s3.call")
+                    .tag("operation", "putObject")
+                    .tag("outcome", "success")
+                    .timer().count());
+        } finally {
+            s3Latency.shutdownNow();
+        }
+    }
 
-        // Even with same filename, keys should be different (UUID)
-        assertNotEquals(key1, key2);
+    @Test
+    public void testRemoveAll_BatchesOf1000() throws Exception {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            keys.add("user_1/product_1/" + i + ".jpg");
+        }
+        when(s3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteObjectsResponse.builder().build()));
+
+        s3Service.removeAll(keys).get();
+
+        ArgumentCaptor<DeleteObjectsRequest> requests = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3AsyncClient, times(3)).deleteObjects(requests.capture());
+        assertEquals(List.of(1000, 1000, 500), requests.getAllValues().stream()
+                .map(request -> request.delete().objects().size())
+                .toList());
     }
 
     @Test
-    public void testUpload_CorrectPartitioning() throws IOException {
-        MockMultipartFile file = new MockMultipartFile(
-                "file",
-                "test.jpg",
-                "image/jpeg",
-                "content".getBytes()
-        );
+    public void testRemoveAll_PartialFailure() {
+        when(s3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteObjectsResponse.builder()
+                        .errors(S3Error.builder().key("b").code("AccessDenied").message("Access Denied").build())
+                        .build()));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> s3Service.removeAll(List.of("a", "b")).get());
+        assertInstanceOf(IOException.class, error.getCause());
+    }
 
-        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
-                .thenReturn(PutObjectResponse.builder().build());
+    @Test
+    public void testPresignPut_PathStyleAgainstStandIn() {
+        // Signing is local: no stand-in has to be running
+        ReflectionTestUtils.setField(s3Service, "presigner", S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+                .endpointOverride(URI.create("http://localhost:9000"))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build());
+
+        StorageBackend.PresignedPut put = s3Service
+                .presignPut("user_1/product_2/photo.png", "image/png", Duration.ofMinutes(15))
+                .orElseThrow();
+
+        assertTrue(put.url().startsWith("http://localhost:9000/test-bucket/user_1/product_2/photo.png?"));
+        assertTrue(put.url().contains("X-Amz-Signature="));
+        assertEquals("image/png", put.headers().get("content-type"));
+        assertFalse(put.headers().containsKey("host"));
+        assertTrue(put.expiresAt().isAfter(Instant.now().plusSeconds(14 * 60)));
+    }
 
-        // Test different user and product combinations
-        String key1 = s3Service.upload(file, 1L, 1L);
-        String key2 = s3Service.upload(file, 2L, 1L);
-        String key3 = s3Service.upload(file, 1L, 2L);
+    @Test
+    public void testPresignPut_NotConfigured() {
+        assertTrue(s3Service.presignPut("a.png", "image/png", Duration.ofMinutes(15)).isEmpty());
+    }
 
-        assertTrue(key1.startsWith("user_1/product_1/"));
-        assertTrue(key2.startsWith("user_2/product_1/"));
-        assertTrue(key3.startsWith("user_1/product_2/"));
+    // Tiny parts (init() would enforce S3's 5MB minimum) on a real bounded pool
+    private void enableMultipart() {
+        ReflectionTestUtils.setField(s3Service, "multipartThreshold", 16L);
+        ReflectionTestUtils.setField(s3Service, "partSize", 10L);
+        ReflectionTestUtils.setField(s3Service, "partExecutor", Executors.newFixedThreadPool(2));
+        ReflectionTestUtils.setField(s3Service, "multipartExecutor", Executors.newSingleThreadExecutor());
+        ReflectionTestUtils.setField(s3Service, "partBuffers", new Semaphore(4));
     }
-}
\ No newline at end of file
+}
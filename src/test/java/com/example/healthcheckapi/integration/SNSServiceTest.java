@@ -0,0 +1,140 @@
+package com.example.healthcheckapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+import software.amazon.awssdk.services.sns.model.SnsException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SNSServiceTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SnsClient snsClient;
+    private SNSService snsService;
+
+    @BeforeEach
+    public void setup() {
+        snsClient = mock(SnsClient.class);
+        snsService = new SNSService();
+        // Set required fields via reflection (since @Value annotations won't work in unit tests)
+        ReflectionTestUtils.setField(snsService, "topicArn", "arn:aws:sns:us-east-1:123456789012:verify");
+        ReflectionTestUtils.setField(snsService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(snsService, "retryBaseMs", 1L);
+        ReflectionTestUtils.setField(snsService, "retryMaxMs", 5L);
+        ReflectionTestUtils.setField(snsService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(snsService, "registry", meterRegistry);
+        ReflectionTestUtils.setField(snsService, "snsClient", snsClient);
+    }
+
+    private static PublishBatchResponse allPublished(PublishBatchRequest request) {
+        return PublishBatchResponse.builder()
+                .successful(request.publishBatchRequestEntries().stream()
+                        .map(entry -> PublishBatchResultEntry.builder().id(entry.id()).messageId("m-" + entry.id()).build())
+                        .toList())
+                .build();
+    }
+
+    private static SNSService.Outgoing outgoing(long id, String email) {
+        return new SNSService.Outgoing(id, email, "{\"email\":\"" + email + "\"}");
+    }
+
+    private double deadLetters(String reason) {
+        return meterRegistry.get("sns.publish.dead_letter").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    public void testVerificationMessage_BodyUnchanged() throws Exception {
+        String json = snsService.verificationMessage("user0@test.com", "token-0", "example.com");
+
+        // Same body the verification Lambda has always received
+        Map<?, ?> body = objectMapper.readValue(json, Map.class);
+        assertEquals("user0@test.com", body.get("email"));
+        assertEquals("token-0", body.get("token"));
+        assertEquals("http://example.com/v1/user/verify?email=user0@test.com&token=token-0", body.get("verificationLink"));
+        assertNotNull(body.get("timestamp"));
+    }
+
+    @Test
+    public void testPublish_OneBatchCall() {
+        when(snsClient.publishBatch(any(PublishBatchRequest.class)))
+                .thenAnswer(invocation -> allPublished(invocation.getArgument(0)));
+
+        SNSService.PublishResult result = snsService.publish(IntStream.range(0, 10)
+                .mapToObj(i -> outgoing(i, "user" + i + "@test.com"))
+                .toList());
+
+        assertTrue(result.unpublished().isEmpty());
+        assertTrue(result.rejected().isEmpty());
+        ArgumentCaptor<PublishBatchRequest> captor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(snsClient).publishBatch(captor.capture());
+        List<PublishBatchRequestEntry> entries = captor.getValue().publishBatchRequestEntries();
+        assertEquals(10, entries.size());
+        assertEquals("Email Verification Required", entries.get(0).subject());
+        assertEquals(1, meterRegistry.get("sns.publish.batch.size").summary().count());
+    }
+
+    @Test
+    public void testPublish_MoreThanTenRefused() {
+        assertThrows(IllegalArgumentException.class, () -> snsService.publish(IntStream.range(0, 11)
+                .mapToObj(i -> outgoing(i, "user" + i + "@test.com"))
+                .toList()));
+        verifyNoInteractions(snsClient);
+    }
+
+    @Test
+    public void testPublish_RetriesRetryableEntriesAndDeadLettersSenderFaults() {
+        when(snsClient.publishBatch(any(PublishBatchRequest.class)))
+                .thenReturn(PublishBatchResponse.builder()
+                        .successful(PublishBatchResultEntry.builder().id("0").messageId("m-0").build())
+                        .failed(BatchResultErrorEntry.builder().id("1").code("InternalError").senderFault(false).build(),
+                                BatchResultErrorEntry.builder().id("2").code("InvalidParameter").senderFault(true).build())
+                        .build())
+                .thenAnswer(invocation -> allPublished(invocation.getArgument(0)));
+
+        SNSService.PublishResult result = snsService.publish(
+                List.of(outgoing(1, "a@test.com"), outgoing(2, "b@test.com"), outgoing(3, "c@test.com")));
+
+        ArgumentCaptor<PublishBatchRequest> captor = ArgumentCaptor.forClass(PublishBatchRequest.class);
+        verify(snsClient, times(2)).publishBatch(captor.capture());
+        List<PublishBatchRequestEntry> retried = captor.getAllValues().get(1).publishBatchRequestEntries();
+        assertEquals(1, retried.size());
+        assertTrue(retried.get(0).message().contains("b@test.com"));
+        assertTrue(result.unpublished().isEmpty());
+        assertEquals(List.of(3L), result.rejected().stream().map(SNSService.Outgoing::id).toList());
+        assertEquals(1, deadLetters("rejected"));
+        assertEquals(1, meterRegistry.get("sns.publish.latency").tag("outcome", "partial").timer().count());
+        assertEquals(1, meterRegistry.get("sns.publish.latency").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    public void testPublish_RetriesExhausted_ReturnedToCaller() {
+        when(snsClient.publishBatch(any(PublishBatchRequest.class)))
+                .thenThrow(SnsException.builder().message("Service unavailable").statusCode(503).build());
+
+        SNSService.PublishResult result = snsService.publish(List.of(outgoing(1, "a@test.com"), outgoing(2, "b@test.com")));
+
+        verify(snsClient, times(3)).publishBatch(any(PublishBatchRequest.class));
+        assertEquals(List.of(1L, 2L), result.unpublished().stream().map(SNSService.Outgoing::id).toList());
+        assertTrue(result.rejected().isEmpty());
+        assertEquals(3, meterRegistry.get("sns.publish.latency").tag("outcome", "error").timer().count());
+        assertNull(meterRegistry.find("sns.publish.dead_letter").counter());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.healthcheckapi.integration;
+
+import com.example.healthcheckapi.entity.User;
+import com.example.healthcheckapi.repository.EmailVerificationTokenRepository;
+import com.example.healthcheckapi.repository.UserRepository;
+import com.example.healthcheckapi.repository.VerificationOutboxRepository;
+import com.example.healthcheckapi.service.CredentialCacheService;
+import com.example.healthcheckapi.service.SNSService;
+import com.example.healthcheckapi.service.VerificationOutboxService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Signup and verification with signed (stateless) verification tokens
+ */
+@TestPropertySource(properties = {
+        "email.verification.enabled=true",
+        "email.verification.token-mode=signed",
+        "email.verification.signing-keys=test:MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY="
+})
+public class SignedVerificationTokenIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EmailVerificationTokenRepository tokenRepository;
+
+    @Autowired
+    private VerificationOutboxRepository outboxRepository;
+
+    @Autowired
+    private VerificationOutboxService verificationOutbox;
+
+    @MockitoSpyBean
+    private SNSService snsService;
+
+    @MockitoSpyBean
+    private CredentialCacheService credentialCacheService;
+
+    @BeforeEach
+    public void setup() {
+        outboxRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    // Sign up and return the token from the verification message the relay sends
+    private String signUp(String email) throws Exception {
+        mockMvc.perform(post("/v1/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "username", email,
+                                "password", "password123",
+                                "first_name", "Signed",
+                                "last_name", "Token"))))
+                .andExpect(status().isCreated());
+
+        List<String> published = new ArrayList<>();
+        doAnswer(invocation -> {
+            invocation.<List<SNSService.Outgoing>>getArgument(0).forEach(outgoing -> published.add(outgoing.json()));
+            return invocation.callRealMethod();
+        }).when(snsService).publish(anyList());
+        assertEquals(1, verificationOutbox.drain());
+        return (String) objectMapper.readValue(published.get(0), Map.class).get("token");
+    }
+
+    @Test
+    public void testSignup_SignedTokenVerifiesOnce() throws Exception {
+        String token = signUp("signed@test.com");
+        // No token row; the token only travels in the message
+        assertEquals(0, tokenRepository.count());
+
+        mockMvc.perform(get("/v1/user/verify")
+                        .param("email", "other@test.com")
+                        .param("token", token))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/v1/user/verify")
+                        .param("email", "signed@test.com")
+                        .param("token", token))
+                .andExpect(status().isOk());
+
+        User user = userRepository.findByUsername("signed@test.com").orElseThrow();
+        assertTrue(user.isEmailVerified());
+        String authHeader = "Basic " + Base64.getEncoder().encodeToString("signed@test.com:password123".getBytes());
+        mockMvc.perform(get("/v1/user/" + user.getId()).header("Authorization", authHeader))
+                .andExpect(status().isOk());
+
+        // Replayed link
+        mockMvc.perform(get("/v1/user/verify")
+                        .param("email", "signed@test.com")
+                        .param("token", token))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testVerify_UpdateFails_SameLinkWorksAgain() throws Exception {
+        String token = signUp("retry@test.com");
+        // Fails after the UPDATE, inside its transaction, which rolls back
+        doThrow(new DataAccessResourceFailureException("Connection reset"))
+                .doCallRealMethod()
+                .when(credentialCacheService).invalidate("retry@test.com");
+
+        mockMvc.perform(get("/v1/user/verify")
+                        .param("email", "retry@test.com")
+                        .param("token", token))
+                .andExpect(status().isBadRequest());
+        assertFalse(userRepository.findByUsername("retry@test.com").orElseThrow().isEmailVerified());
+
+        // The failed attempt didn't use the token up
+        mockMvc.perform(get("/v1/user/verify")
+                        .param("email", "retry@test.com")
+                        .param("token", token))
+                .andExpect(status().isOk());
+        assertTrue(userRepository.findByUsername("retry@test.com").orElseThrow().isEmailVerified());
+    }
+}
@@ -142,6 +142,70 @@ public class UserControllerIntegrationTest extends BaseIntegrationTest {
         assertTrue(passwordEncoder.matches("newpassword123", updatedUser.getPassword()));
     }
 
+    @Test
+    public void testUpdateUser_PasswordChange_OldCredentialsRejected() throws Exception {
+        User user = new User();
+        user.setUsername("rotate@test.com");
+        user.setPassword(passwordEncoder.encode("oldpassword"));
+        user.setFirstName("Rotate");
+        user.setLastName("Password");
+        User savedUser = userRepository.save(user);
+
+        String oldAuth = "Basic " + Base64.getEncoder().encodeToString("rotate@test.com:oldpassword".getBytes());
+        String newAuth = "Basic " + Base64.getEncoder().encodeToString("rotate@test.com:newpassword123".getBytes());
+
+        // Warm the credential cache with the old password
+        mockMvc.perform(get("/v1/user/" + savedUser.getId())
+                        .header("Authorization", oldAuth))
+                .andExpect(status().isOk());
+
+        Map<String, Object> updateRequest = new HashMap<>();
+        updateRequest.put("password", "newpassword123");
+
+        mockMvc.perform(put("/v1/user/" + savedUser.getId())
+                        .header("Authorization", oldAuth)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateRequest)))
+                .andExpect(status().isNoContent());
+
+        // Cached verification must not outlive the password change
+        mockMvc.perform(get("/v1/user/" + savedUser.getId())
+                        .header("Authorization", oldAuth))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/v1/user/" + savedUser.getId())
+                        .header("Authorization", newAuth))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testUpdateUser_BearerTokenRefused() throws Exception {
+        User user = new User();
+        user.setUsername("bearer@test.com");
+        user.setPassword(passwordEncoder.encode("password123"));
+        user.setFirstName("Bearer");
+        user.setLastName("Token");
+        User savedUser = userRepository.save(user);
+        String basic = "Basic " + Base64.getEncoder().encodeToString("bearer@test.com:password123".getBytes());
+
+        String response = mockMvc.perform(post("/v1/auth/token").header("Authorization", basic))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String token = (String) objectMapper.readValue(response, Map.class).get("access_token");
+
+        // Reads take the token; an account update (here a password change) needs Basic
+        mockMvc.perform(get("/v1/user/" + savedUser.getId()).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/v1/user/" + savedUser.getId())
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("password", "stolen-password"))))
+                .andExpect(status().isUnauthorized());
+
+        assertTrue(passwordEncoder.matches("password123",
+                userRepository.findById(savedUser.getId()).orElseThrow().getPassword()));
+    }
+
     @Test
     public void testUpdateUser_PartialUpdate() throws Exception {
         User user = new User();
@@ -0,0 +1,186 @@
+package com.example.healthcheckapi.integration;
+
+import com.example.healthcheckapi.config.UserLookupCounter;
+import com.example.healthcheckapi.entity.Image;
+import com.example.healthcheckapi.entity.Product;
+import com.example.healthcheckapi.entity.User;
+import com.example.healthcheckapi.repository.ImageRepository;
+import com.example.healthcheckapi.repository.ProductRepository;
+import com.example.healthcheckapi.repository.UserRepository;
+import com.example.healthcheckapi.service.CredentialCacheService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Verifies each authenticated endpoint resolves the caller by username at most once
+ * (during authentication) and reads everything else from the request principal.
+ */
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.example.healthcheckapi.config.UserLookupCounter",
+        "email.verification.enabled=true",
+        "file.upload-dir=./build/test-uploads"
+})
+public class UserLookupQueryCountTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private CredentialCacheService credentialCacheService;
+
+    private User testUser;
+    private Product testProduct;
+    private String authHeader;
+
+    @BeforeEach
+    public void setup() {
+        imageRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+
+        testUser = new User();
+        testUser.setUsername("lookup@test.com");
+        testUser.setPassword(passwordEncoder.encode("password123"));
+        testUser.setFirstName("Lookup");
+        testUser.setLastName("Counter");
+        testUser.setEmailVerified(true);
+        testUser = userRepository.save(testUser);
+
+        testProduct = new Product();
+        testProduct.setName("Lookup Product");
+        testProduct.setDescription("Query count target");
+        testProduct.setSku("LOOKUP-001");
+        testProduct.setManufacturer("CountCorp");
+        testProduct.setQuantity(10);
+        testProduct.setOwner(testUser);
+        testProduct = productRepository.save(testProduct);
+
+        authHeader = "Basic " + Base64.getEncoder().encodeToString("lookup@test.com:password123".getBytes());
+    }
+
+    @Test
+    public void testCreateProduct_AtMostOneUserLookup() throws Exception {
+        Map<String, Object> productRequest = new HashMap<>();
+        productRequest.put("name", "Counted");
+        productRequest.put("description", "Counted product");
+        productRequest.put("sku", "LOOKUP-002");
+        productRequest.put("manufacturer", "CountCorp");
+        productRequest.put("quantity", 1);
+
+        assertUserLookups(post("/v1/product")
+                .header("Authorization", authHeader)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(productRequest)), 201);
+    }
+
+    @Test
+    public void testUpdateProduct_AtMostOneUserLookup() throws Exception {
+        Map<String, Object> updateRequest = new HashMap<>();
+        updateRequest.put("name", "Updated");
+        updateRequest.put("description", "Updated product");
+        updateRequest.put("sku", "LOOKUP-001");
+        updateRequest.put("manufacturer", "CountCorp");
+        updateRequest.put("quantity", 2);
+
+        assertUserLookups(put("/v1/product/" + testProduct.getId())
+                .header("Authorization", authHeader)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updateRequest)), 204);
+    }
+
+    @Test
+    public void testPatchProduct_AtMostOneUserLookup() throws Exception {
+        assertUserLookups(patch("/v1/product/" + testProduct.getId())
+                .header("Authorization", authHeader)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"quantity\": 3}"), 204);
+    }
+
+    @Test
+    public void testDeleteProduct_AtMostOneUserLookup() throws Exception {
+        assertUserLookups(delete("/v1/product/" + testProduct.getId())
+                .header("Authorization", authHeader), 204);
+    }
+
+    @Test
+    public void testUploadAndDeleteImage_AtMostOneUserLookup() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "counted.jpg", "image/jpeg", "counted content".getBytes());
+
+        assertUserLookups(multipart("/v1/product/" + testProduct.getId() + "/image")
+                .file(file)
+                .header("Authorization", authHeader), 201);
+
+        Image image = imageRepository.findByProduct_Id(testProduct.getId()).get(0);
+        assertUserLookups(delete("/v1/product/" + testProduct.getId() + "/image/" + image.getImageId())
+                .header("Authorization", authHeader), 204);
+    }
+
+    @Test
+    public void testGetAndUpdateUser_AtMostOneUserLookup() throws Exception {
+        assertUserLookups(get("/v1/user/" + testUser.getId())
+                .header("Authorization", authHeader), 200);
+
+        assertUserLookups(put("/v1/user/" + testUser.getId())
+                .header("Authorization", authHeader)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"first_name\": \"Renamed\"}"), 204);
+    }
+
+    @Test
+    public void testWarmCredentials_NoUserLookup() throws Exception {
+        mockMvc.perform(get("/v1/user/" + testUser.getId())
+                        .header("Authorization", authHeader))
+                .andExpect(status().isOk());
+
+        UserLookupCounter.reset();
+        mockMvc.perform(delete("/v1/product/" + testProduct.getId())
+                        .header("Authorization", authHeader))
+                .andExpect(status().isNoContent());
+        assertEquals(0, UserLookupCounter.count());
+    }
+
+    /**
+     * Run the request with a cold credential cache (worst case) and check the lookup count
+     */
+    private void assertUserLookups(RequestBuilder request, int expectedStatus) throws Exception {
+        credentialCacheService.invalidateAll();
+        UserLookupCounter.reset();
+
+        performAsync(mockMvc, request).andExpect(status().is(expectedStatus));
+
+        assertTrue(UserLookupCounter.count() <= 1,
+                "Expected at most one user lookup, got " + UserLookupCounter.count());
+    }
+}
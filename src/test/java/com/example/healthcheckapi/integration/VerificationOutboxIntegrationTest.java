@@ -0,0 +1,306 @@
+package com.example.healthcheckapi.integration;
+
+import com.example.healthcheckapi.entity.EmailVerificationToken;
+import com.example.healthcheckapi.entity.VerificationOutboxMessage;
+import com.example.healthcheckapi.repository.EmailVerificationTokenRepository;
+import com.example.healthcheckapi.repository.UserRepository;
+import com.example.healthcheckapi.repository.VerificationOutboxRepository;
+import com.example.healthcheckapi.service.SNSService;
+import com.example.healthcheckapi.service.VerificationOutboxService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Signup writes its verification message to the outbox; the relay (drained explicitly
+ * here, SNS in mock mode) publishes it.
+ */
+@TestPropertySource(properties = {
+        "email.verification.enabled=true",
+        // Small claims, so concurrent relays really split the work
+        "verification.outbox.batch-size=20"
+})
+public class VerificationOutboxIntegrationTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EmailVerificationTokenRepository tokenRepository;
+
+    @Autowired
+    private VerificationOutboxRepository outboxRepository;
+
+    @Autowired
+    private VerificationOutboxService verificationOutbox;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private TransactionTemplate transactionTemplate;
+
+    @MockitoSpyBean
+    private SNSService snsService;
+
+    @BeforeEach
+    public void setup() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        outboxRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    private void signUp(String email) throws Exception {
+        mockMvc.perform(post("/v1/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "username", email,
+                                "password", "password123",
+                                "first_name", "Outbox",
+                                "last_name", "User"))))
+                .andExpect(status().isCreated());
+    }
+
+    private void queue(int count) {
+        Instant now = Instant.now();
+        outboxRepository.saveAll(IntStream.range(0, count)
+                .mapToObj(i -> new VerificationOutboxMessage("user" + i + "@test.com", "localhost:8080", now))
+                .toList());
+    }
+
+    // Message bodies as they are handed to SNS
+    private List<Map<?, ?>> capturePublished() {
+        List<Map<?, ?>> published = new ArrayList<>();
+        doAnswer(invocation -> {
+            for (SNSService.Outgoing outgoing : invocation.<List<SNSService.Outgoing>>getArgument(0)) {
+                published.add(objectMapper.readValue(outgoing.json(), Map.class));
+            }
+            return invocation.callRealMethod();
+        }).when(snsService).publish(anyList());
+        return published;
+    }
+
+    @Test
+    public void testSignup_MessageQueuedThenPublishedWithFreshToken() throws Exception {
+        signUp("outbox@test.com");
+
+        // Nothing was sent on the request path, and no token issued yet
+        List<VerificationOutboxMessage> queued = outboxRepository.findByEmail("outbox@test.com");
+        assertEquals(1, queued.size());
+        assertEquals(0, tokenRepository.count());
+
+        List<Map<?, ?>> published = capturePublished();
+        assertEquals(1, verificationOutbox.drain());
+        assertEquals(0, outboxRepository.count());
+
+        assertEquals(1, published.size());
+        assertEquals("outbox@test.com", published.get(0).get("email"));
+        EmailVerificationToken token = tokenRepository.findByToken((String) published.get(0).get("token")).orElseThrow();
+        assertEquals("outbox@test.com", token.getUserEmail());
+        assertFalse(token.isExpired());
+    }
+
+    @Test
+    public void testSampleBacklog_ReportsDepthAndOldestAge() {
+        verificationOutbox.sampleBacklog();
+        assertEquals(0, registry.get("verification.outbox.depth").gauge().value());
+        assertEquals(0, registry.get("verification.outbox.oldest.age").gauge().value());
+
+        outboxRepository.save(new VerificationOutboxMessage("stuck@test.com", "localhost:8080",
+                Instant.now().minusSeconds(300)));
+        queue(4);
+        verificationOutbox.sampleBacklog();
+
+        assertEquals(5, registry.get("verification.outbox.depth").gauge().value());
+        assertTrue(registry.get("verification.outbox.oldest.age").gauge().value() >= 300);
+    }
+
+    @Test
+    public void testDrain_DelayedPastTokenTtl_LinkStillVerifies() throws Exception {
+        signUp("late@test.com");
+        // SNS is down for the first attempt
+        doAnswer(invocation -> new SNSService.PublishResult(invocation.getArgument(0), List.of()))
+                .when(snsService).publish(anyList());
+        assertEquals(0, verificationOutbox.drain());
+
+        // The outage outlasts the token lifetime: whatever was issued so far is dead by now,
+        // and the row is due again
+        Instant past = Instant.now().minusSeconds(1);
+        List<EmailVerificationToken> issued = tokenRepository.findAll();
+        issued.forEach(token -> token.setExpiresAt(past));
+        tokenRepository.saveAll(issued);
+        Long rowId = outboxRepository.findByEmail("late@test.com").get(0).getId();
+        transactionTemplate.executeWithoutResult(status -> {
+            // A stand-in relay takes the row early and hands it back due now
+            outboxRepository.claim("test-relay", Instant.now().plusSeconds(3600), Instant.now(), 1);
+            outboxRepository.reschedule(List.of(rowId), "test-relay", Instant.now());
+        });
+
+        List<Map<?, ?>> published = capturePublished();
+        assertEquals(1, verificationOutbox.drain());
+
+        // The message that finally goes out carries a token issued with it
+        assertEquals(1, published.size());
+        mockMvc.perform(get("/v1/user/verify")
+                        .param("email", "late@test.com")
+                        .param("token", (String) published.get(0).get("token")))
+                .andExpect(status().isOk());
+        assertTrue(userRepository.findByUsername("late@test.com").orElseThrow().isEmailVerified());
+    }
+
+    @Test
+    public void testDrain_SnsDown_RowsKeptAndRescheduled() throws Exception {
+        signUp("down@test.com");
+        // Every message comes back unpublished
+        doAnswer(invocation -> new SNSService.PublishResult(invocation.getArgument(0), List.of()))
+                .when(snsService).publish(anyList());
+
+        assertEquals(0, verificationOutbox.drain());
+
+        VerificationOutboxMessage row = outboxRepository.findByEmail("down@test.com").get(0);
+        assertEquals(1, row.getAttempts());
+        assertTrue(row.getAvailableAt().isAfter(Instant.now()));
+        assertNull(row.getLeaseOwner());
+        // Not due yet: the next poll leaves it alone
+        assertEquals(0, verificationOutbox.drain());
+        assertTrue(userRepository.existsByUsername("down@test.com"));
+    }
+
+    @Test
+    public void testDrain_RejectedMessageParkedForReplay() throws Exception {
+        signUp("rejected@test.com");
+        // SNS refuses the message as malformed
+        doAnswer(invocation -> new SNSService.PublishResult(List.of(), invocation.getArgument(0)))
+                .when(snsService).publish(anyList());
+
+        assertEquals(1, verificationOutbox.drain());
+
+        // Kept, but never claimed again and not counted as waiting
+        VerificationOutboxMessage parked = outboxRepository.findByEmail("rejected@test.com").get(0);
+        assertNotNull(parked.getRejectedAt());
+        assertEquals(0, verificationOutbox.drain());
+        verificationOutbox.sampleBacklog();
+        assertEquals(0, registry.get("verification.outbox.depth").gauge().value());
+    }
+
+    @Test
+    public void testDrain_PublishesInBatchesOfTen() {
+        queue(25);
+        List<Integer> batchSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            batchSizes.add(invocation.<List<?>>getArgument(0).size());
+            return invocation.callRealMethod();
+        }).when(snsService).publish(anyList());
+
+        assertEquals(20, verificationOutbox.drain());
+        assertEquals(5, verificationOutbox.drain());
+
+        assertEquals(List.of(10, 10, 5), batchSizes);
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    public void testDrain_ConcurrentRelaysNeverSendTwice() {
+        queue(60);
+        Queue<Long> published = new ConcurrentLinkedQueue<>();
+        doAnswer(invocation -> {
+            invocation.<List<SNSService.Outgoing>>getArgument(0).forEach(outgoing -> published.add(outgoing.id()));
+            return invocation.callRealMethod();
+        }).when(snsService).publish(anyList());
+
+        List<CompletableFuture<Void>> relays = IntStream.range(0, 4)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                    while (verificationOutbox.drain() > 0) {
+                        // keep claiming until nothing is left
+                    }
+                }))
+                .toList();
+        relays.forEach(CompletableFuture::join);
+
+        assertEquals(60, published.size());
+        assertEquals(60, published.stream().distinct().count());
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    public void testDrain_LeaseRenewedBeforeEachCall() {
+        queue(20);
+        List<Instant> leases = new ArrayList<>();
+        doAnswer(invocation -> {
+            Long id = invocation.<List<SNSService.Outgoing>>getArgument(0).get(0).id();
+            VerificationOutboxMessage row = outboxRepository.findById(id).orElseThrow();
+            leases.add(row.getLeaseUntil());
+            // The first call runs until the lease has all but expired
+            transactionTemplate.executeWithoutResult(status ->
+                    outboxRepository.extendLease(row.getLeaseOwner(), Instant.now().plusMillis(1)));
+            return invocation.callRealMethod();
+        }).when(snsService).publish(anyList());
+
+        assertEquals(20, verificationOutbox.drain());
+
+        assertEquals(2, leases.size());
+        assertTrue(leases.get(1).isAfter(Instant.now().plusSeconds(30)), "lease was " + leases.get(1));
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    public void testDrain_LeaseLost_RowsLeftToNewOwner() {
+        queue(20);
+        List<Integer> calls = new ArrayList<>();
+        doAnswer(invocation -> {
+            calls.add(invocation.<List<?>>getArgument(0).size());
+            Object result = invocation.callRealMethod();
+            // The call outlives the lease and another relay claims the whole batch
+            Long id = invocation.<List<SNSService.Outgoing>>getArgument(0).get(0).id();
+            String owner = outboxRepository.findById(id).orElseThrow().getLeaseOwner();
+            transactionTemplate.executeWithoutResult(status -> {
+                outboxRepository.extendLease(owner, Instant.now().minusSeconds(1));
+                outboxRepository.claim("other-relay", Instant.now(), Instant.now().plusSeconds(60), 20);
+            });
+            return result;
+        }).when(snsService).publish(anyList());
+
+        verificationOutbox.drain();
+
+        // No further chunk went out, and nothing was settled under the new owner's lease
+        assertEquals(List.of(10), calls);
+        List<VerificationOutboxMessage> rows = outboxRepository.findAll();
+        assertEquals(20, rows.size());
+        rows.forEach(row -> {
+            assertEquals("other-relay", row.getLeaseOwner());
+            assertEquals(0, row.getAttempts());
+        });
+    }
+}